@@ -0,0 +1,25 @@
+#type vertex
+#version 330 core
+layout (location=0) in vec2 aPos;
+layout (location=1) in vec3 aColor;
+
+uniform mat4 uProjection;
+uniform mat4 uView;
+
+out vec3 fColor;
+
+void main() {
+    fColor = aColor;
+    gl_Position = uProjection * uView * vec4(aPos, 0.0, 1.0);
+}
+
+#type fragment
+#version 330 core
+
+in vec3 fColor;
+
+out vec4 color;
+
+void main() {
+    color = vec4(fColor, 1.0);
+}
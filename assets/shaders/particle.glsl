@@ -0,0 +1,40 @@
+#type vertex
+#version 330 core
+// corner of the unit quad, shared by every particle
+layout (location=0) in vec2 aCorner;
+// per particle: center + size, color, texture coordinates of the bottom left and top right corners
+layout (location=1) in vec3 iPosSize;
+layout (location=2) in vec4 iColor;
+layout (location=3) in vec4 iTexCoords;
+
+uniform mat4 uProjection;
+uniform mat4 uView;
+
+out vec4 fColor;
+out vec2 fTexCoords;
+
+void main() {
+    fColor = iColor;
+    fTexCoords = mix(iTexCoords.xy, iTexCoords.zw, aCorner);
+    vec2 pos = iPosSize.xy + (aCorner - 0.5) * iPosSize.z;
+    gl_Position = uProjection * uView * vec4(pos, 0.0, 1.0);
+}
+
+#type fragment
+#version 330 core
+
+in vec4 fColor;
+in vec2 fTexCoords;
+
+uniform sampler2D uTexture;
+uniform int uUseTexture;
+
+out vec4 color;
+
+void main() {
+    if (uUseTexture > 0) {
+        color = fColor * texture(uTexture, fTexCoords);
+    } else {
+        color = fColor;
+    }
+}
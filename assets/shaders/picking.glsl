@@ -0,0 +1,48 @@
+#type vertex
+#version 330 core
+layout (location=0) in vec3 aPos;
+layout (location=1) in vec4 aColor;
+layout (location=2) in vec2 aTexCoords;
+layout (location=3) in float aTexId;
+layout (location=4) in int aEntityId;
+
+uniform mat4 uProjection;
+uniform mat4 uView;
+
+out vec4 fColor;
+out vec2 fTexCoords;
+out float fTexId;
+flat out int fEntityId;
+
+void main() {
+    fColor = aColor;
+    gl_Position = uProjection * uView * vec4(aPos, 1.0);
+    fTexCoords = aTexCoords;
+    fTexId = aTexId;
+    fEntityId = aEntityId;
+}
+
+#type fragment
+#version 330 core
+
+in vec4 fColor;
+in vec2 fTexCoords;
+in float fTexId;
+flat in int fEntityId;
+
+uniform sampler2D uTextures[8];
+
+out int entityId;
+
+void main() {
+    float alpha = fColor.a;
+    if (fTexId > 0) {
+        int id = int(fTexId);
+        alpha *= texture(uTextures[id], fTexCoords).a;
+    }
+    // clicks through the transparent parts of a sprite reach whatever is behind it
+    if (alpha < 0.5) {
+        discard;
+    }
+    entityId = fEntityId;
+}
@@ -0,0 +1,27 @@
+package components;
+
+import org.openjdk.jmh.annotations.*;
+import renderer.Texture;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpritesheetBenchmark {
+    private Texture texture;
+
+    @Setup
+    public void setup() {
+        // 32 * 32 sprites of 16 pixels, no GPU storage behind it
+        texture = new Texture(0, 512, 512);
+    }
+
+    @Benchmark
+    public Spritesheet slice() {
+        return new Spritesheet(texture, 16, 16, 32 * 32, 0);
+    }
+}
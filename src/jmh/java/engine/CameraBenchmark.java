@@ -0,0 +1,28 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraBenchmark {
+    private Camera camera;
+
+    @Setup
+    public void setup() {
+        camera = new Camera(new Vector2f(100, 50));
+    }
+
+    @Benchmark
+    public Matrix4f getViewMatrix() {
+        camera.position.x += 1.0f;
+        return camera.getViewMatrix();
+    }
+}
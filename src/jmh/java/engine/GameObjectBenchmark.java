@@ -0,0 +1,32 @@
+package engine;
+
+import components.ParticleEmitter;
+import components.SpriteRenderer;
+import org.joml.Vector4f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameObjectBenchmark {
+    private GameObject gameObject;
+
+    @Setup
+    public void setup() {
+        gameObject = new GameObject("obj");
+        gameObject.addComponent(new ParticleEmitter(0));
+        gameObject.addComponent(new ParticleEmitter(0));
+        // the component looked up sits last in the list
+        gameObject.addComponent(new SpriteRenderer(new Vector4f(1, 1, 1, 1)));
+    }
+
+    @Benchmark
+    public SpriteRenderer getComponent() {
+        return gameObject.getComponent(SpriteRenderer.class);
+    }
+}
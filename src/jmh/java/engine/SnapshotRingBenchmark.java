@@ -0,0 +1,96 @@
+package engine;
+
+import org.joml.Vector2f;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capturing a frame into the rewind ring and restoring one from the middle of it,
+ * with a tenth of the objects moving every frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotRingBenchmark {
+    private static final float DT = 1.0f / 60.0f;
+
+    @Param({"1000", "10000"})
+    public int numObjects;
+
+    private Scene scene;
+    private SnapshotRing ring;
+
+    static class SimulationScene extends Scene {
+        @Override
+        public void update(float dt) {
+            updateGameObjects(dt);
+        }
+    }
+
+    static class Drift extends Component implements Tickable {
+        private float vx;
+
+        Drift(float vx) {
+            this.vx = vx;
+        }
+
+        @Override
+        public void update(float dt) {
+            gameObject.transform.position.x += vx * dt;
+        }
+
+        @Override
+        public void save(ByteBuffer out) {
+            out.putFloat(vx);
+        }
+
+        @Override
+        public void load(ByteBuffer in) {
+            vx = in.getFloat();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        scene = new SimulationScene();
+        for (int i = 0; i < numObjects; i++) {
+            GameObject go = new GameObject("obj" + i,
+                    new Transform(new Vector2f(i % 100 * 32, i / 100 * 32), new Vector2f(32, 32)));
+            go.addComponent(new Drift(i % 10 == 0 ? 50 : 0));
+            scene.addGameObjectToScene(go);
+        }
+
+        // 5 seconds at 60 fps, a keyframe every second
+        ring = new SnapshotRing(scene, 300, 60);
+        for (int i = 0; i < 300; i++) {
+            scene.update(DT);
+            ring.capture();
+        }
+    }
+
+    @Benchmark
+    public int capture() {
+        scene.update(DT);
+        ring.capture();
+        return ring.getFrames();
+    }
+
+    @Benchmark
+    public boolean restore() {
+        return ring.restore(150);
+    }
+
+    /**
+     * Snapshot bytes per second of history, printed once per fork
+     */
+    @TearDown
+    public void report() {
+        System.out.printf("%n[SnapshotRing] %d objects: %.1f KB per second of history%n",
+                numObjects, ring.getBytes() / 1024.0 / (ring.getFrames() * DT));
+    }
+}
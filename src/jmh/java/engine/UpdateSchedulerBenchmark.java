@@ -0,0 +1,88 @@
+package engine;
+
+import components.SpriteRenderer;
+import org.joml.Vector4f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A frame of component updates, walking every object's components in turn as before
+ * against the scheduler running only the Tickable ones, grouped by class
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateSchedulerBenchmark {
+    private static final float DT = 1.0f / 60.0f;
+
+    @Param({"1000", "10000"})
+    public int numObjects;
+
+    private List<GameObject> gameObjects;
+    private UpdateScheduler scheduler;
+
+    static class MoveX extends Component implements Tickable {
+        @Override
+        public void update(float dt) {
+            gameObject.transform.position.x += dt;
+        }
+    }
+
+    static class MoveY extends Component implements Tickable {
+        @Override
+        public void update(float dt) {
+            gameObject.transform.position.y += dt;
+        }
+    }
+
+    static class Grow extends Component implements Tickable {
+        @Override
+        public void update(float dt) {
+            gameObject.transform.scale.x += dt;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        gameObjects = new ArrayList<>(numObjects);
+        scheduler = new UpdateScheduler();
+        for (int i = 0; i < numObjects; i++) {
+            GameObject go = new GameObject("obj" + i);
+            go.addComponent(new SpriteRenderer(new Vector4f(1, 1, 1, 1)));
+            // interleaved, so walking the objects switches class on every call
+            switch (i % 3) {
+                case 0: go.addComponent(new MoveX()); break;
+                case 1: go.addComponent(new MoveY()); break;
+                default: go.addComponent(new Grow()); break;
+            }
+            gameObjects.add(go);
+            for (int c = 0; c < go.getNumComponents(); c++) {
+                scheduler.add(go.getComponent(c));
+            }
+        }
+    }
+
+    @Benchmark
+    public void everyComponent() {
+        for (int i = 0; i < gameObjects.size(); i++) {
+            GameObject go = gameObjects.get(i);
+            for (int c = 0; c < go.getNumComponents(); c++) {
+                Component component = go.getComponent(c);
+                if (component instanceof Tickable) {
+                    ((Tickable) component).update(DT);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void scheduler() {
+        scheduler.update(DT);
+    }
+}
@@ -0,0 +1,92 @@
+package navigation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thousand agents chasing one target through a 256x256 level with scattered walls:
+ * one A* search each against one shared flow field, and what building and repairing that field costs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationBenchmark {
+    private static final int SIZE = 256;
+    private static final int NUM_AGENTS = 1000;
+
+    private Navigator navigator;
+    // a single field, so alternating targets rebuilds it every time
+    private Navigator rebuilding;
+    private int[] agentX = new int[NUM_AGENTS];
+    private int[] agentY = new int[NUM_AGENTS];
+    private final int[] path = new int[SIZE * SIZE];
+    private int targetX, targetY;
+    private int toggleX, toggleY;
+    private boolean toggled = false;
+    private int rebuilds = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        NavGrid grid = new NavGrid(SIZE, SIZE, 32, 0, 0);
+        navigator = new Navigator(grid);
+        // a fifth of the tiles are walls
+        for (int i = 0; i < SIZE * SIZE / 5; i++) {
+            navigator.setBlocked(random.nextInt(SIZE), random.nextInt(SIZE), true);
+        }
+        targetX = SIZE / 2;
+        targetY = SIZE / 2;
+        navigator.setBlocked(targetX, targetY, false);
+        for (int i = 0; i < NUM_AGENTS; i++) {
+            do {
+                agentX[i] = random.nextInt(SIZE);
+                agentY[i] = random.nextInt(SIZE);
+            } while (grid.isBlocked(agentX[i], agentY[i]));
+        }
+        // a tile next to the target, most paths lead past it
+        toggleX = targetX + 1;
+        toggleY = targetY;
+        navigator.setBlocked(toggleX, toggleY, false);
+        navigator.getFlowField(targetX, targetY);
+
+        NavGrid copy = new NavGrid(SIZE, SIZE, 32, 0, 0);
+        rebuilding = new Navigator(copy, 1);
+    }
+
+    @Benchmark
+    public int aStarPerAgent() {
+        int steps = 0;
+        for (int i = 0; i < NUM_AGENTS; i++) {
+            steps += navigator.findPath(agentX[i], agentY[i], targetX, targetY, path);
+        }
+        return steps;
+    }
+
+    @Benchmark
+    public int flowFieldPerAgent() {
+        int next = 0;
+        NavGrid grid = navigator.getGrid();
+        for (int i = 0; i < NUM_AGENTS; i++) {
+            FlowField field = navigator.getFlowField(targetX, targetY);
+            next += field.next(grid.index(agentX[i], agentY[i]));
+        }
+        return next;
+    }
+
+    @Benchmark
+    public FlowField buildFlowField() {
+        rebuilds++;
+        return rebuilding.getFlowField((rebuilds & 1) == 0 ? 0 : SIZE - 1, SIZE / 2);
+    }
+
+    @Benchmark
+    public void repairFlowField() {
+        toggled = !toggled;
+        navigator.setBlocked(toggleX, toggleY, toggled);
+    }
+}
@@ -0,0 +1,77 @@
+package renderer;
+
+import components.SpriteRenderer;
+import engine.GameObject;
+import engine.Transform;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding every batch with all of their sprites moved, one after another on one thread
+ * against the renderer's fork join rebuild. Batches are created without GPU buffers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBuildBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"4", "16", "64"})
+    public int numBatches;
+
+    private final List<RenderBatch> batches = new ArrayList<>();
+    private Renderer renderer;
+    private Transform[] transforms;
+
+    @Setup
+    public void setup() {
+        renderer = new Renderer() {
+            @Override
+            RenderBatch createBatch(int index) {
+                RenderBatch batch = new RenderBatch(BATCH_SIZE, index, null);
+                batches.add(batch);
+                return batch;
+            }
+        };
+
+        int numSprites = numBatches * BATCH_SIZE;
+        transforms = new Transform[numSprites];
+        for (int i = 0; i < numSprites; i++) {
+            GameObject go = new GameObject("sprite" + i,
+                    new Transform(new Vector2f(i % 40 * 32, i / 40 * 32), new Vector2f(32, 32)));
+            go.addComponent(new SpriteRenderer(new Vector4f(1, 1, 1, 1)));
+            renderer.add(go);
+            transforms[i] = go.transform;
+        }
+    }
+
+    /**
+     * Every sprite moved, so every batch rebuilds all of its quads
+     */
+    @Setup(Level.Invocation)
+    public void moveEverything() {
+        for (int i = 0; i < transforms.length; i++) {
+            transforms[i].init(transforms[i].position, transforms[i].scale);
+        }
+    }
+
+    @Benchmark
+    public void sequential() {
+        for (int i = 0; i < batches.size(); i++) {
+            batches.get(i).buildVertices();
+        }
+    }
+
+    @Benchmark
+    public void parallel() {
+        renderer.buildParallel();
+    }
+}
@@ -0,0 +1,44 @@
+package renderer;
+
+import components.SpriteRenderer;
+import engine.GameObject;
+import engine.Transform;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vertex generation of a full batch, no GL context needed since the batch is never started
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBatchBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    private RenderBatch batch;
+
+    @Setup
+    public void setup() {
+        batch = new RenderBatch(BATCH_SIZE, 0, null);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            GameObject go = new GameObject("sprite" + i,
+                    new Transform(new Vector2f(i % 40 * 32, i / 40 * 32), new Vector2f(32, 32)));
+            SpriteRenderer spr = new SpriteRenderer(new Vector4f(1, 1, 1, 1));
+            go.addComponent(spr);
+            batch.addSprite(spr);
+        }
+    }
+
+    @Benchmark
+    public void loadVertexProperties() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.loadVertexProperties(i);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package renderer;
+
+import components.Sprite;
+import components.SpriteRenderer;
+import engine.GameObject;
+import engine.Transform;
+import org.joml.Vector2f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of distributing sprites over batches, batches are created without GPU buffers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+    @Param({"10000", "100000"})
+    public int numSprites;
+
+    private GameObject[] gameObjects;
+
+    /**
+     * Renderer whose batches never touch GL
+     */
+    static class HeadlessRenderer extends Renderer {
+        @Override
+        RenderBatch createBatch(int index) {
+            return new RenderBatch(1000, index, null);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        // a handful of textures so the 8 texture per batch limit comes into play
+        Texture[] textures = new Texture[12];
+        for (int i = 0; i < textures.length; i++) {
+            textures[i] = new Texture(0, 256, 256);
+        }
+
+        gameObjects = new GameObject[numSprites];
+        for (int i = 0; i < numSprites; i++) {
+            GameObject go = new GameObject("sprite" + i,
+                    new Transform(new Vector2f(i % 40 * 32, i / 40 * 32), new Vector2f(32, 32)));
+            go.addComponent(new SpriteRenderer(new Sprite(textures[i % textures.length])));
+            gameObjects[i] = go;
+        }
+    }
+
+    @Benchmark
+    public Renderer add() {
+        Renderer renderer = new HeadlessRenderer();
+        for (int i = 0; i < gameObjects.length; i++) {
+            renderer.add(gameObjects[i]);
+        }
+        return renderer;
+    }
+}
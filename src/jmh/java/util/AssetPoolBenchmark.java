@@ -0,0 +1,27 @@
+package util;
+
+import components.Spritesheet;
+import org.openjdk.jmh.annotations.*;
+import renderer.Texture;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetPoolBenchmark {
+    private static final String PATH = "assets/textures/spritesheet.png";
+
+    @Setup
+    public void setup() {
+        AssetPool.addSpritesheet(PATH, new Spritesheet(new Texture(0, 256, 256), 16, 16, 16, 0));
+    }
+
+    @Benchmark
+    public Spritesheet getSpritesheet() {
+        return AssetPool.getSpritesheet(PATH);
+    }
+}
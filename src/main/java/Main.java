@@ -1,8 +1,112 @@
+import engine.BenchmarkScene;
+import engine.FramePacer;
 import engine.Window;
+import renderer.FrameCapture;
+import renderer.Renderer;
 
 public class Main {
     public static void main(String[] args) {
         Window window = Window.get();
+        int sprites = 10000;
+        float moving = 0.5f;
+        float churn = 0.001f;
+        int particles = 0;
+        String report = "benchmark-report.json";
+        boolean audio = true;
+        String audioDevice = null;
+        String capture = null;
+        FrameCapture.Format captureFormat = FrameCapture.Format.RAW;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--input-thread":
+                    window.setThreadedInput(true);
+                    break;
+                case "--profile":
+                    window.setProfileOutput(args[++i]);
+                    break;
+                case "--headless":
+                    window.setHeadless(true);
+                    break;
+                case "--size":
+                    String[] size = args[++i].split("x");
+                    window.setSize(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+                    break;
+                case "--virtual-resolution":
+                    String[] resolution = args[++i].split("x");
+                    window.setVirtualResolution(Integer.parseInt(resolution[0]), Integer.parseInt(resolution[1]));
+                    break;
+                case "--frames":
+                    window.setMaxFrames(Long.parseLong(args[++i]));
+                    break;
+                case "--seconds":
+                    window.setMaxSeconds(Double.parseDouble(args[++i]));
+                    break;
+                case "--scene":
+                    window.setInitialScene(Integer.parseInt(args[++i]));
+                    break;
+                case "--sprites":
+                    sprites = Integer.parseInt(args[++i]);
+                    break;
+                case "--moving":
+                    moving = Float.parseFloat(args[++i]);
+                    break;
+                case "--churn":
+                    churn = Float.parseFloat(args[++i]);
+                    break;
+                case "--particles":
+                    particles = Integer.parseInt(args[++i]);
+                    break;
+                case "--activity-radius":
+                    BenchmarkScene.setActivityRadius(Float.parseFloat(args[++i]));
+                    break;
+                case "--report":
+                    report = args[++i];
+                    break;
+                case "--multi-draw":
+                    Renderer.setMultiDrawIndirect(true);
+                    break;
+                case "--parallel-batches":
+                    Renderer.setParallelBuild(true);
+                    break;
+                case "--pacing":
+                    window.setFramePacing(FramePacer.Mode.valueOf(args[++i].toUpperCase()));
+                    break;
+                case "--fps":
+                    window.setTargetFps(Double.parseDouble(args[++i]));
+                    break;
+                case "--no-audio":
+                    audio = false;
+                    break;
+                case "--audio-device":
+                    audioDevice = args[++i];
+                    break;
+                case "--music":
+                    window.setMusic(args[++i]);
+                    break;
+                case "--capture":
+                    capture = args[++i];
+                    break;
+                case "--capture-format":
+                    captureFormat = FrameCapture.Format.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--check-allocations":
+                    window.checkAllocations(1200, Long.parseLong(args[++i]));
+                    break;
+                default:
+                    System.out.println("Unknown argument " + args[i]);
+            }
+        }
+
+        BenchmarkScene.configure(sprites, moving, churn, particles, report);
+        window.setAudio(audio, audioDevice);
+        if (capture != null) {
+            window.setCapture(capture, captureFormat);
+        }
         window.run();
+
+        if (!window.passedAllocationCheck()) {
+            System.exit(1);
+        }
     }
 }
@@ -0,0 +1,210 @@
+package audio;
+
+import org.lwjgl.openal.AL;
+import org.lwjgl.openal.ALC;
+import org.lwjgl.openal.ALCCapabilities;
+
+import java.io.File;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.lwjgl.openal.ALC10.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * This is a singleton owning the OpenAL device and context, the sound effect cache and voices,
+ * and the thread that keeps music streams fed.
+ * Without a device every call is a no-op, so the game runs the same on machines without sound.
+ * On a headless box run OpenAL Soft with ALSOFT_DRIVERS=null, or pick its "Wave File Writer"
+ * device with --audio-device and a [wave] file= entry in alsoft.conf to check the output.
+ */
+public class AudioManager {
+    // simultaneous sound effects, music streams have their own sources
+    private static final int NUM_VOICES = 16;
+    // how often the music thread tops the queues up, well under the length of one buffer
+    private static final long STREAM_INTERVAL_MS = 10;
+
+    private static AudioManager instance;
+
+    private long device = NULL;
+    private long context = NULL;
+    private SourcePool voices;
+    // decoded effects by absolute path, loaded from any thread like the AssetPool
+    private final Map<String, Sound> sounds = new ConcurrentHashMap<>();
+    private final List<MusicStream> streams = new CopyOnWriteArrayList<>();
+    private Thread streamThread;
+    private volatile boolean running = false;
+
+    private AudioManager() {
+
+    }
+
+    public static AudioManager get() {
+        if (AudioManager.instance == null) {
+            AudioManager.instance = new AudioManager();
+        }
+        return AudioManager.instance;
+    }
+
+    /**
+     * Open a device and start the music thread
+     * @param deviceName null for the default device
+     * @return false if the device can't be opened, sound stays off
+     */
+    public boolean init(String deviceName) {
+        device = alcOpenDevice(deviceName);
+        if (device == NULL) {
+            System.out.println("[Audio] Can not open " + (deviceName == null ? "the default device" : deviceName) + ", sound is off");
+            return false;
+        }
+        ALCCapabilities deviceCaps = ALC.createCapabilities(device);
+        context = alcCreateContext(device, (IntBuffer) null);
+        // current for the whole process, the music thread and a render thread share it
+        alcMakeContextCurrent(context);
+        AL.createCapabilities(deviceCaps);
+        System.out.println("[Audio] Playing on " + alcGetString(device, ALC_DEVICE_SPECIFIER));
+
+        voices = new SourcePool(NUM_VOICES);
+        running = true;
+        streamThread = new Thread(this::streamLoop, "Audio");
+        streamThread.setDaemon(true);
+        streamThread.start();
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return device != NULL;
+    }
+
+    private void streamLoop() {
+        while (running) {
+            for (MusicStream stream : streams) {
+                stream.update();
+                if (stream.isFinished()) {
+                    stopMusic(stream);
+                }
+            }
+            try {
+                Thread.sleep(STREAM_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sound effect decoded into memory, loaded once per file
+     * @param resourceName ogg vorbis file
+     * @return null when sound is off
+     */
+    public Sound getSound(String resourceName) {
+        if (!isEnabled()) return null;
+
+        File file = new File(resourceName);
+        return sounds.computeIfAbsent(file.getAbsolutePath(), path -> new Sound(resourceName));
+    }
+
+    /**
+     * @see #play(Sound, float, float, int)
+     */
+    public int play(String resourceName) {
+        return play(getSound(resourceName), 1.0f, 1.0f, 0);
+    }
+
+    /**
+     * Play a sound effect on one of the voices, stealing the least important one when they are all busy
+     * @param sound
+     * @param gain 1 is the volume it was recorded at
+     * @param pitch 1 is unchanged
+     * @param priority higher cuts off lower, equal cuts off the oldest
+     * @return the voice playing it, -1 if it was dropped or sound is off
+     */
+    public int play(Sound sound, float gain, float pitch, int priority) {
+        if (sound == null || voices == null) return -1;
+
+        return voices.play(sound, gain, pitch, priority);
+    }
+
+    public void stop(int voice) {
+        if (voices == null) return;
+
+        voices.stop(voice);
+    }
+
+    /**
+     * Start streaming a track, it is decoded bit by bit on the music thread
+     * @param resourceName ogg vorbis file
+     * @param loop start over at the end
+     * @return null when sound is off
+     */
+    public MusicStream playMusic(String resourceName, boolean loop) {
+        if (!isEnabled()) return null;
+
+        MusicStream stream = new MusicStream(resourceName, loop);
+        stream.start();
+        streams.add(stream);
+        return stream;
+    }
+
+    public void stopMusic(MusicStream stream) {
+        if (stream == null) return;
+
+        streams.remove(stream);
+        stream.destroy();
+    }
+
+    /**
+     * Print voice and stream statistics, called on exit
+     */
+    public void printSummary() {
+        if (!isEnabled()) return;
+
+        long soundBytes = 0;
+        for (Sound sound : sounds.values()) {
+            soundBytes += sound.getBytes();
+        }
+        System.out.printf("[Audio] %d sounds in %.1f KB, %d plays on %d voices, %d stole a voice, %d were dropped%n",
+                sounds.size(), soundBytes / 1024.0, voices.getPlays(), voices.getNumVoices(),
+                voices.getStolen(), voices.getDropped());
+        for (MusicStream stream : streams) {
+            System.out.printf("[Audio] %s: %.1f KB, %d underruns%n",
+                    stream, stream.getMemoryBytes() / 1024.0, stream.getUnderruns());
+        }
+    }
+
+    /**
+     * Stop the music thread and free every source, buffer and the device
+     */
+    public void destroy() {
+        if (!isEnabled()) return;
+
+        running = false;
+        streamThread.interrupt();
+        try {
+            streamThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (MusicStream stream : streams) {
+            stream.destroy();
+        }
+        streams.clear();
+        // the voices let go of the buffers before the sounds are deleted
+        voices.destroy();
+        voices = null;
+        for (Sound sound : sounds.values()) {
+            sound.destroy();
+        }
+        sounds.clear();
+
+        alcMakeContextCurrent(NULL);
+        alcDestroyContext(context);
+        alcCloseDevice(device);
+        context = NULL;
+        device = NULL;
+    }
+}
@@ -0,0 +1,282 @@
+package audio;
+
+import org.lwjgl.stb.STBVorbisAlloc;
+import org.lwjgl.stb.STBVorbisInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import static org.lwjgl.openal.AL10.*;
+import static org.lwjgl.stb.STBVorbis.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Music decoded a few thousand samples at a time while it plays instead of all at once.
+ * stb_vorbis decodes into one small staging buffer that refills whichever of the queued OpenAL buffers
+ * the source finished with, so a track of any length holds the same few hundred KB:
+ * the decoder's fixed arena, the staging buffer and the queue.
+ * The AudioManager's thread keeps the queue topped up, the music only stutters if that thread
+ * falls behind by the length of the whole queue, about 370 ms at 44.1 kHz.
+ */
+public class MusicStream {
+    private static final int NUM_BUFFERS = 4;
+    // sample frames per buffer, about 93 ms at 44.1 kHz
+    private static final int BUFFER_FRAMES = 4096;
+    // stb_vorbis allocates everything from this, a file needing more fails to open instead of growing the heap
+    private static final int DECODER_ARENA_BYTES = 256 * 1024;
+
+    private final String filepath;
+    private final boolean loop;
+    private long decoder = NULL;
+    private ByteBuffer arena;
+    private STBVorbisAlloc alloc;
+    // a track that is already in memory instead of a decoder, null when streaming a file
+    private ShortBuffer track;
+    private ShortBuffer pcm;
+    private int channels, sampleRate, format;
+    private int source;
+    private final int[] buffers = new int[NUM_BUFFERS];
+
+    private boolean paused = false;
+    // the decoder reached the end of a track that doesn't loop
+    private boolean finished = false;
+    private boolean destroyed = false;
+    // times the queue ran dry and the source had to be restarted
+    private int underruns = 0;
+
+    /**
+     * Open a ogg vorbis file, nothing is decoded until start
+     * @param filepath
+     * @param loop start over at the end instead of stopping
+     */
+    MusicStream(String filepath, boolean loop) {
+        this.filepath = filepath;
+        this.loop = loop;
+
+        arena = memAlloc(DECODER_ARENA_BYTES);
+        alloc = STBVorbisAlloc.malloc().alloc_buffer(arena);
+        int[] error = new int[1];
+        decoder = stb_vorbis_open_filename(filepath, error, alloc);
+        if (decoder == NULL) {
+            assert false : "[Error][MusicStream] Can not open " + filepath + (error[0] == VORBIS_outofmem
+                    ? ", it needs more than " + DECODER_ARENA_BYTES + " bytes to decode"
+                    : ", stb_vorbis error " + error[0]);
+            finished = true;
+            return;
+        }
+
+        try (STBVorbisInfo info = STBVorbisInfo.malloc()) {
+            stb_vorbis_get_info(decoder, info);
+            channels = info.channels();
+            sampleRate = info.sample_rate();
+        }
+        createSource();
+    }
+
+    /**
+     * Stream a track that is already in memory, like a generated one, through the same queue as a file
+     * @param name shown in logs
+     * @param track 16 bit samples from its position to its limit, interleaved for stereo, not copied
+     * @param channels 1 or 2
+     * @param sampleRate
+     * @param loop start over at the end instead of stopping
+     */
+    MusicStream(String name, ShortBuffer track, int channels, int sampleRate, boolean loop) {
+        this.filepath = name;
+        this.loop = loop;
+        this.track = track.slice();
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        createSource();
+    }
+
+    private void createSource() {
+        format = channels == 1 ? AL_FORMAT_MONO16 : AL_FORMAT_STEREO16;
+        pcm = memAllocShort(BUFFER_FRAMES * channels);
+
+        source = alGenSources();
+        alSourcei(source, AL_SOURCE_RELATIVE, AL_TRUE);
+        alGenBuffers(buffers);
+    }
+
+    /**
+     * Decode the first buffers and start playing
+     */
+    synchronized void start() {
+        if (!isOpen()) return;
+
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            if (!fill(buffers[i])) break;
+            alSourceQueueBuffers(source, buffers[i]);
+        }
+        alSourcePlay(source);
+    }
+
+    /**
+     * Refill the buffers the source is done with, called by the audio thread every few ms
+     */
+    synchronized void update() {
+        if (destroyed || !isOpen()) return;
+
+        int processed = alGetSourcei(source, AL_BUFFERS_PROCESSED);
+        for (int i = 0; i < processed; i++) {
+            int buffer = alSourceUnqueueBuffers(source);
+            if (fill(buffer)) {
+                alSourceQueueBuffers(source, buffer);
+            }
+        }
+
+        // a source that plays every queued buffer stops by itself, even if more is coming
+        if (!paused && alGetSourcei(source, AL_SOURCE_STATE) == AL_STOPPED
+                && alGetSourcei(source, AL_BUFFERS_QUEUED) > 0) {
+            underruns++;
+            alSourcePlay(source);
+        }
+    }
+
+    /**
+     * Decode the next BUFFER_FRAMES into a buffer, wrapping around for looping tracks
+     * @return false if the track is over
+     */
+    private boolean fill(int buffer) {
+        if (finished) return false;
+
+        pcm.clear();
+        int frames = decode();
+        while (loop && frames < BUFFER_FRAMES) {
+            seekStart();
+            // the decoder writes from the buffer's position
+            pcm.position(frames * channels);
+            int more = decode();
+            if (more == 0) break;
+            frames += more;
+        }
+        if (frames == 0) {
+            finished = true;
+            return false;
+        }
+
+        pcm.position(0).limit(frames * channels);
+        alBufferData(buffer, format, pcm, sampleRate);
+        return true;
+    }
+
+    /**
+     * Decode from the staging buffer's position to its limit, the position stays where it is
+     * @return sample frames written
+     */
+    private int decode() {
+        if (track == null) {
+            return stb_vorbis_get_samples_short_interleaved(decoder, channels, pcm);
+        }
+
+        int count = Math.min(pcm.remaining(), track.remaining());
+        int start = pcm.position();
+        for (int i = 0; i < count; i++) {
+            pcm.put(start + i, track.get());
+        }
+        return count / channels;
+    }
+
+    private void seekStart() {
+        if (track == null) {
+            stb_vorbis_seek_start(decoder);
+        } else {
+            track.position(0);
+        }
+    }
+
+    /**
+     * False if the file failed to open or the stream was destroyed
+     */
+    private boolean isOpen() {
+        return decoder != NULL || track != null;
+    }
+
+    public synchronized void pause() {
+        if (destroyed || !isOpen()) return;
+
+        paused = true;
+        alSourcePause(source);
+    }
+
+    public synchronized void resume() {
+        if (destroyed || !isOpen()) return;
+
+        paused = false;
+        alSourcePlay(source);
+    }
+
+    /**
+     * @param gain 1 is the volume it was recorded at
+     */
+    public synchronized void setGain(float gain) {
+        if (destroyed || !isOpen()) return;
+
+        alSourcef(source, AL_GAIN, gain);
+    }
+
+    /**
+     * Stop and free the stream, same as AudioManager.stopMusic
+     */
+    public void stop() {
+        AudioManager.get().stopMusic(this);
+    }
+
+    /**
+     * If the source is playing right now, false while paused, after the queue ran dry until the next update,
+     * or once the track is over
+     */
+    public synchronized boolean isPlaying() {
+        return !destroyed && isOpen() && alGetSourcei(source, AL_SOURCE_STATE) == AL_PLAYING;
+    }
+
+    /**
+     * If the last buffer of a track that doesn't loop was played, or it failed to open
+     */
+    synchronized boolean isFinished() {
+        return destroyed || finished && (!isOpen() || alGetSourcei(source, AL_SOURCE_STATE) == AL_STOPPED);
+    }
+
+    /**
+     * Free the source, the buffers and the decoder
+     */
+    synchronized void destroy() {
+        if (destroyed) return;
+
+        destroyed = true;
+        if (isOpen()) {
+            alSourceStop(source);
+            // detaches every queued buffer so they can be deleted
+            alSourcei(source, AL_BUFFER, 0);
+            alDeleteSources(source);
+            alDeleteBuffers(buffers);
+            if (decoder != NULL) {
+                stb_vorbis_close(decoder);
+                decoder = NULL;
+            }
+            track = null;
+            memFree(pcm);
+        }
+        if (alloc != null) {
+            alloc.free();
+            memFree(arena);
+        }
+    }
+
+    public int getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * Native memory held while playing, the same for a jingle and an hour long track
+     */
+    public long getMemoryBytes() {
+        return (arena == null ? 0 : DECODER_ARENA_BYTES) + (long) (NUM_BUFFERS + 1) * BUFFER_FRAMES * channels * Short.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "MusicStream " + filepath;
+    }
+}
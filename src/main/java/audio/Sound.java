@@ -0,0 +1,97 @@
+package audio;
+
+import org.lwjgl.stb.STBVorbisInfo;
+
+import java.nio.ShortBuffer;
+
+import static org.lwjgl.openal.AL10.*;
+import static org.lwjgl.stb.STBVorbis.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * A short sound effect, decoded completely into one OpenAL buffer so it can start on any source instantly.
+ * Music should be a MusicStream instead, a decoded minute of stereo is 10 MB.
+ */
+public class Sound {
+    private final String filepath;
+    private int bufferID;
+    private int sampleRate, channels, samples;
+
+    /**
+     * Decode an ogg vorbis file on the calling thread
+     * @param filepath
+     */
+    Sound(String filepath) {
+        this.filepath = filepath;
+
+        int[] error = new int[1];
+        long decoder = stb_vorbis_open_filename(filepath, error, null);
+        if (decoder == NULL) {
+            assert false : "[Error][Sound] Can not decode " + filepath + ", stb_vorbis error " + error[0];
+            return;
+        }
+
+        try (STBVorbisInfo info = STBVorbisInfo.malloc()) {
+            stb_vorbis_get_info(decoder, info);
+            sampleRate = info.sample_rate();
+            channels = info.channels();
+        }
+        ShortBuffer pcm = memAllocShort(stb_vorbis_stream_length_in_samples(decoder) * channels);
+        samples = stb_vorbis_get_samples_short_interleaved(decoder, channels, pcm);
+        stb_vorbis_close(decoder);
+        pcm.limit(samples * channels);
+
+        upload(pcm);
+        memFree(pcm);
+    }
+
+    /**
+     * A sound from samples already in memory, like a generated tone
+     * @param name shown in logs
+     * @param pcm 16 bit samples from its position to its limit, interleaved for stereo
+     * @param channels 1 or 2
+     * @param sampleRate
+     */
+    Sound(String name, ShortBuffer pcm, int channels, int sampleRate) {
+        this.filepath = name;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.samples = pcm.remaining() / channels;
+        upload(pcm);
+    }
+
+    private void upload(ShortBuffer pcm) {
+        bufferID = alGenBuffers();
+        alBufferData(bufferID, channels == 1 ? AL_FORMAT_MONO16 : AL_FORMAT_STEREO16, pcm, sampleRate);
+    }
+
+    /**
+     * Delete the buffer, no source may still be playing it
+     */
+    void destroy() {
+        if (bufferID == 0) return;
+
+        alDeleteBuffers(bufferID);
+        bufferID = 0;
+    }
+
+    int getBufferID() {
+        return bufferID;
+    }
+
+    public float getSeconds() {
+        return sampleRate == 0 ? 0 : samples / (float) sampleRate;
+    }
+
+    /**
+     * Memory held by the OpenAL buffer
+     */
+    public long getBytes() {
+        return (long) samples * channels * Short.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "Sound " + filepath;
+    }
+}
@@ -0,0 +1,117 @@
+package audio;
+
+import static org.lwjgl.openal.AL10.*;
+
+/**
+ * Fixed set of OpenAL sources shared by every sound effect, created once so playing never allocates one.
+ * A sound takes a source that finished playing, or when all of them are busy steals the one
+ * with the lowest priority that started first. A sound never steals from a more important one,
+ * it is dropped instead.
+ * Only touched from the thread running the scene.
+ */
+class SourcePool {
+    private final int[] sources;
+    private final int[] priorities;
+    // play order, the oldest of equally important voices is stolen first
+    private final long[] startedAt;
+    private long plays = 0;
+    private int stolen = 0;
+    private int dropped = 0;
+
+    SourcePool(int size) {
+        sources = new int[size];
+        priorities = new int[size];
+        startedAt = new long[size];
+        alGenSources(sources);
+        for (int i = 0; i < size; i++) {
+            // effects are not positioned, they play at the listener
+            alSourcei(sources[i], AL_SOURCE_RELATIVE, AL_TRUE);
+        }
+    }
+
+    /**
+     * Start a sound on a free or stolen source
+     * @param sound
+     * @param gain 1 is the volume it was recorded at
+     * @param pitch 1 is unchanged, 2 an octave up
+     * @param priority higher steals from lower, equal steals from older
+     * @return the voice playing it, -1 if every voice is busy with something more important
+     */
+    int play(Sound sound, float gain, float pitch, int priority) {
+        int voice = -1;
+        for (int i = 0; i < sources.length; i++) {
+            if (alGetSourcei(sources[i], AL_SOURCE_STATE) != AL_PLAYING) {
+                voice = i;
+                break;
+            }
+        }
+
+        if (voice < 0) {
+            for (int i = 0; i < sources.length; i++) {
+                if (priorities[i] > priority) continue;
+                if (voice < 0 || priorities[i] < priorities[voice]
+                        || (priorities[i] == priorities[voice] && startedAt[i] < startedAt[voice])) {
+                    voice = i;
+                }
+            }
+            if (voice < 0) {
+                dropped++;
+                return -1;
+            }
+            stolen++;
+        }
+
+        int source = sources[voice];
+        alSourceStop(source);
+        alSourcei(source, AL_BUFFER, sound.getBufferID());
+        alSourcef(source, AL_GAIN, gain);
+        alSourcef(source, AL_PITCH, pitch);
+        alSourcePlay(source);
+        priorities[voice] = priority;
+        startedAt[voice] = plays++;
+        return voice;
+    }
+
+    void stop(int voice) {
+        if (voice < 0 || voice >= sources.length) return;
+
+        alSourceStop(sources[voice]);
+    }
+
+    /**
+     * Stop every voice and let go of their buffers, so the sounds can be deleted
+     */
+    void stopAll() {
+        for (int i = 0; i < sources.length; i++) {
+            alSourceStop(sources[i]);
+            alSourcei(sources[i], AL_BUFFER, 0);
+        }
+    }
+
+    void destroy() {
+        stopAll();
+        alDeleteSources(sources);
+    }
+
+    int getNumVoices() {
+        return sources.length;
+    }
+
+    long getPlays() {
+        return plays;
+    }
+
+    /**
+     * Plays that cut off a playing sound
+     */
+    int getStolen() {
+        return stolen;
+    }
+
+    /**
+     * Plays that were skipped because every voice was more important
+     */
+    int getDropped() {
+        return dropped;
+    }
+}
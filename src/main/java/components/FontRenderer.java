@@ -1,16 +1,134 @@
 package components;
 
 import engine.Component;
+import engine.GameObject;
+import engine.Tickable;
+import engine.Transform;
+import engine.UpdatePhase;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+import renderer.FontAtlas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a string with a font atlas, one sprite per glyph so text batches with everything else.
+ * The game object's position is the start of the first baseline.
+ * Glyphs are children of the text's game object, so moving the text moves them without a new layout.
+ * Glyphs are only laid out again when the text or color changes,
+ * so a counter that changes once a second costs nothing the other frames.
+ */
+public class FontRenderer extends Component implements Tickable {
+    private FontAtlas font;
+    private String text;
+    private Vector4f color = new Vector4f(1, 1, 1, 1);
+
+    // one game object per glyph, kept around when the text gets shorter
+    private List<GameObject> glyphs = new ArrayList<>();
+    private int visibleGlyphs = 0;
+    private boolean isDirty = true;
+
+    public FontRenderer(FontAtlas font, String text) {
+        this.font = font;
+        this.text = text;
+    }
 
-public class FontRenderer extends Component {
     @Override
     public void start() {
-        if (gameObject.getComponent(SpriteRenderer.class) != null) {
-            System.out.println("found sprite renderer");
-        }
+        layout();
     }
+
+    @Override
+    public UpdatePhase getUpdatePhase() {
+        // text set by other components this frame is laid out before rendering
+        return UpdatePhase.LATE_UPDATE;
+    }
+
     @Override
     public void update(float dt) {
+        if (isDirty) {
+            layout();
+        }
+    }
+
+    /**
+     * Place a sprite for every glyph of the text and hide the glyphs left over from longer text
+     */
+    private void layout() {
+        // relative to the text's game object
+        float penX = 0;
+        float penY = 0;
+        int used = 0;
+
+        for (int i = 0; i < text.length(); ) {
+            int codepoint = text.codePointAt(i);
+            i += Character.charCount(codepoint);
+
+            if (codepoint == '\n') {
+                penX = 0;
+                penY -= font.getLineHeight();
+                continue;
+            }
+
+            FontAtlas.Glyph glyph = font.getGlyph(codepoint);
+            if (glyph.getWidth() > 0) {
+                GameObject go = glyph(used++);
+                go.transform.position.set(penX + glyph.getOffsetX(), penY + glyph.getOffsetY());
+                go.transform.scale.set(glyph.getWidth(), glyph.getHeight());
+
+                // glyphs don't update themselves, under ActivityRegions nothing else would notice the move
+                go.refreshTransform();
 
+                SpriteRenderer spr = go.getComponent(SpriteRenderer.class);
+                spr.setSprite(glyph.getSprite());
+                spr.setColor(color);
+            }
+
+            penX += glyph.getAdvance();
+            if (i < text.length()) {
+                penX += font.getKerning(codepoint, text.codePointAt(i));
+            }
+        }
+
+        // zero sized quads draw nothing and keep their slot in the batch for later text
+        for (int i = used; i < visibleGlyphs; i++) {
+            glyphs.get(i).transform.scale.set(0, 0);
+            glyphs.get(i).refreshTransform();
+        }
+
+        visibleGlyphs = used;
+        isDirty = false;
+    }
+
+    private GameObject glyph(int index) {
+        if (index < glyphs.size()) {
+            return glyphs.get(index);
+        }
+
+        GameObject go = new GameObject("glyph", new Transform(new Vector2f(), new Vector2f()));
+        go.addComponent(new SpriteRenderer(font.getGlyph(' ').getSprite()));
+        glyphs.add(go);
+        gameObject.addChild(go);
+        gameObject.getScene().addGameObjectToScene(go);
+        return go;
+    }
+
+    public void setText(String text) {
+        if (!this.text.equals(text)) {
+            this.text = text;
+            this.isDirty = true;
+        }
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setColor(Vector4f color) {
+        if (!this.color.equals(color)) {
+            this.color.set(color);
+            this.isDirty = true;
+        }
     }
 }
@@ -0,0 +1,41 @@
+package components;
+
+import engine.Camera;
+import engine.Component;
+import engine.Tickable;
+import engine.UpdatePhase;
+import engine.Window;
+import org.joml.Vector2f;
+import renderer.DebugDraw;
+
+/**
+ * Level editor grid over the part of the world the camera sees, drawn with debug lines
+ */
+public class GridLines extends Component implements Tickable {
+    private static final float GRID_SIZE = 32.0f;
+
+    @Override
+    public UpdatePhase getUpdatePhase() {
+        // after whatever moved the camera this frame
+        return UpdatePhase.LATE_UPDATE;
+    }
+
+    @Override
+    public void update(float dt) {
+        if (!DebugDraw.ENABLED) return;
+
+        Camera camera = Window.getScene().camera();
+        Vector2f position = camera.position;
+        float firstX = (float) Math.floor(position.x / GRID_SIZE) * GRID_SIZE;
+        float firstY = (float) Math.floor(position.y / GRID_SIZE) * GRID_SIZE;
+        float right = position.x + camera.getProjectionWidth();
+        float top = position.y + camera.getProjectionHeight();
+
+        for (float x = firstX; x <= right; x += GRID_SIZE) {
+            DebugDraw.addLine2D(x, firstY, x, top, 0.2f, 0.2f, 0.2f, 1);
+        }
+        for (float y = firstY; y <= top; y += GRID_SIZE) {
+            DebugDraw.addLine2D(firstX, y, right, y, 0.2f, 0.2f, 0.2f, 1);
+        }
+    }
+}
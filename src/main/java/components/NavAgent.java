@@ -0,0 +1,66 @@
+package components;
+
+import engine.Component;
+import engine.GameObject;
+import engine.Tickable;
+import navigation.FlowField;
+import navigation.NavGrid;
+import navigation.Navigator;
+import org.joml.Vector2f;
+
+/**
+ * Walks its game object toward a target game object along the Navigator's shared flow field,
+ * tile center to tile center. Agents chasing the same target read the same field, so each one costs
+ * a lookup and a few array reads per frame.
+ */
+public class NavAgent extends Component implements Tickable {
+    private final Navigator navigator;
+    private GameObject target;
+    // world units per second
+    private float speed;
+
+    public NavAgent(Navigator navigator, GameObject target, float speed) {
+        this.navigator = navigator;
+        this.target = target;
+        this.speed = speed;
+    }
+
+    @Override
+    public void update(float dt) {
+        if (target == null || target.isDead()) return;
+
+        NavGrid grid = navigator.getGrid();
+        Vector2f position = gameObject.transform.position;
+        Vector2f scale = gameObject.transform.scale;
+        // positions are bottom left corners, agents are placed by their center
+        float centerX = position.x + scale.x / 2;
+        float centerY = position.y + scale.y / 2;
+        int x = grid.tileX(centerX), y = grid.tileY(centerY);
+        if (!grid.contains(x, y)) return;
+
+        Vector2f targetPosition = target.transform.position;
+        Vector2f targetScale = target.transform.scale;
+        FlowField field = navigator.getFlowField(targetPosition.x + targetScale.x / 2, targetPosition.y + targetScale.y / 2);
+        if (field == null) return;
+
+        int next = field.next(grid.index(x, y));
+        if (next < 0) return;
+
+        float dx = grid.centerX(next) - centerX;
+        float dy = grid.centerY(next) - centerY;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        float step = Math.min(speed * dt, length);
+        if (length > 0) {
+            position.x += dx / length * step;
+            position.y += dy / length * step;
+        }
+    }
+
+    public void setTarget(GameObject target) {
+        this.target = target;
+    }
+
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+}
@@ -0,0 +1,279 @@
+package components;
+
+import engine.Component;
+import engine.Tickable;
+import org.joml.Vector4f;
+import renderer.Texture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool of short lived particles spawned around the game object.
+ * Particles are not game objects, their state lives in flat preallocated arrays and
+ * the live ones are packed at the front, so updating and drawing them never allocates.
+ */
+public class ParticleEmitter extends Component implements Tickable {
+    private final int maxParticles;
+    private int numParticles = 0;
+
+    // per particle state, only [0, numParticles) is alive
+    private final float[] x, y, vx, vy;
+    private final float[] age, life;
+    private final float[] r, g, b, a;
+    private final int[] frame;
+
+    // sprites to pick from, all sharing one texture so the emitter is a single draw
+    private Sprite[] sprites;
+    // step through the sprites over a particle's life instead of picking one at random
+    private boolean animated = false;
+
+    // particles emitted per second, fractions carry over to the next frame
+    private float rate = 0;
+    private float emitDebt = 0;
+    private float minLife = 0.5f, maxLife = 1.0f;
+    private float minSpeed = 50, maxSpeed = 100;
+    // emission direction range in radians, 0 points right
+    private float minAngle = 0, maxAngle = (float) (Math.PI * 2);
+    private float gravity = 0;
+    private float startSize = 8, endSize = 8;
+    private final Vector4f startColor = new Vector4f(1, 1, 1, 1);
+    private final Vector4f endColor = new Vector4f(1, 1, 1, 0);
+
+    // xorshift state, java.util.Random would be a CAS per number
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    public ParticleEmitter(int maxParticles, Sprite... sprites) {
+        this.maxParticles = maxParticles;
+        this.x = new float[maxParticles];
+        this.y = new float[maxParticles];
+        this.vx = new float[maxParticles];
+        this.vy = new float[maxParticles];
+        this.age = new float[maxParticles];
+        this.life = new float[maxParticles];
+        this.r = new float[maxParticles];
+        this.g = new float[maxParticles];
+        this.b = new float[maxParticles];
+        this.a = new float[maxParticles];
+        this.frame = new int[maxParticles];
+        setSprites(sprites);
+    }
+
+    @Override
+    public void update(float dt) {
+        if (rate > 0) {
+            emitDebt += rate * dt;
+            int count = (int) emitDebt;
+            emitDebt -= count;
+            burst(count);
+        }
+
+        int numFrames = sprites.length;
+        int i = 0;
+        while (i < numParticles) {
+            float t = age[i] + dt;
+            if (t >= life[i]) {
+                // move the last particle into the dead one's slot and look at it again
+                numParticles--;
+                copy(numParticles, i);
+                continue;
+            }
+            age[i] = t;
+
+            vy[i] += gravity * dt;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+
+            float k = t / life[i];
+            r[i] = startColor.x + (endColor.x - startColor.x) * k;
+            g[i] = startColor.y + (endColor.y - startColor.y) * k;
+            b[i] = startColor.z + (endColor.z - startColor.z) * k;
+            a[i] = startColor.w + (endColor.w - startColor.w) * k;
+            if (animated && numFrames > 0) {
+                frame[i] = Math.min(numFrames - 1, (int) (k * numFrames));
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Spawn particles at the game object's position, anything past the pool size is dropped
+     * @param count
+     */
+    public void burst(int count) {
+        float originX = gameObject.transform.getWorldPosition().x;
+        float originY = gameObject.transform.getWorldPosition().y;
+        int numFrames = sprites.length;
+
+        count = Math.min(count, maxParticles - numParticles);
+        for (int n = 0; n < count; n++) {
+            int i = numParticles++;
+            float angle = minAngle + (maxAngle - minAngle) * nextFloat();
+            float speed = minSpeed + (maxSpeed - minSpeed) * nextFloat();
+            x[i] = originX;
+            y[i] = originY;
+            vx[i] = (float) Math.cos(angle) * speed;
+            vy[i] = (float) Math.sin(angle) * speed;
+            age[i] = 0;
+            life[i] = minLife + (maxLife - minLife) * nextFloat();
+            r[i] = startColor.x;
+            g[i] = startColor.y;
+            b[i] = startColor.z;
+            a[i] = startColor.w;
+            frame[i] = animated || numFrames == 0 ? 0 : (int) (nextFloat() * numFrames);
+        }
+    }
+
+    private void copy(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        age[to] = age[from];
+        life[to] = life[from];
+        r[to] = r[from];
+        g[to] = g[from];
+        b[to] = b[from];
+        a[to] = a[from];
+        frame[to] = frame[from];
+    }
+
+    /**
+     * Live particles and the random state, so a restored emitter goes on exactly as it did
+     */
+    @Override
+    public void save(ByteBuffer out) {
+        out.putInt(numParticles).putFloat(emitDebt).putLong(seed);
+        for (int i = 0; i < numParticles; i++) {
+            out.putFloat(x[i]).putFloat(y[i]).putFloat(vx[i]).putFloat(vy[i])
+                    .putFloat(age[i]).putFloat(life[i]).putInt(frame[i]);
+        }
+    }
+
+    @Override
+    public void load(ByteBuffer in) {
+        numParticles = in.getInt();
+        emitDebt = in.getFloat();
+        seed = in.getLong();
+        for (int i = 0; i < numParticles; i++) {
+            x[i] = in.getFloat();
+            y[i] = in.getFloat();
+            vx[i] = in.getFloat();
+            vy[i] = in.getFloat();
+            age[i] = in.getFloat();
+            life[i] = in.getFloat();
+            frame[i] = in.getInt();
+            // colors follow from the age
+            float k = age[i] / life[i];
+            r[i] = startColor.x + (endColor.x - startColor.x) * k;
+            g[i] = startColor.y + (endColor.y - startColor.y) * k;
+            b[i] = startColor.z + (endColor.z - startColor.z) * k;
+            a[i] = startColor.w + (endColor.w - startColor.w) * k;
+        }
+    }
+
+    private float nextFloat() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (seed >>> 40) * 0x1.0p-24f;
+    }
+
+    public void setSprites(Sprite... sprites) {
+        for (int i = 1; i < sprites.length; i++) {
+            assert sprites[i].getTexture() == sprites[0].getTexture() : "Error: particle sprites must share one texture";
+        }
+        this.sprites = sprites;
+    }
+
+    public void setAnimated(boolean animated) {
+        this.animated = animated;
+    }
+
+    public void setRate(float particlesPerSecond) {
+        this.rate = particlesPerSecond;
+    }
+
+    public void setLife(float min, float max) {
+        this.minLife = min;
+        this.maxLife = max;
+    }
+
+    public void setSpeed(float min, float max) {
+        this.minSpeed = min;
+        this.maxSpeed = max;
+    }
+
+    /**
+     * Range of emission directions in radians, 0 points right and PI / 2 up
+     */
+    public void setAngle(float min, float max) {
+        this.minAngle = min;
+        this.maxAngle = max;
+    }
+
+    public void setGravity(float gravity) {
+        this.gravity = gravity;
+    }
+
+    public void setSize(float start, float end) {
+        this.startSize = start;
+        this.endSize = end;
+    }
+
+    public void setColor(Vector4f start, Vector4f end) {
+        this.startColor.set(start);
+        this.endColor.set(end);
+    }
+
+    public void setSeed(long seed) {
+        // xorshift is stuck at 0
+        this.seed = seed == 0 ? 1 : seed;
+    }
+
+    public int getNumParticles() {
+        return numParticles;
+    }
+
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getY(int i) {
+        return y[i];
+    }
+
+    public float getSize(int i) {
+        return startSize + (endSize - startSize) * (age[i] / life[i]);
+    }
+
+    public float getR(int i) {
+        return r[i];
+    }
+
+    public float getG(int i) {
+        return g[i];
+    }
+
+    public float getB(int i) {
+        return b[i];
+    }
+
+    public float getA(int i) {
+        return a[i];
+    }
+
+    /**
+     * Sprite of a particle, null when the emitter only draws colored quads
+     */
+    public Sprite getSprite(int i) {
+        return sprites.length == 0 ? null : sprites[frame[i]];
+    }
+
+    public Texture getTexture() {
+        return sprites.length == 0 ? null : sprites[0].getTexture();
+    }
+}
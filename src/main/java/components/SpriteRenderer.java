@@ -5,11 +5,17 @@ import org.joml.Vector2f;
 import org.joml.Vector4f;
 import renderer.Texture;
 
+import java.nio.ByteBuffer;
+
 public class SpriteRenderer extends Component {
 
     private Vector4f color;
     private Sprite sprite;
 
+    // transform version as of the last vertex rebuild, used to detect movement
+    private int lastTransformVersion;
+    private boolean isDirty = true;
+
     public SpriteRenderer(Vector4f color) {
         this.color = color;
         this.sprite = new Sprite(null);
@@ -20,10 +26,17 @@ public class SpriteRenderer extends Component {
         this.color = new Vector4f(1, 1, 1, 1);
     }
     @Override
-    public void start() {
+    public void save(ByteBuffer out) {
+        out.putFloat(color.x).putFloat(color.y).putFloat(color.z).putFloat(color.w);
     }
+
     @Override
-    public void update(float dt) {
+    public void load(ByteBuffer in) {
+        float r = in.getFloat(), g = in.getFloat(), b = in.getFloat(), a = in.getFloat();
+        if (color.x != r || color.y != g || color.z != b || color.w != a) {
+            color.set(r, g, b, a);
+            isDirty = true;
+        }
     }
 
     public Vector4f getColor() {
@@ -37,4 +50,30 @@ public class SpriteRenderer extends Component {
     public Texture getTexture() {
         return this.sprite.getTexture();
     }
+
+    public void setSprite(Sprite sprite) {
+        if (this.sprite != sprite) {
+            this.sprite = sprite;
+            this.isDirty = true;
+        }
+    }
+
+    public void setColor(Vector4f color) {
+        if (!this.color.equals(color)) {
+            this.color.set(color);
+            this.isDirty = true;
+        }
+    }
+
+    /**
+     * If the sprite's vertices need to be rebuilt
+     */
+    public boolean isDirty() {
+        return this.isDirty || this.lastTransformVersion != gameObject.transform.getVersion();
+    }
+
+    public void setClean() {
+        this.isDirty = false;
+        this.lastTransformVersion = gameObject.transform.getVersion();
+    }
 }
@@ -0,0 +1,277 @@
+package engine;
+
+import org.joml.Vector2f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulation level of detail: only the game objects around the camera are updated every frame.
+ * Objects are binned by position into square cells of a spatial hash. Cells within activeRadius
+ * of the center of the view update every frame, cells out to tickedRadius every tickInterval frames
+ * with the time they missed, staggered so only a share of them runs on any one frame.
+ * Everything further away sleeps, so the update cost follows what is around the camera instead of the scene size.
+ * A sleeping object is frozen: when it wakes it gets that frame's dt, not the time it slept.
+ * Which objects run on a frame only depends on positions and the frame number, replaying the same input
+ * updates the same objects. The regions only pick the objects, their components run through the scene's
+ * UpdateScheduler like without regions: phase by phase, class by class.
+ * The transform hierarchy pass over every object never runs, objects that move themselves are refreshed
+ * right away with their children. Like inside a static subtree, moving another object from an update
+ * needs a refreshTransform on it, the way FontRenderer does for its glyphs.
+ */
+public class ActivityRegions {
+    // a fixed table of lists, cells hashing to the same bucket share it, so lookups never allocate
+    private static final int NUM_BUCKETS = 4096;
+
+    private final float cellSize;
+    private final float activeRadius;
+    private final float tickedRadius;
+    private final int tickInterval;
+
+    private final List<List<GameObject>> buckets = new ArrayList<>(NUM_BUCKETS);
+    // woken by an event, updated every frame wherever they are until their time runs out
+    private final List<GameObject> awake = new ArrayList<>();
+    // picked this frame, with their position and scale from before the update
+    private final List<GameObject> selected = new ArrayList<>();
+    private float[] selectedValues = new float[4 * 256];
+
+    private long frame = 0;
+    private double time = 0;
+    private int updated = 0;
+    private long totalUpdated = 0;
+
+    /**
+     * @param cellSize world units per side of a cell, around the size of the active area divided by 4
+     * @param activeRadius half the side of the square around the center of the view updated every frame
+     * @param tickedRadius half the side of the square updated at a lower rate, 0 to sleep everything outside the active one
+     * @param tickInterval frames between two updates in the ticked square
+     */
+    public ActivityRegions(float cellSize, float activeRadius, float tickedRadius, int tickInterval) {
+        assert tickInterval > 0 : "Error: tick interval must be at least 1";
+        this.cellSize = cellSize;
+        this.activeRadius = activeRadius;
+        this.tickedRadius = Math.max(activeRadius, tickedRadius);
+        this.tickInterval = tickInterval;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Pick the objects in the regions around the camera and the ones woken by events,
+     * and queue their components on the scheduler
+     * @param camera
+     * @param dt
+     * @param scheduler run with updateSelected next, then call afterUpdate
+     */
+    void select(Camera camera, float dt, UpdateScheduler scheduler) {
+        time += dt;
+        updated = 0;
+
+        float centerX = camera.position.x + camera.getProjectionWidth() / 2;
+        float centerY = camera.position.y + camera.getProjectionHeight() / 2;
+        int activeMinX = cell(centerX - activeRadius), activeMaxX = cell(centerX + activeRadius);
+        int activeMinY = cell(centerY - activeRadius), activeMaxY = cell(centerY + activeRadius);
+        int tickedMinX = cell(centerX - tickedRadius), tickedMaxX = cell(centerX + tickedRadius);
+        int tickedMinY = cell(centerY - tickedRadius), tickedMaxY = cell(centerY + tickedRadius);
+
+        for (int y = tickedMinY; y <= tickedMaxY; y++) {
+            for (int x = tickedMinX; x <= tickedMaxX; x++) {
+                boolean active = x >= activeMinX && x <= activeMaxX && y >= activeMinY && y <= activeMaxY;
+                // every ticked cell runs once per interval, neighbours on different frames
+                if (!active && Math.floorMod(frame + x * 7L + y * 13L, tickInterval) != 0) continue;
+
+                selectCell(x, y, dt, scheduler);
+            }
+        }
+
+        for (int i = awake.size() - 1; i >= 0; i--) {
+            GameObject go = awake.get(i);
+            if (go.isDead() || frame >= go.awakeUntil) {
+                awake.set(i, awake.get(awake.size() - 1));
+                awake.remove(awake.size() - 1);
+                continue;
+            }
+            selectObject(go, dt, scheduler);
+        }
+        totalUpdated += updated;
+    }
+
+    /**
+     * Refresh the objects that moved themselves and put them in the cell of their new position,
+     * called after the scheduler ran the selected components
+     */
+    void afterUpdate() {
+        for (int i = 0; i < selected.size(); i++) {
+            GameObject go = selected.get(i);
+            // removed by another object's update, the scene drops it
+            if (go.isDead()) continue;
+
+            Transform t = go.transform;
+            int v = i * 4;
+            // the scene skips the hierarchy pass over every object, refresh the ones that moved
+            if (t.position.x != selectedValues[v] || t.position.y != selectedValues[v + 1]
+                    || t.scale.x != selectedValues[v + 2] || t.scale.y != selectedValues[v + 3]) {
+                go.refreshTransform();
+                // children are binned by world position, the ones not picked this frame moved too
+                rebinTree(go);
+            } else {
+                rebin(go);
+            }
+        }
+        selected.clear();
+        frame++;
+    }
+
+    private void selectCell(int x, int y, float dt, UpdateScheduler scheduler) {
+        List<GameObject> bucket = buckets.get(bucket(x, y));
+        // backwards, a dead object is swapped with the last one which was already seen
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            if (i >= bucket.size()) continue;
+
+            GameObject go = bucket.get(i);
+            if (go.isDead()) {
+                remove(go);
+                continue;
+            }
+            // another cell sharing the bucket
+            if (go.cellX != x || go.cellY != y) continue;
+
+            selectObject(go, dt, scheduler);
+        }
+    }
+
+    private void selectObject(GameObject go, float dt, UpdateScheduler scheduler) {
+        // awake and in the active region
+        if (go.lastUpdateFrame == frame) return;
+
+        // coming from a ticked cell it gets the time it missed, waking up from sleep only this frame's
+        boolean wasAsleep = go.lastUpdateFrame < 0 || frame - go.lastUpdateFrame > 2L * tickInterval;
+        go.updateDt = wasAsleep ? dt : (float) (time - go.lastUpdateTime);
+        go.lastUpdateFrame = frame;
+        go.lastUpdateTime = time;
+
+        int v = selected.size() * 4;
+        if (v == selectedValues.length) {
+            float[] values = new float[v * 2];
+            System.arraycopy(selectedValues, 0, values, 0, v);
+            selectedValues = values;
+        }
+        Transform t = go.transform;
+        selectedValues[v] = t.position.x;
+        selectedValues[v + 1] = t.position.y;
+        selectedValues[v + 2] = t.scale.x;
+        selectedValues[v + 3] = t.scale.y;
+        selected.add(go);
+
+        scheduler.select(go);
+        updated++;
+    }
+
+    /**
+     * Keep an object updating every frame wherever it is, e.g. after it was hit by something
+     * @param go
+     * @param frames number of frames it stays awake
+     */
+    public void wake(GameObject go, int frames) {
+        if (go.awakeUntil <= frame) {
+            awake.add(go);
+        }
+        go.awakeUntil = Math.max(go.awakeUntil, frame + frames);
+    }
+
+    /**
+     * Update an object every frame for as long as it lives, for things like the editor grid that follow the camera
+     * @param go
+     */
+    public void keepAwake(GameObject go) {
+        wake(go, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Start tracking an object at its current position
+     */
+    void add(GameObject go) {
+        go.lastUpdateFrame = -1;
+        go.awakeUntil = 0;
+        Vector2f position = positionOf(go);
+        insert(go, cell(position.x), cell(position.y));
+    }
+
+    /**
+     * Stop tracking an object, it is no longer updated
+     */
+    void remove(GameObject go) {
+        if (go.bucket < 0) return;
+
+        List<GameObject> bucket = buckets.get(go.bucket);
+        GameObject last = bucket.remove(bucket.size() - 1);
+        if (last != go) {
+            bucket.set(go.bucketSlot, last);
+            last.bucketSlot = go.bucketSlot;
+        }
+        go.bucket = -1;
+    }
+
+    /**
+     * Move an object to the cell of its current position. Objects are rebinned after they run,
+     * restoring a snapshot moves sleeping ones too and rebins everything
+     */
+    void rebin(GameObject go) {
+        Vector2f position = positionOf(go);
+        int x = cell(position.x);
+        int y = cell(position.y);
+        if (go.bucket >= 0 && x == go.cellX && y == go.cellY) return;
+
+        remove(go);
+        insert(go, x, y);
+    }
+
+    /**
+     * Rebin an object and every tracked descendant, after the whole subtree moved with it
+     */
+    void rebinTree(GameObject go) {
+        if (go.bucket >= 0 && !go.isDead()) {
+            rebin(go);
+        }
+        List<GameObject> children = go.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            rebinTree(children.get(i));
+        }
+    }
+
+    private void insert(GameObject go, int x, int y) {
+        List<GameObject> bucket = buckets.get(bucket(x, y));
+        go.cellX = x;
+        go.cellY = y;
+        go.bucket = bucket(x, y);
+        go.bucketSlot = bucket.size();
+        bucket.add(go);
+    }
+
+    /**
+     * Root positions are already moved this frame, world positions of children catch up after the update
+     */
+    private static Vector2f positionOf(GameObject go) {
+        return go.getParent() == null ? go.transform.position : go.transform.getWorldPosition();
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static int bucket(int x, int y) {
+        return ((x * 73856093) ^ (y * 19349663)) & (NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Objects updated on the last frame
+     */
+    public int getUpdated() {
+        return updated;
+    }
+
+    public double getAverageUpdated() {
+        return frame == 0 ? 0 : totalUpdated / (double) frame;
+    }
+}
@@ -0,0 +1,324 @@
+package engine;
+
+import components.ParticleEmitter;
+import components.Sprite;
+import components.SpriteRenderer;
+import components.Spritesheet;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+import renderer.GpuResources;
+import renderer.Renderer;
+import renderer.RenderStats;
+import util.AllocationCheck;
+import util.AssetPool;
+import util.Histogram;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible stress workload for judging renderer changes.
+ * Spawns a fixed number of sprites with seeded textures, movement and spawn/despawn churn,
+ * flies the camera along a fixed path and writes frame statistics to a JSON report on exit.
+ */
+public class BenchmarkScene extends Scene {
+    // simulation always steps by this, so every run does the same work per frame
+    private static final float FIXED_DT = 1.0f / 60.0f;
+    // frames left out of the statistics while the JIT and driver warm up
+    private static final int WARMUP_FRAMES = 120;
+    private static final float SPRITE_SIZE = 32.0f;
+    private static final long SEED = 1229;
+    // live particles are spread over this many emitters, each one draw
+    private static final int NUM_EMITTERS = 16;
+
+    private static int numSprites = 10000;
+    private static float movingFraction = 0.5f;
+    // sprites despawned and respawned every frame, as a fraction of the total
+    private static float churnFraction = 0.001f;
+    private static int numParticles = 0;
+    private static String reportPath = "benchmark-report.json";
+    // only sprites this far around the center of the view move, 0 moves every sprite every frame
+    private static float activityRadius = 0;
+
+    private Random random = new Random(SEED);
+    private Sprite[] spriteMix;
+    private float worldSize;
+    private int frame = 0;
+    private int nextId = 0;
+    private long lastFrameStart = 0;
+
+    // frame times in 0.1ms buckets up to 100ms
+    private Histogram frameTimes = new Histogram(100_000, 1000);
+    private long totalDrawCalls, totalBatches, totalBytesUploaded, totalSprites;
+    private List<GarbageCollectorMXBean> gcBeans;
+    private long gcCountStart, gcTimeStart, gcCountLast, gcTimeLast;
+    private int framesWithGc;
+
+    public BenchmarkScene() {
+        System.out.println("Entering benchmark scene with " + numSprites + " sprites...");
+    }
+
+    /**
+     * Update only the sprites around the camera, the ones up to twice as far at a quarter of the rate
+     * @param radius world units from the center of the view, 0 updates everything
+     */
+    public static void setActivityRadius(float radius) {
+        activityRadius = radius;
+    }
+
+    public static void configure(int sprites, float moving, float churn, int particles, String report) {
+        numSprites = sprites;
+        movingFraction = moving;
+        churnFraction = churn;
+        numParticles = particles;
+        reportPath = report;
+    }
+
+    /**
+     * Moves its game object with a constant velocity, bouncing off the world edges
+     */
+    private static class Mover extends Component implements Tickable {
+        private float vx, vy;
+        private float bounds;
+
+        Mover(float vx, float vy, float bounds) {
+            this.vx = vx;
+            this.vy = vy;
+            this.bounds = bounds;
+        }
+
+        @Override
+        public void update(float dt) {
+            Vector2f pos = gameObject.transform.position;
+            pos.x += vx * dt;
+            pos.y += vy * dt;
+            if (pos.x < 0 || pos.x > bounds) vx = -vx;
+            if (pos.y < 0 || pos.y > bounds) vy = -vy;
+        }
+
+        @Override
+        public void save(ByteBuffer out) {
+            out.putFloat(vx).putFloat(vy);
+        }
+
+        @Override
+        public void load(ByteBuffer in) {
+            vx = in.getFloat();
+            vy = in.getFloat();
+        }
+    }
+
+    @Override
+    public void init() {
+        loadResources();
+        this.camera = new Camera(new Vector2f());
+
+        Spritesheet sheet = AssetPool.getSpritesheet("assets/textures/spritesheet.png");
+        spriteMix = new Sprite[] {
+                sheet.getSprite(0),
+                sheet.getSprite(6),
+                sheet.getSprite(14),
+                new Sprite(AssetPool.getTexture("assets/textures/mario.png")),
+                new Sprite(AssetPool.getTexture("assets/textures/goomba.png")),
+                // plain colored quads
+                null
+        };
+
+        worldSize = (float) Math.ceil(Math.sqrt(numSprites)) * SPRITE_SIZE;
+        if (activityRadius > 0) {
+            setActivityRegions(new ActivityRegions(activityRadius / 2, activityRadius, activityRadius * 2, 4));
+        }
+        for (int i = 0; i < numSprites; i++) {
+            this.addGameObjectToScene(spawn());
+        }
+        for (int i = 0; i < NUM_EMITTERS && numParticles > 0; i++) {
+            this.addGameObjectToScene(spawnEmitter(sheet, numParticles / NUM_EMITTERS));
+        }
+
+        gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    }
+
+    private void loadResources() {
+        AssetPool.getShader("assets/shaders/default.glsl");
+        AssetPool.addSpritesheet("assets/textures/spritesheet.png",
+                new Spritesheet(AssetPool.getTexture("assets/textures/spritesheet.png"),
+                        16, 16, 26, 0));
+    }
+
+    private GameObject spawn() {
+        GameObject go = new GameObject("bench" + nextId++, new Transform(
+                new Vector2f(random.nextFloat() * worldSize, random.nextFloat() * worldSize),
+                new Vector2f(SPRITE_SIZE, SPRITE_SIZE)));
+
+        // mover goes first so the sprite sees the new position in the same frame
+        if (random.nextFloat() < movingFraction) {
+            go.addComponent(new Mover(random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100, worldSize));
+        }
+
+        Sprite sprite = spriteMix[random.nextInt(spriteMix.length)];
+        if (sprite != null) {
+            go.addComponent(new SpriteRenderer(sprite));
+        } else {
+            go.addComponent(new SpriteRenderer(new Vector4f(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1)));
+        }
+        return go;
+    }
+
+    /**
+     * Emitter whose rate keeps its pool close to full once the first particles start dying
+     */
+    private GameObject spawnEmitter(Spritesheet sheet, int maxParticles) {
+        GameObject go = new GameObject("emitter" + nextId++, new Transform(
+                new Vector2f(random.nextFloat() * worldSize, random.nextFloat() * worldSize), new Vector2f()));
+
+        ParticleEmitter emitter = new ParticleEmitter(maxParticles,
+                sheet.getSprite(0), sheet.getSprite(1), sheet.getSprite(2), sheet.getSprite(3));
+        emitter.setSeed(random.nextLong());
+        emitter.setLife(1.0f, 2.0f);
+        emitter.setRate(maxParticles / 1.5f);
+        emitter.setSpeed(50, 300);
+        emitter.setGravity(-200);
+        emitter.setSize(16, 4);
+        emitter.setAnimated(true);
+        go.addComponent(emitter);
+        return go;
+    }
+
+    @Override
+    public void update(float dt) {
+        long frameStart = System.nanoTime();
+        boolean measuring = frame >= WARMUP_FRAMES;
+        if (measuring && lastFrameStart != 0) {
+            frameTimes.record(frameStart - lastFrameStart);
+        }
+        lastFrameStart = frameStart;
+
+        churn();
+        moveCamera();
+        updateGameObjects(FIXED_DT);
+        this.renderer.render();
+
+        long gcCount = 0, gcTime = 0;
+        for (int i = 0; i < gcBeans.size(); i++) {
+            gcCount += Math.max(0, gcBeans.get(i).getCollectionCount());
+            gcTime += Math.max(0, gcBeans.get(i).getCollectionTime());
+        }
+
+        if (frame == WARMUP_FRAMES) {
+            gcCountStart = gcCount;
+            gcTimeStart = gcTime;
+        }
+        if (measuring) {
+            totalDrawCalls += RenderStats.getDrawCalls();
+            totalBatches += RenderStats.getBatches();
+            totalBytesUploaded += RenderStats.getBytesUploaded();
+            totalSprites += RenderStats.getSprites();
+            if (frame > WARMUP_FRAMES && gcCount != gcCountLast) {
+                framesWithGc++;
+            }
+            gcCountLast = gcCount;
+            gcTimeLast = gcTime;
+        }
+        frame++;
+    }
+
+    private void churn() {
+        int count = (int) (numSprites * churnFraction);
+        // removed objects stay in the list for a while, draw again until a live one is hit
+        int despawned = 0;
+        for (int tries = 0; despawned < count && tries < count * 8 && !gameObjects.isEmpty(); tries++) {
+            GameObject go = gameObjects.get(random.nextInt(gameObjects.size()));
+            if (go.isDead()) continue;
+
+            removeGameObject(go);
+            despawned++;
+        }
+        // new objects allocate by definition, the allocation check only holds the rest of the frame to zero
+        AllocationCheck.beginExcluded();
+        for (int i = 0; i < count; i++) {
+            addGameObjectToScene(spawn());
+        }
+        AllocationCheck.endExcluded();
+    }
+
+    /**
+     * Sweep the camera across the world on a fixed lissajous path
+     */
+    private void moveCamera() {
+        float t = frame * FIXED_DT;
+        float center = worldSize * 0.5f;
+        camera.position.x = center + (float) Math.sin(t * 0.3f) * center - 640.0f;
+        camera.position.y = center + (float) Math.sin(t * 0.2f) * center - 360.0f;
+    }
+
+    @Override
+    public void end() {
+        long frames = frameTimes.getCount();
+        if (frames == 0) {
+            System.out.println("[Benchmark] No frames measured, run longer than " + WARMUP_FRAMES + " frames");
+            return;
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(reportPath))) {
+            writer.write("{\n");
+            writer.write("  \"sprites\": " + numSprites + ",\n");
+            writer.write("  \"movingFraction\": " + movingFraction + ",\n");
+            writer.write("  \"churnFraction\": " + churnFraction + ",\n");
+            writer.write("  \"particles\": " + numParticles + ",\n");
+            writer.write("  \"activityRadius\": " + activityRadius + ",\n");
+            writer.write("  \"parallelBuild\": " + Renderer.isParallelBuild() + ",\n");
+            if (getActivityRegions() != null) {
+                writer.write("  \"updatedPerFrame\": " + getActivityRegions().getAverageUpdated() + ",\n");
+            }
+            writer.write("  \"frames\": " + frames + ",\n");
+            writer.write("  \"frameTimeMs\": {\"mean\": " + frameTimes.getMean() * 1E-6
+                    + ", \"min\": " + frameTimes.getMin() * 1E-6
+                    + ", \"p50\": " + frameTimes.getPercentile(0.5) * 1E-6
+                    + ", \"p90\": " + frameTimes.getPercentile(0.9) * 1E-6
+                    + ", \"p99\": " + frameTimes.getPercentile(0.99) * 1E-6
+                    + ", \"max\": " + frameTimes.getMax() * 1E-6 + "},\n");
+            writer.write("  \"drawCallsPerFrame\": " + (double) totalDrawCalls / frames + ",\n");
+            writer.write("  \"batchesPerFrame\": " + (double) totalBatches / frames + ",\n");
+            writer.write("  \"spritesPerFrame\": " + (double) totalSprites / frames + ",\n");
+            writer.write("  \"bytesUploadedPerFrame\": " + (double) totalBytesUploaded / frames + ",\n");
+            FramePacer pacer = Window.get().getFramePacer();
+            writer.write("  \"pacing\": {\"mode\": \"" + pacer.getMode()
+                    + "\", \"jitterMs\": " + pacer.getJitter() * 1E-6
+                    + ", \"inputToPresentP50Ms\": " + pacer.getInputLatency().getPercentile(0.5) * 1E-6
+                    + ", \"inputToPresentP99Ms\": " + pacer.getInputLatency().getPercentile(0.99) * 1E-6 + "},\n");
+            writer.write("  \"gpuMemoryBytes\": {\"total\": " + GpuResources.getTotalBytes()
+                    + ", \"peak\": " + GpuResources.getPeakBytes());
+            for (GpuResources.Category category : GpuResources.Category.values()) {
+                writer.write(", \"" + category + "\": " + GpuResources.getBytes(category));
+            }
+            writer.write("},\n");
+            writer.write("  \"gc\": {\"collections\": " + (gcCountLast - gcCountStart)
+                    + ", \"timeMs\": " + (gcTimeLast - gcTimeStart)
+                    + ", \"framesWithGc\": " + framesWithGc + "},\n");
+
+            // non empty buckets only, as [upper bound ms, count]
+            writer.write("  \"histogram\": {\"bucketMs\": " + frameTimes.getBucketWidth() * 1E-6
+                    + ", \"overflow\": " + frameTimes.getOverflow() + ", \"buckets\": [");
+            boolean first = true;
+            for (int i = 0; i < frameTimes.getNumBuckets(); i++) {
+                if (frameTimes.getBucket(i) == 0) continue;
+                writer.write((first ? "" : ", ") + "[" + (i + 1) * frameTimes.getBucketWidth() * 1E-6
+                        + ", " + frameTimes.getBucket(i) + "]");
+                first = false;
+            }
+            writer.write("]}\n}\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+            assert false : "Error: can not write benchmark report: " + reportPath;
+        }
+        System.out.println("[Benchmark] p50 " + frameTimes.getPercentile(0.5) * 1E-6 + "ms, p99 "
+                + frameTimes.getPercentile(0.99) * 1E-6 + "ms over " + frames + " frames, report written to " + reportPath);
+    }
+}
@@ -2,9 +2,12 @@ package engine;
 
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
-import org.joml.Vector3f;
 
 public class Camera {
+    // world units the projection covers, one grid tile is 32 units
+    private static final float PROJECTION_WIDTH = 32.0f * 40.0f;
+    private static final float PROJECTION_HEIGHT = 32.0f * 22.5f;
+
     private Matrix4f projectionMatrix, viewMatrix;
     public Vector2f position;
 
@@ -23,27 +26,39 @@ public class Camera {
         projectionMatrix.identity();
         // right side of the screen will of 40 grid tile of 32 * 32 pixels, top will be 22.5 grid tiles, so this will be a
         // 40 * 22.5 rectangular orthographic camera (normalize 1920 * 1080 to 1:1)
-        projectionMatrix.ortho(0.0f, 32.0f * 40.0f, 0.0f, 32.0f * 22.5f, 0.0f, 100.0f);
+        projectionMatrix.ortho(0.0f, PROJECTION_WIDTH, 0.0f, PROJECTION_HEIGHT, 0.0f, 100.0f);
     }
 
     public Matrix4f getProjectionMatrix() {
         return projectionMatrix;
     }
 
+    /**
+     * Width of the visible world, the left edge is position.x
+     */
+    public float getProjectionWidth() {
+        return PROJECTION_WIDTH;
+    }
+
+    /**
+     * Height of the visible world, the bottom edge is position.y
+     */
+    public float getProjectionHeight() {
+        return PROJECTION_HEIGHT;
+    }
+
     /**
      * calculate view matrix - where the camera is
      * @return viewMatrix
      */
     public Matrix4f getViewMatrix() {
-        // define front, up direction for camera
-        Vector3f cameraFront = new Vector3f(0.0f, 0.0f, -1.0f);
-        Vector3f cameraUp = new Vector3f(0.0f, 1.0f, 0.0f);
-
+        // eye sits 20 units in front of the camera position, looking down -z with +y up
+        // passed as floats so no vectors are allocated every frame
         viewMatrix.identity();
-        viewMatrix = viewMatrix.lookAt(
-                new Vector3f(position.x, position.y, 20.0f),
-                cameraFront.add(position.x, position.y, 0.0f),
-                cameraUp);
+        viewMatrix.lookAt(
+                position.x, position.y, 20.0f,
+                position.x, position.y, -1.0f,
+                0.0f, 1.0f, 0.0f);
 
         return viewMatrix;
 
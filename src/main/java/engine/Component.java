@@ -1,10 +1,38 @@
 package engine;
 
+import java.nio.ByteBuffer;
+
 public abstract class Component {
     public GameObject gameObject = null;
+    // where the scene's UpdateScheduler keeps it, null when it isn't scheduled
+    UpdateScheduler.Group group = null;
+    int slot;
 
     public void start() {
 
     }
-    public abstract void update(float dt);
+
+    /**
+     * If the scene still updates it, false once it was removed or its game object was destroyed
+     */
+    public final boolean isScheduled() {
+        return group != null && !gameObject.isDead();
+    }
+
+    /**
+     * Write the state that changes while the game runs, for snapshots and save states.
+     * Only plain values, references (sprites, textures) stay as they are when a snapshot is restored
+     * @param out
+     */
+    public void save(ByteBuffer out) {
+
+    }
+
+    /**
+     * Read back exactly what save wrote
+     * @param in
+     */
+    public void load(ByteBuffer in) {
+
+    }
 }
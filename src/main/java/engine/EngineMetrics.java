@@ -0,0 +1,148 @@
+package engine;
+
+import renderer.RendererMetrics;
+import util.Histogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Live engine counters for JMX, registered as mario:type=Engine next to the RendererMetrics,
+ * so JConsole or a local scraper can watch a running game without a profiler.
+ * The render thread is the only writer and publishes once per frame with a few volatile stores,
+ * cheap enough to stay on all the time. Frame time percentiles come from a window of frames
+ * recorded on the render thread, readers only see the result of the last full window.
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+    private static final String ENGINE_NAME = "mario:type=Engine";
+    private static final String RENDERER_NAME = "mario:type=Renderer";
+    // weight of the newest frame in the moving average, about the last 20 frames count
+    private static final double EWMA_ALPHA = 0.05;
+    // frames per percentile window, 10 seconds at 60 fps
+    private static final int WINDOW_FRAMES = 600;
+
+    private static final EngineMetrics instance = new EngineMetrics();
+
+    // only touched by the render thread
+    private final Histogram window = new Histogram(100_000, 1000);
+    private long lastFrameEnd = 0;
+
+    private volatile long framesRendered = 0;
+    private volatile double frameTimeEwma = 0;
+    private volatile long frameTimeP99 = 0;
+    private volatile long frameTimeMax = 0;
+    private volatile Scene scene = null;
+    private volatile int gameObjects = 0;
+    private volatile int tickingComponents = 0;
+
+    private EngineMetrics() {
+
+    }
+
+    public static EngineMetrics get() {
+        return instance;
+    }
+
+    /**
+     * Register the engine and renderer MBeans with the platform MBean server
+     */
+    public static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(instance, new ObjectName(ENGINE_NAME));
+            server.registerMBean(RendererMetrics.get(), new ObjectName(RENDERER_NAME));
+        } catch (JMException e) {
+            // the game runs the same without them
+            System.out.println("[Metrics] Can not register the MBeans: " + e);
+        }
+    }
+
+    public static void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName engine = new ObjectName(ENGINE_NAME);
+            ObjectName renderer = new ObjectName(RENDERER_NAME);
+            if (server.isRegistered(engine)) {
+                server.unregisterMBean(engine);
+            }
+            if (server.isRegistered(renderer)) {
+                server.unregisterMBean(renderer);
+            }
+        } catch (JMException e) {
+            System.out.println("[Metrics] Can not unregister the MBeans: " + e);
+        }
+    }
+
+    /**
+     * Publish the counters of the frame that just ended, on the render thread after the swap
+     * @param scene
+     */
+    void endFrame(Scene scene) {
+        long now = System.nanoTime();
+        if (lastFrameEnd != 0) {
+            long frameTime = now - lastFrameEnd;
+            // single writer, the read and the write can't race
+            frameTimeEwma = framesRendered <= 1 ? frameTime : frameTimeEwma + (frameTime - frameTimeEwma) * EWMA_ALPHA;
+            window.record(frameTime);
+            if (window.getCount() == WINDOW_FRAMES) {
+                frameTimeP99 = window.getPercentile(0.99);
+                frameTimeMax = window.getMax();
+                window.reset();
+            }
+        }
+        lastFrameEnd = now;
+        framesRendered = framesRendered + 1;
+
+        this.scene = scene;
+        gameObjects = scene.getNumGameObjects();
+        tickingComponents = scene.scheduler.size();
+        RendererMetrics.get().endFrame(scene.renderer);
+    }
+
+    @Override
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    @Override
+    public double getFrameTimeEwmaMs() {
+        return frameTimeEwma * 1E-6;
+    }
+
+    /**
+     * p99 of the last full window of frames, 0 until the first window is full
+     */
+    @Override
+    public double getFrameTimeP99Ms() {
+        return frameTimeP99 * 1E-6;
+    }
+
+    @Override
+    public double getFrameTimeMaxMs() {
+        return frameTimeMax * 1E-6;
+    }
+
+    @Override
+    public String getScene() {
+        Scene current = scene;
+        return current == null ? "none" : current.getClass().getSimpleName();
+    }
+
+    /**
+     * Game objects in the current scene, including ones removed this frame
+     */
+    @Override
+    public int getGameObjects() {
+        return gameObjects;
+    }
+
+    /**
+     * Components the current scene's UpdateScheduler runs every frame
+     */
+    @Override
+    public int getTickingComponents() {
+        return tickingComponents;
+    }
+}
@@ -0,0 +1,20 @@
+package engine;
+
+/**
+ * Engine counters, see EngineMetrics
+ */
+public interface EngineMetricsMBean {
+    long getFramesRendered();
+
+    double getFrameTimeEwmaMs();
+
+    double getFrameTimeP99Ms();
+
+    double getFrameTimeMaxMs();
+
+    String getScene();
+
+    int getGameObjects();
+
+    int getTickingComponents();
+}
@@ -0,0 +1,173 @@
+package engine;
+
+import util.Histogram;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.lwjgl.glfw.GLFW.glfwExtensionSupported;
+import static org.lwjgl.glfw.GLFW.glfwSwapInterval;
+
+/**
+ * Decides when frames are presented and measures how evenly they come out.
+ * Modes:
+ *   UNCAPPED  swap interval 0, as fast as the frame can be made
+ *   VSYNC     swap interval 1, wait for every vertical blank
+ *   ADAPTIVE  swap interval -1, vsync that tears instead of waiting a whole refresh for late frames,
+ *             plain vsync where the driver doesn't have swap_control_tear
+ *   LIMITED   swap interval 0 and a limiter that sleeps most of the way to the next frame and spins the rest
+ */
+public class FramePacer {
+    public enum Mode {
+        UNCAPPED, VSYNC, ADAPTIVE, LIMITED
+    }
+
+    // spin at least this long before a deadline, the scheduler rarely wakes up closer than that
+    private static final long MIN_SPIN = 200_000;
+    // sleep overshoot is learned, starting pessimistic
+    private static final long INITIAL_SPIN = 2_000_000;
+
+    private Mode mode;
+    private long framePeriod = 0;
+    // next deadline of the limiter, System.nanoTime() value
+    private long nextFrame = 0;
+    // how late sleeps have woken up recently, the limiter stops sleeping this long before a deadline
+    private long spinWindow = INITIAL_SPIN;
+
+    private long lastPresent = 0;
+    // time between presents and from the oldest input of a frame to its present, 0.1ms buckets
+    private final Histogram frameTimes = new Histogram(100_000, 1000);
+    private final Histogram inputLatency = new Histogram(100_000, 1000);
+    // running mean and variance of the frame time (Welford)
+    private long samples = 0;
+    private double mean = 0, m2 = 0;
+
+    public FramePacer(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Target frame rate of the limiter, switches to LIMITED
+     * @param fps frames per second
+     */
+    public void setTargetFps(double fps) {
+        this.mode = Mode.LIMITED;
+        this.framePeriod = (long) (1E9 / fps);
+    }
+
+    /**
+     * Switch modes at runtime, takes effect on the next apply
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Set the swap interval for the current mode, needs a current GL context
+     */
+    public void apply() {
+        switch (mode) {
+            case UNCAPPED:
+            case LIMITED:
+                glfwSwapInterval(0);
+                break;
+            case VSYNC:
+                glfwSwapInterval(1);
+                break;
+            case ADAPTIVE:
+                if (glfwExtensionSupported("WGL_EXT_swap_control_tear") || glfwExtensionSupported("GLX_EXT_swap_control_tear")) {
+                    glfwSwapInterval(-1);
+                } else {
+                    System.out.println("[FramePacer] swap_control_tear not supported, adaptive vsync falls back to vsync");
+                    glfwSwapInterval(1);
+                }
+                break;
+        }
+        if (mode == Mode.LIMITED && framePeriod == 0) {
+            assert false : "Error: limited frame pacing needs a target fps";
+            mode = Mode.UNCAPPED;
+        }
+        nextFrame = 0;
+    }
+
+    /**
+     * Hold the frame until its deadline, called right before swapping buffers
+     */
+    public void waitForFrame() {
+        if (mode != Mode.LIMITED) return;
+
+        long now = System.nanoTime();
+        if (nextFrame == 0 || now - nextFrame > framePeriod) {
+            // first frame, or so far behind that catching up would mean a burst of frames
+            nextFrame = now;
+        }
+
+        long sleepUntil = nextFrame - spinWindow;
+        while (now < sleepUntil) {
+            LockSupport.parkNanos(sleepUntil - now);
+            long woke = System.nanoTime();
+            // follow how late the scheduler wakes us up, growing fast and shrinking slowly
+            long overshoot = Math.max(0, woke - sleepUntil);
+            spinWindow = Math.max(MIN_SPIN, overshoot > spinWindow
+                    ? overshoot + overshoot / 4
+                    : spinWindow - (spinWindow - overshoot) / 16);
+            now = woke;
+        }
+        while (now < nextFrame) {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+
+        nextFrame += framePeriod;
+    }
+
+    /**
+     * Record the frame that was just presented, called right after swapping buffers
+     * @param oldestInput timestamp of the oldest input event the frame consumed, 0 if it had none
+     */
+    public void framePresented(long oldestInput) {
+        long now = System.nanoTime();
+        if (lastPresent != 0) {
+            long frameTime = now - lastPresent;
+            frameTimes.record(frameTime);
+
+            samples++;
+            double delta = frameTime - mean;
+            mean += delta / samples;
+            m2 += delta * (frameTime - mean);
+        }
+        lastPresent = now;
+
+        if (oldestInput != 0) {
+            inputLatency.record(now - oldestInput);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Standard deviation of the time between presents
+     * @return nanoseconds
+     */
+    public double getJitter() {
+        return samples < 2 ? 0 : Math.sqrt(m2 / (samples - 1));
+    }
+
+    public Histogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    /**
+     * From an input event arriving to the first frame that used it being handed to the swap chain
+     */
+    public Histogram getInputLatency() {
+        return inputLatency;
+    }
+
+    public void printSummary() {
+        System.out.printf("[FramePacer] %s: frame p50 %.3fms p99 %.3fms, jitter %.3fms, input to present p50 %.3fms p99 %.3fms (%d frames with input)%n",
+                mode, frameTimes.getPercentile(0.5) * 1E-6, frameTimes.getPercentile(0.99) * 1E-6, getJitter() * 1E-6,
+                inputLatency.getPercentile(0.5) * 1E-6, inputLatency.getPercentile(0.99) * 1E-6, inputLatency.getCount());
+    }
+}
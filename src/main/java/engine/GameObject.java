@@ -1,13 +1,41 @@
 package engine;
 
+import org.joml.Vector2f;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GameObject {
+    // scenes can be built on a loader thread
+    private static final AtomicInteger nextUid = new AtomicInteger();
+
+    // identifies the object in snapshots, never reused
+    private final int uid = nextUid.incrementAndGet();
     private String name;
     private List<Component> components;
+    // the Tickable ones in phase order, for update
+    private List<Tickable> ticking = new ArrayList<>();
 
     public Transform transform;
+    // set once the object is removed from its scene
+    private boolean isDead = false;
+
+    private GameObject parent = null;
+    private List<GameObject> children = new ArrayList<>();
+    // scene the object was added to, told about hierarchy changes
+    Scene scene = null;
+
+    // where the scene's ActivityRegions keep it, bucket is -1 when it isn't tracked
+    int cellX, cellY;
+    int bucket = -1, bucketSlot;
+    // frame and scene time of its last update under ActivityRegions, -1 before the first
+    long lastUpdateFrame = -1;
+    double lastUpdateTime;
+    // dt its components get on that update, the time it missed in a ticked cell
+    float updateDt;
+    // updated every frame until this frame, see ActivityRegions.wake
+    long awakeUntil = 0;
 
     public GameObject(String name) {
         this.name = name;
@@ -28,7 +56,8 @@ public class GameObject {
      * @param <T>
      */
     public <T extends Component> T getComponent(Class<T> componentClass) {
-        for (Component c : components) {
+        for (int i = 0; i < components.size(); i++) {
+            Component c = components.get(i);
             if (componentClass.isAssignableFrom(c.getClass())) {
                 try {
                     return componentClass.cast(c);
@@ -51,6 +80,10 @@ public class GameObject {
             Component c = components.get(i);
             if (componentClass.isAssignableFrom(c.getClass())) {
                 components.remove(i);
+                ticking.remove(c);
+                if (scene != null) {
+                    scene.scheduler.remove(c);
+                }
                 return;
             }
         }
@@ -64,24 +97,166 @@ public class GameObject {
     public <T extends Component> void addComponent(Component c) {
         this.components.add(c);
         c.gameObject = this;
+
+        if (c instanceof Tickable) {
+            // after every component of the same or an earlier phase
+            Tickable t = (Tickable) c;
+            UpdatePhase phase = t.getUpdatePhase();
+            int index = ticking.size();
+            while (index > 0 && ticking.get(index - 1).getUpdatePhase().compareTo(phase) > 0) {
+                index--;
+            }
+            ticking.add(index, t);
+        }
+        if (scene != null) {
+            scene.scheduler.add(c);
+        }
     }
 
     /**
-     * Update all components
+     * Update the Tickable components in phase order, scenes normally update every object's components
+     * together through their UpdateScheduler instead
      * @param dt
      */
     public void update(float dt) {
-        for (Component component : components) {
-            component.update(dt);
+        // indexed loops, an iterator would be allocated every frame
+        for (int i = 0; i < ticking.size(); i++) {
+            ticking.get(i).update(dt);
+        }
+    }
+
+    /**
+     * Attach to a parent, the transform's position becomes relative to the parent's world position
+     * @param parent null to detach
+     */
+    public void setParent(GameObject parent) {
+        if (this.parent == parent) return;
+        for (GameObject p = parent; p != null; p = p.parent) {
+            if (p == this) {
+                assert false : "Error: game object can not be its own ancestor";
+                return;
+            }
+        }
+
+        if (this.parent != null) {
+            this.parent.children.remove(this);
+        }
+        this.parent = parent;
+        if (parent != null) {
+            parent.children.add(this);
+        }
+
+        refreshTransform();
+        if (scene != null) {
+            scene.hierarchy.reparented();
+            if (scene.getActivityRegions() != null) {
+                scene.getActivityRegions().rebinTree(this);
+            }
+        }
+    }
+
+    public void addChild(GameObject child) {
+        child.setParent(this);
+    }
+
+    public GameObject getParent() {
+        return parent;
+    }
+
+    public List<GameObject> getChildren() {
+        return children;
+    }
+
+    /**
+     * Static subtrees are skipped by the per frame transform update,
+     * call refreshTransform after moving anything inside one
+     * @param isStatic applies to every descendant too
+     */
+    public void setStatic(boolean isStatic) {
+        boolean wasStatic = transform.isStatic;
+        transform.isStatic = isStatic;
+        if (wasStatic && !isStatic && scene != null) {
+            scene.hierarchy.add(this);
         }
+
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).setStatic(isStatic);
+        }
+    }
+
+    /**
+     * Recompute the world position of this object and its whole subtree right away
+     */
+    public void refreshTransform() {
+        Vector2f world = transform.worldPosition;
+        if (parent != null) {
+            world.set(parent.transform.worldPosition).add(transform.position);
+        } else {
+            world.set(transform.position);
+        }
+        transform.version++;
+
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).refreshTransform();
+        }
+    }
+
+    /**
+     * Mark this object and its subtree dead and detach it from its parent
+     */
+    public void destroy() {
+        if (isDead) return;
+
+        if (parent != null && !parent.isDead) {
+            parent.children.remove(this);
+            parent = null;
+        }
+        markDead();
+        if (scene != null) {
+            // the scene unschedules it and its children on the next update
+            scene.removed.add(this);
+        }
+    }
+
+    private void markDead() {
+        this.isDead = true;
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).markDead();
+        }
+    }
+
+    public int getUid() {
+        return uid;
+    }
+
+    /**
+     * Scene the object was added to, null before it is added
+     */
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Number of components, with getComponent(int) for walking them without an iterator
+     */
+    public int getNumComponents() {
+        return components.size();
+    }
+
+    public Component getComponent(int index) {
+        return components.get(index);
+    }
+
+    public boolean isDead() {
+        return this.isDead;
     }
 
     /**
      * Start all components
      */
     public void start() {
-        for (Component c : components) {
-            c.start();
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).start();
         }
     }
 
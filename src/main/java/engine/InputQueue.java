@@ -0,0 +1,144 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer/single-consumer ring buffer of timestamped input events.
+ * GLFW callbacks push events from whichever thread polls GLFW, and the render loop drains
+ * them once per frame, so presses shorter than a frame are never lost
+ */
+public class InputQueue {
+    public static final int KEY = 0;
+    public static final int MOUSE_BUTTON = 1;
+    public static final int CURSOR = 2;
+    public static final int SCROLL = 3;
+
+    // must be a power of two so sequence numbers can be masked into slots
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+
+    // created eagerly, producer and consumer may live on different threads
+    private static final InputQueue instance = new InputQueue();
+
+    // one slot per event, stored as parallel arrays so pushing never allocates
+    private final int[] types = new int[CAPACITY];
+    private final int[] codes = new int[CAPACITY];
+    private final int[] actions = new int[CAPACITY];
+    private final double[] xs = new double[CAPACITY];
+    private final double[] ys = new double[CAPACITY];
+    private final long[] timestamps = new long[CAPACITY];
+
+    // head is only written by the producer, tail only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long dropped;
+
+    // latency between an event arriving and the frame that consumed it, in nanoseconds
+    private long lastLatency;
+    private long maxLatency;
+    private long oldestDispatched;
+
+    private InputQueue() {
+
+    }
+
+    public static InputQueue get() {
+        return instance;
+    }
+
+    /**
+     * Producer side - record an event, drops it if the consumer has fallen a whole ring behind
+     * @return false if the event was dropped
+     */
+    public boolean push(int type, int code, int action, double x, double y) {
+        long h = head.get();
+        if (h - tail.get() >= CAPACITY) {
+            dropped++;
+            return false;
+        }
+
+        int slot = (int) (h & MASK);
+        types[slot] = type;
+        codes[slot] = code;
+        actions[slot] = action;
+        xs[slot] = x;
+        ys[slot] = y;
+        timestamps[slot] = System.nanoTime();
+
+        // publish the slot after it is fully written
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side - apply every pending event to the key/mouse listeners, called once at the start of a frame
+     * @return number of events dispatched
+     */
+    public int dispatch() {
+        KeyListener.beginFrame();
+        MouseListener.beginFrame();
+
+        long t = tail.get();
+        long h = head.get();
+        int count = (int) (h - t);
+        oldestDispatched = 0;
+
+        for (; t < h; t++) {
+            int slot = (int) (t & MASK);
+            if (oldestDispatched == 0) {
+                oldestDispatched = timestamps[slot];
+            }
+
+            switch (types[slot]) {
+                case KEY:
+                    KeyListener.onKey(codes[slot], actions[slot]);
+                    break;
+                case MOUSE_BUTTON:
+                    MouseListener.onButton(codes[slot], actions[slot]);
+                    break;
+                case CURSOR:
+                    MouseListener.onCursor(xs[slot], ys[slot]);
+                    break;
+                case SCROLL:
+                    MouseListener.onScroll(xs[slot], ys[slot]);
+                    break;
+                default:
+                    assert false : "Unknown input event type " + types[slot];
+            }
+        }
+        // hand the slots back to the producer
+        tail.lazySet(h);
+
+        if (count > 0) {
+            lastLatency = System.nanoTime() - oldestDispatched;
+            maxLatency = Math.max(maxLatency, lastLatency);
+        } else {
+            lastLatency = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Time between the oldest event of the last dispatch arriving and it being consumed
+     * @return latency in nanoseconds, 0 if the last frame had no input
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Timestamp of the oldest event consumed by the last dispatch
+     * @return System.nanoTime() value, 0 if the last frame had no input
+     */
+    public long getOldestDispatched() {
+        return oldestDispatched;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -1,22 +1,27 @@
 package engine;
 
-import static engine.Window.get;
+import java.util.Arrays;
+
 import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
 import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
 
 public class KeyListener {
     private static KeyListener instance;
     private boolean keyPressed[] = new boolean[350];
+    // edges seen since the start of the current frame
+    private boolean keyBeginPress[] = new boolean[350];
+    private boolean keyEndPress[] = new boolean[350];
 
     private KeyListener() {
 
     }
 
+    /**
+     * GLFW callback - only queues the event, state is updated when the frame dispatches the queue
+     */
     public static void keyCallback(long window, int key, int scancode, int action, int mods) {
-        if (action == GLFW_PRESS) {
-            get().keyPressed[key] = true;
-        } else if (action == GLFW_RELEASE) {
-            get().keyPressed[key] = false;
+        if (action == GLFW_PRESS || action == GLFW_RELEASE) {
+            InputQueue.get().push(InputQueue.KEY, key, action, 0, 0);
         }
     }
 
@@ -28,14 +33,48 @@ public class KeyListener {
         return KeyListener.instance;
     }
 
+    static void beginFrame() {
+        Arrays.fill(get().keyBeginPress, false);
+        Arrays.fill(get().keyEndPress, false);
+    }
+
+    static void onKey(int key, int action) {
+        // GLFW_KEY_UNKNOWN is -1
+        if (key < 0 || key >= get().keyPressed.length) return;
+
+        if (action == GLFW_PRESS) {
+            get().keyPressed[key] = true;
+            get().keyBeginPress[key] = true;
+        } else if (action == GLFW_RELEASE) {
+            get().keyPressed[key] = false;
+            get().keyEndPress[key] = true;
+        }
+    }
+
     public static boolean isKeyPressed(int keyCode) {
-        if (keyCode >= get().keyPressed.length) {
+        if (keyCode < 0 || keyCode >= get().keyPressed.length) {
             return false;
         }
         return get().keyPressed[keyCode];
     }
 
+    /**
+     * If the key went down this frame, true even if it was released again before the frame started
+     */
+    public static boolean isKeyBeginPress(int keyCode) {
+        if (keyCode < 0 || keyCode >= get().keyBeginPress.length) {
+            return false;
+        }
+        return get().keyBeginPress[keyCode];
+    }
 
-
-
+    /**
+     * If the key was released this frame
+     */
+    public static boolean isKeyEndPress(int keyCode) {
+        if (keyCode < 0 || keyCode >= get().keyEndPress.length) {
+            return false;
+        }
+        return get().keyEndPress[keyCode];
+    }
 }
@@ -1,13 +1,24 @@
 package engine;
 
 
+import components.GridLines;
 import components.Sprite;
 import components.SpriteRenderer;
 import components.Spritesheet;
 import org.joml.Vector2f;
+import org.joml.Vector3f;
+import renderer.DebugDraw;
+import renderer.ObjectPicker;
 import util.AssetPool;
 
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_L;
+
 public class LevelEditorScene extends Scene {
+    private boolean changingScene = false;
+    // object clicked last, outlined until something else is clicked
+    private GameObject selected = null;
+    private final Vector2f selectionCenter = new Vector2f();
+    private final Vector3f selectionColor = new Vector3f(1, 0.5f, 0);
 
     public LevelEditorScene() {
         System.out.println("Entering level editor scene...");
@@ -18,6 +29,8 @@ public class LevelEditorScene extends Scene {
         loadResources();
 
         this.camera = new Camera(new Vector2f());
+        // a view is 1280 x 720, objects a screen away keep ticking at a quarter of the rate
+        setActivityRegions(new ActivityRegions(320, 960, 1920, 4));
 
         Spritesheet sprites = AssetPool.getSpritesheet("assets/textures/spritesheet.png");
 
@@ -28,6 +41,12 @@ public class LevelEditorScene extends Scene {
         GameObject obj2 = new GameObject("obj2", new Transform(new Vector2f(400, 100), new Vector2f(256, 256)));
         obj2.addComponent(new SpriteRenderer(sprites.getSprite(6)));
         this.addGameObjectToScene(obj2);
+
+        GameObject grid = new GameObject("grid");
+        grid.addComponent(new GridLines());
+        this.addGameObjectToScene(grid);
+        // follows the camera, it never leaves the active region
+        getActivityRegions().keepAwake(grid);
     }
 
     private void loadResources() {
@@ -39,14 +58,40 @@ public class LevelEditorScene extends Scene {
 
     @Override
     public void update(float dt) {
-        for (GameObject go : this.gameObjects) {
-            go.update(dt);
+        // build the level in the background and go there once it's loaded, the editor keeps running meanwhile
+        if (!changingScene && KeyListener.isKeyPressed(GLFW_KEY_L)) {
+            changingScene = true;
+            Window.preloadScene(1);
+            Window.switchToPreloadedScene();
         }
 
+        updateGameObjects(dt);
+        updateSelection();
+
         this.renderer.render();
 
     }
 
+    /**
+     * Select whatever sprite was clicked, the id read back arrives a frame or two after the click
+     */
+    private void updateSelection() {
+        ObjectPicker picker = Window.getObjectPicker();
+        if (MouseListener.mouseButtonBeginPress(0)) {
+            picker.request((int) MouseListener.getScreenX(), (int) MouseListener.getScreenY());
+        }
+        if (picker.poll()) {
+            selected = getGameObject(picker.getPickedUid());
+        }
 
-
+        if (selected != null && selected.isDead()) {
+            selected = null;
+        }
+        if (selected != null) {
+            Transform t = selected.transform;
+            Vector2f position = t.getWorldPosition();
+            selectionCenter.set(position.x + t.scale.x / 2, position.y + t.scale.y / 2);
+            DebugDraw.addBox2D(selectionCenter, t.scale, selectionColor);
+        }
+    }
 }
@@ -1,12 +1,27 @@
 package engine;
 
+import org.joml.Vector2f;
+
 public class LevelScene extends Scene {
     public LevelScene() {
         System.out.println("Entering level scene...");
+    }
+
+    @Override
+    public void init() {
+        // debug lines, particles, batches and world space mouse queries all go through the current scene's camera
+        this.camera = new Camera(new Vector2f());
+    }
+
+    @Override
+    public void start() {
+        // not in the constructor, a preloaded scene is built while another one is still on screen
         Window.get().r = 1;
         Window.get().g = 1;
         Window.get().b = 1;
+        super.start();
     }
+
     @Override
     public void update(float dt) {
 
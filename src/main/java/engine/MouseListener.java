@@ -1,5 +1,9 @@
 package engine;
 
+import renderer.LowResTarget;
+
+import java.util.Arrays;
+
 import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
 import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
 
@@ -12,6 +16,9 @@ public class MouseListener {
     private double xPos, yPos, lastY, lastX;
 
     private boolean mouseButtonPressed[] = new boolean[3];
+    // edges seen since the start of the current frame
+    private boolean mouseButtonBeginPress[] = new boolean[3];
+    private boolean mouseButtonEndPress[] = new boolean[3];
     private boolean isDragging;
 
 
@@ -31,11 +38,36 @@ public class MouseListener {
         return MouseListener.instance;
     }
 
+    /**
+     * GLFW callbacks - only queue the event, state is updated when the frame dispatches the queue
+     */
     public static void mousePosCallback(long window, double xpos, double ypos) {
-        // update last pos for dx/dy
-        get().lastX = xpos;
-        get().lastY = ypos;
+        InputQueue.get().push(InputQueue.CURSOR, 0, 0, xpos, ypos);
+    }
+
+    public static void mouseButtonCallback(long window, int button, int action, int mods) {
+        if (action == GLFW_PRESS || action == GLFW_RELEASE) {
+            InputQueue.get().push(InputQueue.MOUSE_BUTTON, button, action, 0, 0);
+        }
+    }
+
+    public static void mouseScrollCallback(long window, double xOffset, double yOffset) {
+        InputQueue.get().push(InputQueue.SCROLL, 0, 0, xOffset, yOffset);
+    }
 
+    /**
+     * Reset per frame state before this frame's events are applied
+     */
+    static void beginFrame() {
+        get().scrollX = 0;
+        get().scrollY = 0;
+        get().lastX = get().xPos;
+        get().lastY = get().yPos;
+        Arrays.fill(get().mouseButtonBeginPress, false);
+        Arrays.fill(get().mouseButtonEndPress, false);
+    }
+
+    static void onCursor(double xpos, double ypos) {
         get().xPos = xpos;
         get().yPos = ypos;
 
@@ -43,28 +75,24 @@ public class MouseListener {
         get().isDragging = get().mouseButtonPressed[0] || get().mouseButtonPressed[1] || get().mouseButtonPressed[2];
     }
 
-    public static void mouseButtonCallback(long window, int button, int action, int mods) {
+    static void onButton(int button, int action) {
         // if button is not right/left/middle click, don't update
-        if (button >= get().mouseButtonPressed.length) return;
+        if (button < 0 || button >= get().mouseButtonPressed.length) return;
 
         if (action == GLFW_PRESS) {
             get().mouseButtonPressed[button] = true;
+            get().mouseButtonBeginPress[button] = true;
         } else if (action == GLFW_RELEASE) {
             get().mouseButtonPressed[button] = false;
+            get().mouseButtonEndPress[button] = true;
             get().isDragging = false;
         }
     }
 
-    public static void mouseScrollCallback(long window, double xOffset, double yOffset) {
-        get().scrollX = xOffset;
-        get().scrollY = yOffset;
-    }
-
-    public static void endFrame() {
-        get().scrollX = 0;
-        get().scrollY = 0;
-        get().lastX = get().xPos;
-        get().lastY = get().yPos;
+    static void onScroll(double xOffset, double yOffset) {
+        // several scroll events can land in one frame
+        get().scrollX += xOffset;
+        get().scrollY += yOffset;
     }
 
     public static float getX() {
@@ -75,6 +103,47 @@ public class MouseListener {
         return (float) get().yPos;
     }
 
+    /**
+     * Cursor x in pixels of what the scene is drawn into, from the left.
+     * Accounts for HiDPI scaling and the bars around a virtual resolution, so it can be outside the scene over a bar
+     */
+    public static float getScreenX() {
+        Window window = Window.get();
+        // screen coordinates to framebuffer pixels
+        float x = getX() * window.getFramebufferWidth() / Math.max(1, window.getWindowWidth());
+        LowResTarget lowRes = window.getLowResTarget();
+        if (lowRes != null) {
+            return (x - lowRes.getViewportX()) * lowRes.getWidth() / Math.max(1, lowRes.getViewportWidth());
+        }
+        return x * window.getSceneWidth() / Math.max(1, window.getFramebufferWidth());
+    }
+
+    /**
+     * Cursor y in pixels of what the scene is drawn into, from the bottom like GL
+     */
+    public static float getScreenY() {
+        Window window = Window.get();
+        float y = (window.getWindowHeight() - getY()) * window.getFramebufferHeight() / Math.max(1, window.getWindowHeight());
+        LowResTarget lowRes = window.getLowResTarget();
+        if (lowRes != null) {
+            return (y - lowRes.getViewportY()) * lowRes.getHeight() / Math.max(1, lowRes.getViewportHeight());
+        }
+        return y * window.getSceneHeight() / Math.max(1, window.getFramebufferHeight());
+    }
+
+    /**
+     * Cursor x in world units of the current scene's camera
+     */
+    public static float getWorldX() {
+        Camera camera = Window.getScene().camera();
+        return camera.position.x + getScreenX() / Window.get().getSceneWidth() * camera.getProjectionWidth();
+    }
+
+    public static float getWorldY() {
+        Camera camera = Window.getScene().camera();
+        return camera.position.y + getScreenY() / Window.get().getSceneHeight() * camera.getProjectionHeight();
+    }
+
     public static float getDx() {
         return (float) (get().lastX - get().xPos);
     }
@@ -96,8 +165,26 @@ public class MouseListener {
     }
 
     public static boolean mouseButtonDown(int button) {
-        if (button >= get().mouseButtonPressed.length) return false;
+        if (button < 0 || button >= get().mouseButtonPressed.length) return false;
 
         return get().mouseButtonPressed[button];
     }
+
+    /**
+     * If the button went down this frame
+     */
+    public static boolean mouseButtonBeginPress(int button) {
+        if (button < 0 || button >= get().mouseButtonBeginPress.length) return false;
+
+        return get().mouseButtonBeginPress[button];
+    }
+
+    /**
+     * If the button was released this frame
+     */
+    public static boolean mouseButtonEndPress(int button) {
+        if (button < 0 || button >= get().mouseButtonEndPress.length) return false;
+
+        return get().mouseButtonEndPress[button];
+    }
 }
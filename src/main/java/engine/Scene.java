@@ -1,6 +1,7 @@
 package engine;
 
 import renderer.Renderer;
+import util.IntMap;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,12 +10,24 @@ import java.util.List;
  * Abstract scene object
  */
 public abstract class Scene {
-    protected Renderer renderer = new Renderer();
+    protected Renderer renderer = new Renderer(this);
     protected Camera camera;
 
     private boolean isRunning = false;
 
     protected List<GameObject> gameObjects = new ArrayList<>();
+    // game objects by uid, so a picked uid is found without searching the list
+    private final IntMap<GameObject> byUid = new IntMap<>();
+    // world positions of the game objects, updated after every game object has run
+    TransformHierarchy hierarchy = new TransformHierarchy();
+    // only update what is around the camera, null updates every game object every frame
+    private ActivityRegions activityRegions = null;
+    // Tickable components of every game object, grouped by phase and class
+    UpdateScheduler scheduler = new UpdateScheduler();
+    // destroyed since the last update, dropped from the hierarchy, scheduler and regions one by one
+    final List<GameObject> removed = new ArrayList<>();
+    // dropped objects still in the list, which is only compacted once they add up
+    private int deadInList = 0;
     public Scene() {
 
     }
@@ -24,14 +37,32 @@ public abstract class Scene {
     }
 
     public void start() {
-        for (GameObject go: gameObjects) {
-            go.start();
-            this.renderer.add(go);
+        // indexed, game objects added while starting are started too
+        for (int i = 0; i < gameObjects.size(); i++) {
+            gameObjects.get(i).start();
+        }
+        // sprites are only handed to the renderer once every world position is known
+        hierarchy.update();
+        for (int i = 0; i < gameObjects.size(); i++) {
+            this.renderer.add(gameObjects.get(i));
         }
         isRunning = true;
     }
 
+    /**
+     * Add a game object, children have to be added on their own after their parent
+     * @param go
+     */
     public void addGameObjectToScene(GameObject go) {
+        go.scene = this;
+        byUid.put(go.getUid(), go);
+        hierarchy.add(go);
+        for (int i = 0; i < go.getNumComponents(); i++) {
+            scheduler.add(go.getComponent(i));
+        }
+        if (activityRegions != null) {
+            activityRegions.add(go);
+        }
         if (!isRunning) {
             gameObjects.add(go);
         } else {
@@ -41,8 +72,177 @@ public abstract class Scene {
         }
     }
 
+    /**
+     * Remove a game object and its children, they stop rendering right away and stop updating on the next update
+     * @param go
+     */
+    public void removeGameObject(GameObject go) {
+        if (go.isDead()) return;
+
+        go.destroy();
+        removeFromRenderer(go);
+    }
+
+    private void removeFromRenderer(GameObject go) {
+        this.renderer.remove(go);
+        List<GameObject> children = go.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            removeFromRenderer(children.get(i));
+        }
+    }
+
+    /**
+     * Update every live game object, then drop removed ones
+     * @param dt
+     */
+    protected void updateGameObjects(float dt) {
+        if (activityRegions != null) {
+            // the regions pick the objects, the scheduler still runs their components phase by phase
+            activityRegions.select(camera, dt, scheduler);
+            scheduler.updateSelected();
+            // moved objects are refreshed right away, the hierarchy pass over every object is skipped
+            activityRegions.afterUpdate();
+            dropRemoved();
+            return;
+        }
+
+        scheduler.update(dt);
+        dropRemoved();
+        hierarchy.update();
+    }
+
+    /**
+     * Unschedule the objects destroyed since the last update and take them out of the hierarchy and the regions,
+     * the cost follows the number of removals, not the scene size
+     */
+    private void dropRemoved() {
+        for (int i = 0; i < removed.size(); i++) {
+            drop(removed.get(i));
+        }
+        removed.clear();
+
+        // order preserving, so it is only worth it once the dead make up a share of the list
+        if (deadInList * 8 > gameObjects.size()) {
+            compactGameObjects();
+        }
+    }
+
+    private void drop(GameObject go) {
+        for (int c = 0; c < go.getNumComponents(); c++) {
+            scheduler.remove(go.getComponent(c));
+        }
+        hierarchy.remove(go);
+        if (activityRegions != null) {
+            activityRegions.remove(go);
+        }
+        if (go.scene == this) {
+            byUid.remove(go.getUid());
+            deadInList++;
+        }
+
+        List<GameObject> children = go.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            drop(children.get(i));
+        }
+    }
+
+    /**
+     * Drop dead game objects from the list, keeping the order of the others
+     */
+    private void compactGameObjects() {
+        int alive = 0;
+        for (int i = 0; i < gameObjects.size(); i++) {
+            GameObject go = gameObjects.get(i);
+            if (go.isDead()) continue;
+
+            if (alive != i) {
+                gameObjects.set(alive, go);
+            }
+            alive++;
+        }
+
+        // drop the tail left behind by removed objects
+        for (int i = gameObjects.size() - 1; i >= alive; i--) {
+            gameObjects.remove(i);
+        }
+        deadInList = 0;
+    }
+
+    /**
+     * Live game objects as of the last update, the list can still hold removed ones until it is compacted
+     */
+    int getNumGameObjects() {
+        return gameObjects.size() - deadInList;
+    }
+
+    /**
+     * Only update the game objects around the camera from now on, null to update everything again
+     * @param regions
+     */
+    public void setActivityRegions(ActivityRegions regions) {
+        this.activityRegions = regions;
+        if (regions == null) return;
+
+        for (int i = 0; i < gameObjects.size(); i++) {
+            if (!gameObjects.get(i).isDead()) {
+                regions.add(gameObjects.get(i));
+            }
+        }
+    }
+
+    /**
+     * Null when every game object updates every frame
+     */
+    public ActivityRegions getActivityRegions() {
+        return activityRegions;
+    }
+
+    /**
+     * Put every game object back in the activity region of its position, after positions were set from outside
+     */
+    void refreshActivityRegions() {
+        if (activityRegions == null) return;
+
+        for (int i = 0; i < gameObjects.size(); i++) {
+            if (!gameObjects.get(i).isDead()) {
+                activityRegions.rebin(gameObjects.get(i));
+            }
+        }
+    }
+
     public abstract void update(float dt);
 
+    /**
+     * Called once when the scene is left or the window closes
+     */
+    public void end() {
+
+    }
+
+    /**
+     * Free one part of the scene's GPU buffers, called every frame after the scene was left
+     * @return true once nothing is left
+     */
+    public boolean destroyStep() {
+        return renderer.destroyStep();
+    }
+
+    /**
+     * Free all of the scene's GPU buffers at once
+     */
+    public void destroy() {
+        renderer.destroy();
+    }
+
+    /**
+     * Live game object with a uid, null if it was removed
+     * @param uid
+     */
+    public GameObject getGameObject(int uid) {
+        GameObject go = byUid.get(uid);
+        return go == null || go.isDead() ? null : go;
+    }
+
     public Camera camera() {
         return this.camera;
     }
@@ -0,0 +1,122 @@
+package engine;
+
+import renderer.GpuResources;
+import renderer.GpuUploadQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the next scene on a background thread while the current one keeps running.
+ * The worker constructs the scene and runs its init, textures are decoded there and their GL uploads
+ * are queued on the GpuUploadQueue. Once the worker is done, a switch was asked for and every upload
+ * went through, the window swaps scenes between two frames.
+ * Scenes that were left give their GPU buffers back one batch per frame instead of all at once.
+ */
+class SceneLoader {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SceneLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // written by the worker, read by the GL thread
+    private volatile Scene loaded = null;
+    private volatile boolean loading = false;
+    private boolean switchRequested = false;
+
+    // scenes that were left and still hold GPU buffers
+    private final List<Scene> retiring = new ArrayList<>();
+
+    /**
+     * Start building a scene in the background, replaces a scene preloaded earlier that wasn't switched to
+     * @param scene index as in Window.changeScene
+     */
+    void preload(int scene) {
+        if (loading) {
+            assert false : "Error: a scene is already being preloaded";
+            return;
+        }
+        loaded = null;
+        loading = true;
+        worker.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                Scene next = Window.createScene(scene);
+                next.init();
+                loaded = next;
+                System.out.printf("[SceneLoader] scene %d loaded in %.1fms%n", scene, (System.nanoTime() - start) * 1E-6);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                assert false : "Error: could not preload scene " + scene;
+            } finally {
+                loading = false;
+            }
+        });
+    }
+
+    /**
+     * Switch to the preloaded scene as soon as it is ready
+     */
+    void requestSwitch() {
+        switchRequested = true;
+    }
+
+    /**
+     * The preloaded scene, once a switch was asked for and it is ready to start, null otherwise
+     */
+    Scene takeReady() {
+        if (!switchRequested || loading || GpuUploadQueue.getPending() > 0) return null;
+
+        Scene next = loaded;
+        if (next == null) {
+            assert false : "Error: switching scenes without a preloaded scene";
+            switchRequested = false;
+            return null;
+        }
+        loaded = null;
+        switchRequested = false;
+        return next;
+    }
+
+    boolean isReady() {
+        return !loading && loaded != null;
+    }
+
+    /**
+     * Hand a scene that was left over to be freed over the next frames
+     */
+    void retire(Scene scene) {
+        retiring.add(scene);
+    }
+
+    /**
+     * Free every retired scene and a preloaded one that was never switched to, when the window closes
+     */
+    void destroyAll() {
+        worker.shutdownNow();
+        for (int i = 0; i < retiring.size(); i++) {
+            retiring.get(i).destroy();
+        }
+        retiring.clear();
+        if (loaded != null) {
+            loaded.destroy();
+            loaded = null;
+        }
+    }
+
+    /**
+     * Free one step of the oldest retired scene, called once per frame
+     */
+    void destroyStep() {
+        if (retiring.isEmpty()) return;
+
+        if (retiring.get(0).destroyStep()) {
+            retiring.remove(0);
+            // after every scene change, GPU memory should come back to the same amount every time
+            GpuResources.printReport();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package engine;
+
+import util.Profiler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The last few seconds of a scene's state, one snapshot per frame, for rewinding time.
+ * Every keyframeInterval frames the full WorldState is kept as a keyframe. The frames in between
+ * only keep their XOR against that keyframe, run length encoded, so everything that didn't move
+ * since the keyframe costs a couple of bytes per run no matter how large it is.
+ * Restoring a frame is one copy of its keyframe plus one pass over its delta.
+ * Slot buffers are reused as the ring wraps, capturing doesn't allocate once they are large enough.
+ */
+public class SnapshotRing {
+    private static final int CAPTURE_SCOPE = Profiler.scope("snapshot capture");
+    private static final int RESTORE_SCOPE = Profiler.scope("snapshot restore");
+    // fewer matching bytes than this in a row are cheaper to keep in the literal than to start a new run
+    private static final int MIN_RUN = 4;
+
+    private final Scene scene;
+    private final int capacity;
+    private final int keyframeInterval;
+
+    // encoded snapshots, frame n lives in slot n % capacity
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final long[] serials;
+    // serial of the keyframe each delta was encoded against, its own serial for keyframes
+    private final long[] keyframes;
+
+    // serial the next capture gets, frames [nextSerial - size, nextSerial) are in the ring
+    private long nextSerial = 0;
+    private int size = 0;
+    private long lastKeyframe = -1;
+
+    private ByteBuffer state;
+    // scratch for encoding, large enough for the worst case delta
+    private byte[] encoded = new byte[0];
+    // restored state, a keyframe with a delta applied on top
+    private byte[] decoded = new byte[0];
+    private ByteBuffer decodedView = ByteBuffer.wrap(decoded);
+
+    /**
+     * @param scene
+     * @param capacity number of frames kept, e.g. 5 seconds at 60 fps is 300
+     * @param keyframeInterval frames between full snapshots, must be smaller than capacity
+     */
+    public SnapshotRing(Scene scene, int capacity, int keyframeInterval) {
+        assert keyframeInterval > 0 && keyframeInterval < capacity : "Error: keyframe interval must be between 0 and the capacity";
+        this.scene = scene;
+        this.capacity = capacity;
+        this.keyframeInterval = keyframeInterval;
+        this.slots = new byte[capacity][];
+        this.lengths = new int[capacity];
+        this.serials = new long[capacity];
+        this.keyframes = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new byte[0];
+            serials[i] = -1;
+        }
+    }
+
+    /**
+     * Snapshot the scene as it is now, called once per frame after the update
+     */
+    public void capture() {
+        Profiler.begin(CAPTURE_SCOPE);
+        state = WorldState.write(scene, state);
+        int length = state.limit();
+
+        long serial = nextSerial++;
+        int slot = (int) (serial % capacity);
+        size = Math.min(size + 1, capacity);
+
+        boolean keyframe = lastKeyframe < 0 || serial - lastKeyframe >= keyframeInterval
+                || lengths[slotOf(lastKeyframe)] != length;
+        if (keyframe) {
+            store(slot, state.array(), length);
+            lastKeyframe = serial;
+        } else {
+            int deltaLength = encodeDelta(state.array(), slots[slotOf(lastKeyframe)], length);
+            store(slot, encoded, deltaLength);
+        }
+        serials[slot] = serial;
+        keyframes[slot] = lastKeyframe;
+        Profiler.end(CAPTURE_SCOPE);
+    }
+
+    /**
+     * Put a frame's state back into the scene, the ring stays as it is
+     * @param framesAgo 0 for the last capture
+     * @return false if the frame is no longer (or not yet) in the ring
+     */
+    public boolean restore(int framesAgo) {
+        if (!isRestorable(framesAgo)) return false;
+
+        Profiler.begin(RESTORE_SCOPE);
+        int slot = slotOf(nextSerial - 1 - framesAgo);
+        int keySlot = slotOf(keyframes[slot]);
+        int length = lengths[keySlot];
+        if (decoded.length < length) {
+            decoded = new byte[length];
+            decodedView = ByteBuffer.wrap(decoded);
+        }
+        System.arraycopy(slots[keySlot], 0, decoded, 0, length);
+        if (keySlot != slot) {
+            decodeDelta(slots[slot], lengths[slot], decoded);
+        }
+
+        decodedView.clear().limit(length);
+        WorldState.read(scene, decodedView);
+        Profiler.end(RESTORE_SCOPE);
+        return true;
+    }
+
+    /**
+     * Go back in time, the frames after the restored one are dropped and capturing continues from it
+     * @param framesAgo 0 for the last capture
+     * @return false if the frame is no longer in the ring
+     */
+    public boolean rewind(int framesAgo) {
+        if (!restore(framesAgo)) return false;
+
+        nextSerial -= framesAgo;
+        size -= framesAgo;
+        lastKeyframe = keyframes[slotOf(nextSerial - 1)];
+        return true;
+    }
+
+    /**
+     * If a frame and the keyframe it depends on are both still in the ring
+     */
+    public boolean isRestorable(int framesAgo) {
+        if (framesAgo < 0 || framesAgo >= size) return false;
+
+        int slot = slotOf(nextSerial - 1 - framesAgo);
+        return keyframes[slot] >= nextSerial - size && serials[slotOf(keyframes[slot])] == keyframes[slot];
+    }
+
+    /**
+     * Forget every frame, the slot buffers are kept for reuse
+     */
+    public void clear() {
+        size = 0;
+        lastKeyframe = -1;
+        for (int i = 0; i < capacity; i++) {
+            serials[i] = -1;
+        }
+    }
+
+    public int getFrames() {
+        return size;
+    }
+
+    /**
+     * Bytes of encoded snapshots currently in the ring, keyframes included
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (serials[i] >= nextSerial - size && serials[i] < nextSerial) {
+                bytes += lengths[i];
+            }
+        }
+        return bytes;
+    }
+
+    private int slotOf(long serial) {
+        return (int) (serial % capacity);
+    }
+
+    private void store(int slot, byte[] data, int length) {
+        if (slots[slot].length < length) {
+            slots[slot] = new byte[length + length / 4];
+        }
+        System.arraycopy(data, 0, slots[slot], 0, length);
+        lengths[slot] = length;
+    }
+
+    /**
+     * Encode current XOR keyframe into the scratch buffer as runs of
+     * (matching byte count, literal byte count, literal bytes XOR keyframe), counts as varints
+     * @return encoded length
+     */
+    private int encodeDelta(byte[] current, byte[] keyframe, int length) {
+        // every token covers at least MIN_RUN bytes or ends the state, and takes at most 10 bytes of counts
+        int bound = length + (length / MIN_RUN + 1) * 10;
+        if (encoded.length < bound) {
+            encoded = new byte[bound];
+        }
+
+        int out = 0;
+        int i = 0;
+        while (i < length) {
+            int literalStart = i;
+            while (literalStart < length && current[literalStart] == keyframe[literalStart]) {
+                literalStart++;
+            }
+
+            // the literal ends at the first run of MIN_RUN matching bytes
+            int literalEnd = literalStart;
+            int matching = 0;
+            for (int j = literalStart; j < length && matching < MIN_RUN; j++) {
+                if (current[j] == keyframe[j]) {
+                    matching++;
+                } else {
+                    matching = 0;
+                    literalEnd = j + 1;
+                }
+            }
+
+            out = putVarint(encoded, out, literalStart - i);
+            out = putVarint(encoded, out, literalEnd - literalStart);
+            for (int j = literalStart; j < literalEnd; j++) {
+                encoded[out++] = (byte) (current[j] ^ keyframe[j]);
+            }
+            i = literalEnd;
+        }
+        return out;
+    }
+
+    /**
+     * Apply an encoded delta on top of a copy of its keyframe
+     */
+    private static void decodeDelta(byte[] delta, int deltaLength, byte[] state) {
+        int in = 0;
+        int position = 0;
+        while (in < deltaLength) {
+            int matching = 0, shift = 0;
+            byte b;
+            do {
+                b = delta[in++];
+                matching |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            int literal = 0;
+            shift = 0;
+            do {
+                b = delta[in++];
+                literal |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            position += matching;
+            for (int j = 0; j < literal; j++) {
+                state[position++] ^= delta[in++];
+            }
+        }
+    }
+
+    private static int putVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,20 @@
+package engine;
+
+/**
+ * Marks a component that has work to do every frame. update is never called on components without it,
+ * so renderers and other data only components cost nothing per frame.
+ */
+public interface Tickable {
+    /**
+     * Called every frame while the game object is in a scene
+     * @param dt
+     */
+    void update(float dt);
+
+    /**
+     * Read once when the component is scheduled, it can't change afterwards
+     */
+    default UpdatePhase getUpdatePhase() {
+        return UpdatePhase.UPDATE;
+    }
+}
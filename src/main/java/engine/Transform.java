@@ -3,23 +3,56 @@ package engine;
 import org.joml.Vector2f;
 
 public class Transform {
+    // relative to the parent game object, or to the world for objects without a parent
     public Vector2f position;
+    // size in pixels, not inherited from the parent
     public Vector2f scale;
 
+    // cached parent world position + position, kept up to date by the scene's TransformHierarchy
+    final Vector2f worldPosition;
+    // bumped whenever the world position or the scale changes
+    int version = 0;
+    // static transforms are only recomputed when asked to, see GameObject.setStatic
+    boolean isStatic = false;
+    // index in the scene's TransformHierarchy, -1 when it isn't in it
+    int hierarchySlot = -1;
+
     public Transform() {
-        init(new Vector2f(), new Vector2f());
+        this(new Vector2f(), new Vector2f());
     }
 
     public Transform(Vector2f position) {
-        init(position, new Vector2f());
+        this(position, new Vector2f());
     }
 
     public Transform(Vector2f position, Vector2f scale) {
+        this.worldPosition = new Vector2f();
         init(position, scale);
     }
 
     public void init(Vector2f position, Vector2f scale) {
         this.position = position;
         this.scale = scale;
+        // right for objects without a parent until the hierarchy says otherwise
+        this.worldPosition.set(position);
+        this.version++;
+    }
+
+    /**
+     * Position in the world, including every parent's position
+     */
+    public Vector2f getWorldPosition() {
+        return worldPosition;
+    }
+
+    /**
+     * Changes every time the world position or the scale changes, cheaper to compare than the values
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isStatic() {
+        return isStatic;
     }
 }
@@ -0,0 +1,237 @@
+package engine;
+
+/**
+ * Keeps the world positions of a scene's non static game objects up to date.
+ * Objects sit in flat arrays ordered parents before children, so one top-down pass sees every
+ * parent's new world position before its children. A transform is only recomputed when its own
+ * position or scale changed or its parent's version moved, which then bumps its own version
+ * for its children and the renderer to notice.
+ * Static objects are never in the arrays and cost nothing per frame.
+ * Removed objects leave a hole in their slot right away, holes are closed by the next update
+ * or, when updates are skipped, once they make up a quarter of the arrays.
+ */
+class TransformHierarchy {
+    private GameObject[] objects = new GameObject[64];
+    // values as of the last recompute, to spot changes without touching the world position
+    private float[] lastX = new float[64], lastY = new float[64];
+    private float[] lastScaleX = new float[64], lastScaleY = new float[64];
+    private int[] lastParentVersion = new int[64];
+    private int size = 0;
+    private int holes = 0;
+
+    // a child may sit before its parent until the arrays are sorted by depth
+    private boolean sorted = true;
+
+    /**
+     * Start tracking a game object, its world position is computed right away
+     * @param go
+     */
+    void add(GameObject go) {
+        if (go.transform.isStatic) {
+            go.refreshTransform();
+            return;
+        }
+        // made static and dynamic again before the next update dropped it
+        if (go.transform.hierarchySlot >= 0) return;
+
+        if (size == objects.length) {
+            if (holes > 0) {
+                closeHoles();
+            } else {
+                grow(size * 2);
+            }
+        }
+        objects[size] = go;
+        go.transform.hierarchySlot = size;
+        recompute(size, go);
+        size++;
+
+        if (go.getParent() != null) {
+            sorted = false;
+        }
+    }
+
+    /**
+     * Stop tracking a removed game object, its children are removed on their own
+     * @param go
+     */
+    void remove(GameObject go) {
+        int slot = go.transform.hierarchySlot;
+        if (slot < 0) return;
+
+        objects[slot] = null;
+        go.transform.hierarchySlot = -1;
+        holes++;
+        if (holes * 4 > size) {
+            closeHoles();
+        }
+    }
+
+    /**
+     * A game object changed parent, the order has to be checked on the next update
+     */
+    void reparented() {
+        sorted = false;
+    }
+
+    /**
+     * Recompute every world position whose local position, scale or parent changed,
+     * dropping removed and static objects from the arrays in the same pass
+     */
+    void update() {
+        if (!sorted) {
+            sortByDepth();
+        }
+
+        int alive = 0;
+        for (int i = 0; i < size; i++) {
+            GameObject go = objects[i];
+            if (go == null) continue;
+            Transform t = go.transform;
+            if (go.isDead() || t.isStatic) {
+                t.hierarchySlot = -1;
+                continue;
+            }
+
+            if (alive != i) {
+                move(i, alive);
+            }
+
+            GameObject parent = go.getParent();
+            int parentVersion = parent != null ? parent.transform.version : 0;
+            if (t.position.x != lastX[alive] || t.position.y != lastY[alive]
+                    || t.scale.x != lastScaleX[alive] || t.scale.y != lastScaleY[alive]
+                    || parentVersion != lastParentVersion[alive]) {
+                recompute(alive, go);
+            }
+            alive++;
+        }
+
+        for (int i = alive; i < size; i++) {
+            objects[i] = null;
+        }
+        size = alive;
+        holes = 0;
+    }
+
+    /**
+     * Shift everything after a hole down, keeping the order, without recomputing anything
+     */
+    private void closeHoles() {
+        int alive = 0;
+        for (int i = 0; i < size; i++) {
+            if (objects[i] == null) continue;
+
+            if (alive != i) {
+                move(i, alive);
+            }
+            alive++;
+        }
+        for (int i = alive; i < size; i++) {
+            objects[i] = null;
+        }
+        size = alive;
+        holes = 0;
+    }
+
+    private void recompute(int slot, GameObject go) {
+        Transform t = go.transform;
+        GameObject parent = go.getParent();
+        if (parent != null) {
+            t.worldPosition.set(parent.transform.worldPosition).add(t.position);
+            lastParentVersion[slot] = parent.transform.version;
+        } else {
+            t.worldPosition.set(t.position);
+            lastParentVersion[slot] = 0;
+        }
+        t.version++;
+
+        lastX[slot] = t.position.x;
+        lastY[slot] = t.position.y;
+        lastScaleX[slot] = t.scale.x;
+        lastScaleY[slot] = t.scale.y;
+    }
+
+    private void move(int from, int to) {
+        objects[to] = objects[from];
+        objects[to].transform.hierarchySlot = to;
+        lastX[to] = lastX[from];
+        lastY[to] = lastY[from];
+        lastScaleX[to] = lastScaleX[from];
+        lastScaleY[to] = lastScaleY[from];
+        lastParentVersion[to] = lastParentVersion[from];
+    }
+
+    /**
+     * Stable counting sort by depth in the tree, roots first, so parents always come before their children
+     */
+    private void sortByDepth() {
+        if (holes > 0) {
+            closeHoles();
+        }
+        int[] depth = new int[size];
+        int maxDepth = 0;
+        for (int i = 0; i < size; i++) {
+            int d = 0;
+            for (GameObject p = objects[i].getParent(); p != null; p = p.getParent()) {
+                d++;
+            }
+            depth[i] = d;
+            maxDepth = Math.max(maxDepth, d);
+        }
+
+        int[] start = new int[maxDepth + 2];
+        for (int i = 0; i < size; i++) {
+            start[depth[i] + 1]++;
+        }
+        for (int d = 1; d < start.length; d++) {
+            start[d] += start[d - 1];
+        }
+
+        GameObject[] sortedObjects = new GameObject[objects.length];
+        float[] sortedX = new float[objects.length], sortedY = new float[objects.length];
+        float[] sortedScaleX = new float[objects.length], sortedScaleY = new float[objects.length];
+        int[] sortedParentVersion = new int[objects.length];
+        for (int i = 0; i < size; i++) {
+            int to = start[depth[i]]++;
+            sortedObjects[to] = objects[i];
+            objects[i].transform.hierarchySlot = to;
+            sortedX[to] = lastX[i];
+            sortedY[to] = lastY[i];
+            sortedScaleX[to] = lastScaleX[i];
+            sortedScaleY[to] = lastScaleY[i];
+            sortedParentVersion[to] = lastParentVersion[i];
+        }
+
+        objects = sortedObjects;
+        lastX = sortedX;
+        lastY = sortedY;
+        lastScaleX = sortedScaleX;
+        lastScaleY = sortedScaleY;
+        lastParentVersion = sortedParentVersion;
+        sorted = true;
+    }
+
+    private void grow(int capacity) {
+        GameObject[] newObjects = new GameObject[capacity];
+        System.arraycopy(objects, 0, newObjects, 0, size);
+        objects = newObjects;
+        lastX = copyOf(lastX, capacity);
+        lastY = copyOf(lastY, capacity);
+        lastScaleX = copyOf(lastScaleX, capacity);
+        lastScaleY = copyOf(lastScaleY, capacity);
+        int[] newParentVersion = new int[capacity];
+        System.arraycopy(lastParentVersion, 0, newParentVersion, 0, size);
+        lastParentVersion = newParentVersion;
+    }
+
+    private float[] copyOf(float[] array, int capacity) {
+        float[] copy = new float[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    int size() {
+        return size;
+    }
+}
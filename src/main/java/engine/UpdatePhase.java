@@ -0,0 +1,13 @@
+package engine;
+
+/**
+ * When a Tickable component runs within a frame, every component of a phase runs before any of the next one
+ */
+public enum UpdatePhase {
+    // input, AI decisions, anything the movement of this frame depends on
+    PRE_UPDATE,
+    // movement and gameplay
+    UPDATE,
+    // whatever follows what moved this frame: cameras, text layout, debug drawing
+    LATE_UPDATE
+}
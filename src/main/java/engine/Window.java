@@ -1,8 +1,20 @@
 package engine;
 
+import audio.AudioManager;
 import org.lwjgl.Version;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.opengl.GL;
+import renderer.DebugDraw;
+import renderer.FrameCapture;
+import renderer.Framebuffer;
+import renderer.GpuResources;
+import renderer.GpuUploadQueue;
+import renderer.LowResTarget;
+import renderer.ObjectPicker;
+import renderer.RenderStats;
+import util.AllocationCheck;
+import util.AssetPool;
+import util.Profiler;
 import util.Time;
 
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
@@ -14,6 +26,12 @@ import static org.lwjgl.system.MemoryUtil.NULL;
  * This is a singleton window class
  */
 public class Window {
+    private static final int FRAME_SCOPE = Profiler.scope("frame");
+    private static final int UPDATE_SCOPE = Profiler.scope("update");
+    private static final int SWAP_SCOPE = Profiler.scope("swap");
+    // time per frame spent on GL uploads of a scene loading in the background
+    private static final long UPLOAD_BUDGET = 2_000_000;
+
     private int width;
     private int height;
     private String title;
@@ -25,6 +43,45 @@ public class Window {
 
     public float r,g,b,a;
 
+    // poll GLFW on the main thread and render on a separate one, so input is timestamped as soon as it arrives
+    private boolean threadedInput = false;
+    // chrome trace written on exit when profiling, null when the profiler is off
+    private String profileOutput = null;
+
+    // headless mode renders into an offscreen framebuffer of an invisible window
+    private boolean headless = false;
+    private Framebuffer offscreen = null;
+    // scene drawn at this resolution and scaled up to the window, 0 draws at the window's resolution
+    private int virtualWidth = 0, virtualHeight = 0;
+    private LowResTarget lowRes = null;
+    // set by the GLFW thread when the window is resized, the window size is in screen coordinates
+    // which are not pixels on HiDPI displays
+    private volatile int framebufferWidth, framebufferHeight;
+    private volatile int windowWidth, windowHeight;
+    // created by the first scene asking for a pick
+    private ObjectPicker objectPicker = null;
+    // every presented frame is written to captureDirectory when set
+    private String captureDirectory = null;
+    private FrameCapture.Format captureFormat = FrameCapture.Format.RAW;
+    private FrameCapture frameCapture = null;
+    // exit after this many frames or seconds, 0 runs until the window is closed
+    private long maxFrames = 0;
+    private double maxSeconds = 0;
+    private long frameCount = 0;
+    private int initialScene = 0;
+    // fails the run if the frame loop allocates, null when not checking
+    private AllocationCheck allocationCheck = null;
+    // vsync for a window, uncapped headless, unless asked for something else
+    private FramePacer.Mode pacing = null;
+    private double targetFps = 0;
+    private FramePacer framePacer;
+    private final SceneLoader sceneLoader = new SceneLoader();
+    // OpenAL device, null for the default one
+    private boolean audio = true;
+    private String audioDevice = null;
+    // looped from the start when set
+    private String music = null;
+
     private Window() {
         this.width = 1920;
         height = 1080;
@@ -45,7 +102,18 @@ public class Window {
     public void run() {
         System.out.println("This Engine is running LWJGL - Version " + Version.getVersion());
         init();
-        loop();
+        if (threadedInput) {
+            runThreaded();
+        } else {
+            loop();
+            shutdown();
+        }
+
+        framePacer.printSummary();
+        if (Profiler.enabled) {
+            Profiler.printSummary();
+            Profiler.exportChromeTrace(profileOutput);
+        }
 
         // free mem
         glfwFreeCallbacks(glfwWindow);
@@ -68,8 +136,8 @@ public class Window {
         // hide window
         glfwDefaultWindowHints();
         glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
-        glfwWindowHint(GLFW_RESIZABLE, GLFW_TRUE);
-        glfwWindowHint(GLFW_MAXIMIZED, GLFW_TRUE);
+        glfwWindowHint(GLFW_RESIZABLE, headless ? GLFW_FALSE : GLFW_TRUE);
+        glfwWindowHint(GLFW_MAXIMIZED, headless ? GLFW_FALSE : GLFW_TRUE);
 
         // this is needed for macos in order to write glsl version 3
 //        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
@@ -88,20 +156,130 @@ public class Window {
         glfwSetMouseButtonCallback(glfwWindow, MouseListener::mouseButtonCallback);
         glfwSetScrollCallback(glfwWindow, MouseListener::mouseScrollCallback);
         glfwSetKeyCallback(glfwWindow, KeyListener::keyCallback);
+        glfwSetFramebufferSizeCallback(glfwWindow, (w, newWidth, newHeight) -> {
+            framebufferWidth = newWidth;
+            framebufferHeight = newHeight;
+        });
+        glfwSetWindowSizeCallback(glfwWindow, (w, newWidth, newHeight) -> {
+            windowWidth = newWidth;
+            windowHeight = newHeight;
+        });
+        int[] fbWidth = new int[1], fbHeight = new int[1];
+        glfwGetFramebufferSize(glfwWindow, fbWidth, fbHeight);
+        framebufferWidth = fbWidth[0];
+        framebufferHeight = fbHeight[0];
+        glfwGetWindowSize(glfwWindow, fbWidth, fbHeight);
+        windowWidth = fbWidth[0];
+        windowHeight = fbHeight[0];
 
         // make openGL context current
         glfwMakeContextCurrent(glfwWindow);
-        // enable v-sync by monitor refresh rate
-        glfwSwapInterval(1);
+        GpuUploadQueue.setGlThread(Thread.currentThread());
+        framePacer = new FramePacer(pacing != null ? pacing : headless ? FramePacer.Mode.UNCAPPED : FramePacer.Mode.VSYNC);
+        if (targetFps > 0) {
+            framePacer.setTargetFps(targetFps);
+        }
+        framePacer.apply();
 
         // make window visible
-        glfwShowWindow(glfwWindow);
+        if (!headless) {
+            glfwShowWindow(glfwWindow);
+        }
 
         GL.createCapabilities();
 
+        // alpha blend sprites, glyph and particle edges are only transparent in their alpha
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+
+        if (headless) {
+            // the invisible window's own back buffer may not exist, draw everything into an fbo instead
+            offscreen = new Framebuffer(this.width, this.height);
+            offscreen.bind();
+            glViewport(0, 0, this.width, this.height);
+        }
+        if (virtualWidth > 0) {
+            lowRes = new LowResTarget(virtualWidth, virtualHeight);
+        }
+        if (captureDirectory != null) {
+            frameCapture = new FrameCapture(captureDirectory, captureFormat);
+        }
+
+        // live counters for JConsole, always on
+        EngineMetrics.register();
+
+        if (audio && AudioManager.get().init(audioDevice) && music != null) {
+            AudioManager.get().playMusic(music, true);
+        }
+
         // start scene
-        Window.changeScene(0);
+        Window.changeScene(initialScene);
+
+    }
+
+    /**
+     * Hand the GL context to a render thread and keep the main thread blocked on GLFW events,
+     * GLFW requires event processing to stay on the thread that initialized it
+     */
+    private void runThreaded() {
+        glfwMakeContextCurrent(NULL);
+
+        Thread renderThread = new Thread(() -> {
+            glfwMakeContextCurrent(glfwWindow);
+            GpuUploadQueue.setGlThread(Thread.currentThread());
+            GL.createCapabilities();
+            // the swap interval belongs to the context that is current when it is set
+            framePacer.apply();
+            loop();
+            shutdown();
+            glfwMakeContextCurrent(NULL);
+            // wake the event thread up so it notices the window is closing
+            glfwPostEmptyEvent();
+        }, "Render");
+        renderThread.start();
+
+        while (!glfwWindowShouldClose(glfwWindow)) {
+            glfwWaitEvents();
+        }
+
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Leave the scene and free everything on the GPU, on the thread owning the context.
+     * Whatever is still allocated afterwards was never freed by its owner and is reported as a leak
+     */
+    private void shutdown() {
+        currentScene.end();
+        GpuResources.printReport();
+
+        currentScene.destroy();
+        sceneLoader.destroyAll();
+        DebugDraw.destroy();
+        if (objectPicker != null) {
+            objectPicker.destroy();
+        }
+        if (frameCapture != null) {
+            // writes out the frames still in flight
+            frameCapture.destroy();
+            frameCapture.printSummary();
+        }
+        if (lowRes != null) {
+            lowRes.destroy();
+        }
+        if (offscreen != null) {
+            offscreen.destroy();
+        }
+        AssetPool.clear();
+        GpuResources.checkLeaks();
 
+        AudioManager.get().printSummary();
+        AudioManager.get().destroy();
+        EngineMetrics.unregister();
     }
 
     public void loop() {
@@ -111,17 +289,74 @@ public class Window {
 
         // executes every frame
         while(!glfwWindowShouldClose(glfwWindow)) {
-            // poll events
-            glfwPollEvents();
+            Profiler.begin(FRAME_SCOPE);
+            // poll events, in threaded mode the main thread is already doing it
+            if (!threadedInput) {
+                glfwPollEvents();
+            }
+            InputQueue.get().dispatch();
+            // a scene loading in the background gets a slice of every frame for its uploads,
+            // and takes over between two frames once it's done
+            GpuUploadQueue.drain(UPLOAD_BUDGET);
+            Scene next = sceneLoader.takeReady();
+            if (next != null) {
+                swapScene(next);
+            }
+            sceneLoader.destroyStep();
+            if (lowRes != null) {
+                lowRes.bind();
+            } else if (offscreen == null) {
+                // follow the window when it is resized
+                glViewport(0, 0, framebufferWidth, framebufferHeight);
+            }
             glClearColor(r, g, b, a);
             glClear(GL_COLOR_BUFFER_BIT);
+            RenderStats.beginFrame();
 
             if (dt >= 0) {
 //                System.out.println(1/dt);
+                Profiler.begin(UPDATE_SCOPE);
                 currentScene.update(dt);
+                Profiler.end(UPDATE_SCOPE);
+            }
+            // ids of the sprites the scene just drew, only when a pick was requested
+            if (objectPicker != null) {
+                objectPicker.render(currentScene.renderer, getSceneWidth(), getSceneHeight(), getSceneFbo());
+            }
+            // debug lines go over the scene, a no-op without -ea
+            DebugDraw.draw();
+            if (lowRes != null) {
+                if (offscreen != null) {
+                    lowRes.present(offscreen.getFboID(), offscreen.getWidth(), offscreen.getHeight());
+                } else {
+                    lowRes.present(0, framebufferWidth, framebufferHeight);
+                }
+            }
+            // the finished frame, as it is about to be shown
+            if (frameCapture != null) {
+                if (offscreen != null) {
+                    frameCapture.capture(offscreen.getFboID(), offscreen.getWidth(), offscreen.getHeight());
+                } else {
+                    frameCapture.capture(0, framebufferWidth, framebufferHeight);
+                }
             }
 
+            Profiler.begin(SWAP_SCOPE);
+            framePacer.waitForFrame();
             glfwSwapBuffers(glfwWindow);
+            framePacer.framePresented(InputQueue.get().getOldestDispatched());
+            Profiler.end(SWAP_SCOPE);
+            Profiler.end(FRAME_SCOPE);
+            Profiler.endFrame();
+            frameCount++;
+            EngineMetrics.get().endFrame(currentScene);
+
+            if (allocationCheck != null) {
+                allocationCheck.endFrame();
+                if (allocationCheck.isDone()) {
+                    glfwSetWindowShouldClose(glfwWindow, true);
+                }
+            }
             endTime = (float) glfwGetTime();
             dt = endTime - beginTime;
             beginTime = endTime;
@@ -129,24 +364,247 @@ public class Window {
             if (KeyListener.isKeyPressed(GLFW_KEY_ESCAPE)) {
                 glfwSetWindowShouldClose(glfwWindow, true);
             }
+            if ((maxFrames > 0 && frameCount >= maxFrames) || (maxSeconds > 0 && glfwGetTime() >= maxSeconds)) {
+                glfwSetWindowShouldClose(glfwWindow, true);
+            }
+        }
+    }
+
+    public void setThreadedInput(boolean threadedInput) {
+        this.threadedInput = threadedInput;
+    }
+
+    /**
+     * Render offscreen into an invisible window, for perf runs on machines without a display
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Draw the scene at a fixed resolution and scale it up to the window with whole pixel multiples,
+     * e.g. 640x360 makes every 32 unit tile of the camera 16 pixels
+     * @param width
+     * @param height
+     */
+    public void setVirtualResolution(int width, int height) {
+        this.virtualWidth = width;
+        this.virtualHeight = height;
+    }
+
+    /**
+     * The virtual resolution target, null when drawing at the window's resolution
+     */
+    public LowResTarget getLowResTarget() {
+        return lowRes;
+    }
+
+    /**
+     * Width in pixels of what the scene is drawn into: the virtual resolution, the headless framebuffer or the window
+     */
+    public int getSceneWidth() {
+        if (lowRes != null) return lowRes.getWidth();
+        if (offscreen != null) return offscreen.getWidth();
+        return framebufferWidth;
+    }
+
+    public int getSceneHeight() {
+        if (lowRes != null) return lowRes.getHeight();
+        if (offscreen != null) return offscreen.getHeight();
+        return framebufferHeight;
+    }
+
+    private int getSceneFbo() {
+        if (lowRes != null) return lowRes.getFboID();
+        if (offscreen != null) return offscreen.getFboID();
+        return 0;
+    }
+
+    int getFramebufferWidth() {
+        return framebufferWidth;
+    }
+
+    int getFramebufferHeight() {
+        return framebufferHeight;
+    }
+
+    int getWindowWidth() {
+        return windowWidth;
+    }
+
+    int getWindowHeight() {
+        return windowHeight;
+    }
+
+    /**
+     * Finds the game object under a pixel of the scene, see MouseListener.getScreenX/Y for the cursor's pixel.
+     * Must be called from the GL thread
+     */
+    public static ObjectPicker getObjectPicker() {
+        if (get().objectPicker == null) {
+            get().objectPicker = new ObjectPicker();
         }
+        return get().objectPicker;
+    }
+
+    /**
+     * Write every presented frame to a directory, read back asynchronously and encoded on background threads
+     * @param directory
+     * @param format
+     */
+    public void setCapture(String directory, FrameCapture.Format format) {
+        this.captureDirectory = directory;
+        this.captureFormat = format;
+    }
+
+    /**
+     * @param enabled false never opens an audio device
+     * @param device OpenAL device name, null for the default one
+     */
+    public void setAudio(boolean enabled, String device) {
+        this.audio = enabled;
+        this.audioDevice = device;
+    }
+
+    /**
+     * Stream an ogg vorbis track in a loop from the start
+     * @param filePath
+     */
+    public void setMusic(String filePath) {
+        this.music = filePath;
+    }
+
+    public void setFramePacing(FramePacer.Mode mode) {
+        this.pacing = mode;
+    }
+
+    /**
+     * Limit the frame rate with a sleep then spin limiter instead of vsync
+     * @param fps
+     */
+    public void setTargetFps(double fps) {
+        this.targetFps = fps;
+    }
+
+    /**
+     * Pacing and its frame time/latency measurements, null before init
+     */
+    public FramePacer getFramePacer() {
+        return framePacer;
+    }
+
+    public void setMaxFrames(long maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    public void setMaxSeconds(double maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+
+    /**
+     * Measure render thread allocations over a number of frames after warming up, then close
+     * @param warmupFrames
+     * @param frames
+     */
+    public void checkAllocations(long warmupFrames, long frames) {
+        this.allocationCheck = new AllocationCheck(warmupFrames, frames);
+    }
+
+    /**
+     * @return false if an allocation check ran and something was allocated
+     */
+    public boolean passedAllocationCheck() {
+        return allocationCheck == null || allocationCheck.passed();
     }
 
+    public void setInitialScene(int initialScene) {
+        this.initialScene = initialScene;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Turn the profiler on, the summary is printed and the trace written to filePath on exit
+     * @param filePath
+     */
+    public void setProfileOutput(String filePath) {
+        this.profileOutput = filePath;
+        Profiler.enabled = filePath != null;
+    }
+
+    /**
+     * Switch scenes right away, init and start run on the calling thread
+     * @param newScene
+     */
     public static void changeScene(int newScene) {
-        switch (newScene) {
+        Scene scene = createScene(newScene);
+        if (scene == null) return;
+
+        scene.init();
+        get().swapScene(scene);
+    }
+
+    /**
+     * Build a scene on a background thread while the current one keeps running,
+     * switchToPreloadedScene swaps to it once it is loaded
+     * @param newScene
+     */
+    public static void preloadScene(int newScene) {
+        get().sceneLoader.preload(newScene);
+    }
+
+    /**
+     * Swap to the preloaded scene at the start of the first frame it is ready
+     */
+    public static void switchToPreloadedScene() {
+        get().sceneLoader.requestSwitch();
+    }
+
+    public static boolean isPreloadedSceneReady() {
+        return get().sceneLoader.isReady();
+    }
+
+    /**
+     * Start the new scene and leave the old one, whose GPU buffers are freed over the next frames
+     * @param next
+     */
+    private void swapScene(Scene next) {
+        Scene old = currentScene;
+        currentScene = next;
+        if (old != null) {
+            old.end();
+            sceneLoader.retire(old);
+        }
+        // start all game objects under the scene
+        next.start();
+    }
+
+    /**
+     * New, not yet initialized scene, may be called from any thread
+     * @param index
+     */
+    static Scene createScene(int index) {
+        switch (index) {
             case 0:
-                currentScene = new LevelEditorScene();
-                currentScene.init();
-                // start all game objects under the scene
-                currentScene.start();
-                break;
+                return new LevelEditorScene();
             case 1:
-                currentScene = new LevelScene();
-                currentScene.init();
-                currentScene.start();
-                break;
+                return new LevelScene();
+            case 2:
+                return new BenchmarkScene();
             default:
-                assert false : "Unknown Scene " + newScene + "";
+                assert false : "Unknown Scene " + index + "";
+                return null;
         }
     }
 
@@ -0,0 +1,110 @@
+package engine;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Flat binary state of every game object in a scene, for save states and snapshots.
+ * Per object: uid, byte length of the rest, number of components, position, scale,
+ * then whatever each component writes in save.
+ * Only values are written, reading it back overwrites the objects that still exist
+ * and leaves everything else alone, removed objects are not brought back.
+ */
+public class WorldState {
+    private static final int INITIAL_SIZE = 4096;
+
+    /**
+     * Serialize a scene's live game objects
+     * @param scene
+     * @param out written from position 0, replaced by a larger buffer when it is too small
+     * @return the buffer holding the state, flipped for reading
+     */
+    public static ByteBuffer write(Scene scene, ByteBuffer out) {
+        if (out == null) {
+            out = ByteBuffer.allocate(INITIAL_SIZE);
+        }
+        while (true) {
+            out.clear();
+            try {
+                writeObjects(scene.gameObjects, out);
+                out.flip();
+                return out;
+            } catch (BufferOverflowException e) {
+                out = ByteBuffer.allocate(out.capacity() * 2);
+            }
+        }
+    }
+
+    private static void writeObjects(List<GameObject> gameObjects, ByteBuffer out) {
+        int countPosition = out.position();
+        out.putInt(0);
+        int count = 0;
+        for (int i = 0; i < gameObjects.size(); i++) {
+            GameObject go = gameObjects.get(i);
+            if (go.isDead()) continue;
+
+            out.putInt(go.getUid());
+            int lengthPosition = out.position();
+            out.putInt(0);
+
+            Transform t = go.transform;
+            out.putInt(go.getNumComponents());
+            out.putFloat(t.position.x).putFloat(t.position.y).putFloat(t.scale.x).putFloat(t.scale.y);
+            for (int c = 0; c < go.getNumComponents(); c++) {
+                go.getComponent(c).save(out);
+            }
+            out.putInt(lengthPosition, out.position() - lengthPosition - Integer.BYTES);
+            count++;
+        }
+        out.putInt(countPosition, count);
+    }
+
+    /**
+     * Restore a scene from a state written by write, world positions are updated right away
+     * @param scene
+     * @param in read from its position to its limit
+     */
+    public static void read(Scene scene, ByteBuffer in) {
+        List<GameObject> gameObjects = scene.gameObjects;
+        // walks the list while it lines up with the state, uids are looked up once it doesn't, e.g. after churn
+        int cursor = 0;
+
+        int count = in.getInt();
+        for (int n = 0; n < count; n++) {
+            int uid = in.getInt();
+            int length = in.getInt();
+            int end = in.position() + length;
+
+            GameObject go = null;
+            if (cursor < gameObjects.size() && gameObjects.get(cursor).getUid() == uid) {
+                go = gameObjects.get(cursor++);
+            } else {
+                go = scene.getGameObject(uid);
+            }
+
+            int numComponents = in.getInt();
+            if (go == null || go.isDead() || go.getNumComponents() != numComponents) {
+                // gone, or changed shape since the state was written
+                in.position(end);
+                continue;
+            }
+
+            Transform t = go.transform;
+            t.position.set(in.getFloat(), in.getFloat());
+            t.scale.set(in.getFloat(), in.getFloat());
+            for (int c = 0; c < numComponents; c++) {
+                go.getComponent(c).load(in);
+            }
+            assert in.position() == end : "Error: components of game object " + uid + " did not read what they saved";
+            in.position(end);
+
+            // the per frame update skips static subtrees
+            if (t.isStatic) {
+                go.refreshTransform();
+            }
+        }
+        scene.hierarchy.update();
+        scene.refreshActivityRegions();
+    }
+}
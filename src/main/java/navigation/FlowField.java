@@ -0,0 +1,53 @@
+package navigation;
+
+/**
+ * Steps to a target tile from every tile of the grid, shared by every agent heading there.
+ * An agent reads the neighbour one step closer to the target, so following a field costs
+ * a few array reads per agent whatever the distance. Built and repaired by the Navigator.
+ */
+public class FlowField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final NavGrid grid;
+    // steps to the target per tile, UNREACHABLE for blocked tiles and ones walled off from it
+    final int[] distance;
+    // tile index of the target, -1 while the field is unused
+    int target = -1;
+    // Navigator use counter of the last lookup, the least recently used field is rebuilt for a new target
+    long lastUsed = 0;
+
+    FlowField(NavGrid grid) {
+        this.grid = grid;
+        this.distance = new int[grid.getNumTiles()];
+    }
+
+    /**
+     * Tile index of the neighbour one step closer to the target
+     * @param index tile the agent is on
+     * @return -1 on the target or when it can't be reached from here
+     */
+    public int next(int index) {
+        int d = distance[index];
+        if (d == 0 || d == UNREACHABLE) return -1;
+
+        int width = grid.getWidth();
+        int x = index % width;
+        // the first neighbour found one step closer, in a fixed order so agents on the same tile agree
+        if (x + 1 < width && distance[index + 1] == d - 1) return index + 1;
+        if (x > 0 && distance[index - 1] == d - 1) return index - 1;
+        if (index + width < distance.length && distance[index + width] == d - 1) return index + width;
+        if (index - width >= 0 && distance[index - width] == d - 1) return index - width;
+        return -1;
+    }
+
+    /**
+     * Steps to the target, UNREACHABLE if it can't be reached
+     */
+    public int getDistance(int x, int y) {
+        return grid.contains(x, y) ? distance[grid.index(x, y)] : UNREACHABLE;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+}
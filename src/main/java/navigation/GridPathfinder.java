@@ -0,0 +1,124 @@
+package navigation;
+
+import java.util.Arrays;
+
+/**
+ * A* over the tile grid for one-off queries that aren't worth a flow field, e.g. a patrol route.
+ * The open set, scores and parents are allocated once for the whole grid and reused by every search.
+ * Instead of clearing them, each search bumps a generation and a tile only counts as seen
+ * if it was stamped with the current one, so a short search costs the tiles it touches, not the grid.
+ * Only used from one thread.
+ */
+public class GridPathfinder {
+    public static final int NO_PATH = -1;
+
+    private final NavGrid grid;
+    private final IntHeap open;
+    private final int[] cost;
+    private final int[] parent;
+    // generation the tile was first reached in, and closed in
+    private final int[] seen;
+    private final int[] closed;
+    private int generation = 0;
+
+    private long searches = 0;
+    private long expanded = 0;
+
+    public GridPathfinder(NavGrid grid) {
+        this.grid = grid;
+        int numTiles = grid.getNumTiles();
+        this.open = new IntHeap(256);
+        this.cost = new int[numTiles];
+        this.parent = new int[numTiles];
+        this.seen = new int[numTiles];
+        this.closed = new int[numTiles];
+    }
+
+    /**
+     * Shortest path between two tiles
+     * @param path receives the tile indices from the one after the start up to the goal, a path longer
+     *             than the array is cut after its first path.length steps
+     * @return number of steps of the whole path, 0 if start is the goal, NO_PATH if the goal can't be reached
+     */
+    public int findPath(int fromX, int fromY, int toX, int toY, int[] path) {
+        if (grid.isBlocked(fromX, fromY) || grid.isBlocked(toX, toY)) return NO_PATH;
+
+        searches++;
+        if (++generation == Integer.MAX_VALUE) {
+            // after two billion searches, start the stamps over
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+
+        int width = grid.getWidth();
+        int start = grid.index(fromX, fromY);
+        int goal = grid.index(toX, toY);
+        open.clear();
+        cost[start] = 0;
+        parent[start] = -1;
+        seen[start] = generation;
+        open.push(manhattan(start, toX, toY, width), start);
+
+        while (!open.isEmpty()) {
+            int current = IntHeap.index(open.pop());
+            // pushed again with a lower cost since, this one is stale
+            if (closed[current] == generation) continue;
+            closed[current] = generation;
+            expanded++;
+            if (current == goal) {
+                return writePath(goal, path);
+            }
+
+            int x = current % width;
+            if (x + 1 < width) visit(current, current + 1, toX, toY, width);
+            if (x > 0) visit(current, current - 1, toX, toY, width);
+            if (current + width < cost.length) visit(current, current + width, toX, toY, width);
+            if (current - width >= 0) visit(current, current - width, toX, toY, width);
+        }
+        return NO_PATH;
+    }
+
+    private void visit(int current, int neighbour, int toX, int toY, int width) {
+        if (!grid.isWalkable(neighbour) || closed[neighbour] == generation) return;
+
+        int newCost = cost[current] + 1;
+        if (seen[neighbour] == generation && cost[neighbour] <= newCost) return;
+
+        seen[neighbour] = generation;
+        cost[neighbour] = newCost;
+        parent[neighbour] = current;
+        open.push(newCost + manhattan(neighbour, toX, toY, width), neighbour);
+    }
+
+    /**
+     * Exact on a grid without diagonal moves, so the first path reaching the goal is a shortest one
+     */
+    private static int manhattan(int index, int toX, int toY, int width) {
+        return Math.abs(index % width - toX) + Math.abs(index / width - toY);
+    }
+
+    private int writePath(int goal, int[] path) {
+        int length = cost[goal];
+        // walk back from the goal, skipping the steps that don't fit
+        int tile = goal;
+        for (int step = length - 1; step >= 0; step--) {
+            if (step < path.length) {
+                path[step] = tile;
+            }
+            tile = parent[tile];
+        }
+        return length;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * Tiles taken off the open set over every search
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+}
@@ -0,0 +1,73 @@
+package navigation;
+
+/**
+ * Binary min heap of tile indices by an int priority, packed into longs so it never boxes.
+ * Cleared and reused for every search, it only allocates when a search needs more room than any before.
+ * Entries aren't updated in place, a tile whose priority drops is pushed again and the stale entry skipped when popped
+ */
+class IntHeap {
+    private long[] entries;
+    private int size = 0;
+
+    IntHeap(int capacity) {
+        this.entries = new long[Math.max(16, capacity)];
+    }
+
+    void push(int priority, int index) {
+        if (size == entries.length) {
+            long[] grown = new long[entries.length * 2];
+            System.arraycopy(entries, 0, grown, 0, size);
+            entries = grown;
+        }
+
+        // priorities are never negative, so the packed longs sort by priority first
+        long entry = ((long) priority << 32) | (index & 0xFFFFFFFFL);
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (entries[parent] <= entry) break;
+            entries[i] = entries[parent];
+            i = parent;
+        }
+        entries[i] = entry;
+    }
+
+    /**
+     * Remove the entry with the lowest priority, read it with priority/index
+     */
+    long pop() {
+        long top = entries[0];
+        long last = entries[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && entries[child + 1] < entries[child]) {
+                child++;
+            }
+            if (last <= entries[child]) break;
+            entries[i] = entries[child];
+            i = child;
+        }
+        if (size > 0) {
+            entries[i] = last;
+        }
+        return top;
+    }
+
+    static int priority(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    static int index(long entry) {
+        return (int) entry;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
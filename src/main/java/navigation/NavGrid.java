@@ -0,0 +1,88 @@
+package navigation;
+
+/**
+ * Walkable tiles of a level, a square grid laid over the world starting at an origin.
+ * Agents move between the 4 tiles sharing an edge, the grid knows nothing about jumps or gravity.
+ * Tiles are changed through the Navigator so the flow fields it caches are repaired too.
+ */
+public class NavGrid {
+    private final int width, height;
+    private final float tileSize;
+    private final float originX, originY;
+    private final boolean[] blocked;
+
+    /**
+     * @param width tiles per row
+     * @param height rows
+     * @param tileSize world units per side of a tile, 32 for the level editor's grid
+     * @param originX world position of the bottom left corner of tile 0, 0
+     * @param originY
+     */
+    public NavGrid(int width, int height, float tileSize, float originX, float originY) {
+        assert width > 0 && height > 0 : "Error: navigation grid needs at least one tile";
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.originX = originX;
+        this.originY = originY;
+        this.blocked = new boolean[width * height];
+    }
+
+    void setBlocked(int index, boolean blocked) {
+        this.blocked[index] = blocked;
+    }
+
+    public boolean isBlocked(int x, int y) {
+        return !contains(x, y) || blocked[index(x, y)];
+    }
+
+    /**
+     * Tile index, walkable and in bounds
+     */
+    boolean isWalkable(int index) {
+        return !blocked[index];
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public int tileX(float worldX) {
+        return (int) Math.floor((worldX - originX) / tileSize);
+    }
+
+    public int tileY(float worldY) {
+        return (int) Math.floor((worldY - originY) / tileSize);
+    }
+
+    /**
+     * World position of the center of a tile
+     */
+    public float centerX(int index) {
+        return originX + (index % width + 0.5f) * tileSize;
+    }
+
+    public float centerY(int index) {
+        return originY + (index / width + 0.5f) * tileSize;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumTiles() {
+        return width * height;
+    }
+
+    public float getTileSize() {
+        return tileSize;
+    }
+}
@@ -0,0 +1,288 @@
+package navigation;
+
+import java.util.Arrays;
+
+/**
+ * Path finding for every agent of a level. Agents chasing the same target share one flow field,
+ * so a thousand enemies after Mario cost one breadth first search over the grid plus a lookup each.
+ * Fields of the most recently asked for targets are kept, the least recently used one is rebuilt
+ * for a new target. When a tile changes, every kept field is repaired around it instead of rebuilt:
+ * a blocked tile only resets the tiles whose shortest path led through it, an opened one only spreads
+ * the distances it shortens. One-off queries go to A* instead.
+ * Only used from the thread updating the scene, lookups and repairs never allocate once every slot holds a field.
+ */
+public class Navigator {
+    private static final int DEFAULT_MAX_FIELDS = 16;
+
+    private final NavGrid grid;
+    private final FlowField[] fields;
+    private final GridPathfinder pathfinder;
+    private long uses = 0;
+
+    // scratch shared by every build and repair
+    private final int[] queue;
+    private final int[] affected;
+    private final int[] marks;
+    private int mark = 0;
+    private final IntHeap heap;
+
+    private long builds = 0;
+    private long repairs = 0;
+    private long lookups = 0;
+
+    public Navigator(NavGrid grid) {
+        this(grid, DEFAULT_MAX_FIELDS);
+    }
+
+    /**
+     * @param grid
+     * @param maxFields flow fields kept at once, each holds an int per tile
+     */
+    public Navigator(NavGrid grid, int maxFields) {
+        this.grid = grid;
+        this.fields = new FlowField[maxFields];
+        this.pathfinder = new GridPathfinder(grid);
+        int numTiles = grid.getNumTiles();
+        this.queue = new int[numTiles];
+        this.affected = new int[numTiles];
+        this.marks = new int[numTiles];
+        this.heap = new IntHeap(256);
+    }
+
+    public NavGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Flow field toward a tile, built on the first request and shared by everyone asking for the same tile
+     * @return null if the tile is outside the grid
+     */
+    public FlowField getFlowField(int targetX, int targetY) {
+        if (!grid.contains(targetX, targetY)) return null;
+
+        lookups++;
+        int target = grid.index(targetX, targetY);
+        int oldest = 0;
+        for (int i = 0; i < fields.length; i++) {
+            FlowField field = fields[i];
+            if (field == null) {
+                fields[i] = new FlowField(grid);
+                oldest = i;
+                break;
+            }
+            if (field.target == target) {
+                field.lastUsed = ++uses;
+                return field;
+            }
+            if (field.lastUsed < fields[oldest].lastUsed) {
+                oldest = i;
+            }
+        }
+
+        // the least recently used field's array is reused for the new target
+        FlowField field = fields[oldest];
+        build(field, target);
+        field.lastUsed = ++uses;
+        return field;
+    }
+
+    /**
+     * Flow field toward the tile under a world position
+     */
+    public FlowField getFlowField(float worldX, float worldY) {
+        return getFlowField(grid.tileX(worldX), grid.tileY(worldY));
+    }
+
+    /**
+     * Shortest path between two tiles with A*, for queries no one else shares
+     * @see GridPathfinder#findPath
+     */
+    public int findPath(int fromX, int fromY, int toX, int toY, int[] path) {
+        return pathfinder.findPath(fromX, fromY, toX, toY, path);
+    }
+
+    /**
+     * Block or open a tile and repair every kept flow field around it
+     */
+    public void setBlocked(int x, int y, boolean blocked) {
+        if (!grid.contains(x, y) || grid.isBlocked(x, y) == blocked) return;
+
+        int tile = grid.index(x, y);
+        grid.setBlocked(tile, blocked);
+        for (int i = 0; i < fields.length; i++) {
+            FlowField field = fields[i];
+            if (field == null || field.target < 0) continue;
+
+            repairs++;
+            if (field.target == tile) {
+                // everything hinges on the target
+                build(field, tile);
+            } else if (blocked) {
+                repairBlocked(field, tile);
+            } else {
+                repairOpened(field, tile);
+            }
+        }
+    }
+
+    /**
+     * Breadth first search out from the target over the whole grid
+     */
+    private void build(FlowField field, int target) {
+        builds++;
+        int[] distance = field.distance;
+        Arrays.fill(distance, FlowField.UNREACHABLE);
+        field.target = target;
+        if (!grid.isWalkable(target)) return;
+
+        distance[target] = 0;
+        queue[0] = target;
+        int head = 0, tail = 1;
+        int width = grid.getWidth();
+        while (head < tail) {
+            int current = queue[head++];
+            int next = distance[current] + 1;
+            int x = current % width;
+            // every tile is queued once, the first time it's reached is along a shortest path
+            if (x + 1 < width && reach(distance, current + 1, next)) queue[tail++] = current + 1;
+            if (x > 0 && reach(distance, current - 1, next)) queue[tail++] = current - 1;
+            if (current + width < distance.length && reach(distance, current + width, next)) queue[tail++] = current + width;
+            if (current - width >= 0 && reach(distance, current - width, next)) queue[tail++] = current - width;
+        }
+    }
+
+    /**
+     * Lower a tile's distance if it's walkable and the new one is shorter
+     * @return true if it was lowered
+     */
+    private boolean reach(int[] distance, int tile, int newDistance) {
+        if (newDistance >= distance[tile] || !grid.isWalkable(tile)) return false;
+
+        distance[tile] = newDistance;
+        return true;
+    }
+
+    /**
+     * A tile was blocked: the tiles one step further than a neighbour they were reached from may have
+     * depended on it. Those are reset, seeded from the untouched tiles around them and searched again
+     */
+    private void repairBlocked(FlowField field, int tile) {
+        int[] distance = field.distance;
+        if (distance[tile] == FlowField.UNREACHABLE) return;
+
+        int width = grid.getWidth();
+        nextMark();
+        int numAffected = 0;
+        affected[numAffected++] = tile;
+        marks[tile] = mark;
+        for (int i = 0; i < numAffected; i++) {
+            // past half the grid the ordered search costs more than starting over
+            if (numAffected > distance.length / 2) {
+                build(field, field.target);
+                return;
+            }
+
+            int current = affected[i];
+            int next = distance[current] + 1;
+            int x = current % width;
+            if (x + 1 < width) numAffected = collect(distance, current + 1, next, numAffected);
+            if (x > 0) numAffected = collect(distance, current - 1, next, numAffected);
+            if (current + width < distance.length) numAffected = collect(distance, current + width, next, numAffected);
+            if (current - width >= 0) numAffected = collect(distance, current - width, next, numAffected);
+        }
+
+        for (int i = 0; i < numAffected; i++) {
+            distance[affected[i]] = FlowField.UNREACHABLE;
+        }
+
+        // tiles outside the affected set kept their distances, the affected ones start one past their best neighbour
+        heap.clear();
+        for (int i = 0; i < numAffected; i++) {
+            int current = affected[i];
+            if (!grid.isWalkable(current)) continue;
+
+            int best = FlowField.UNREACHABLE;
+            int x = current % width;
+            if (x + 1 < width) best = Math.min(best, settled(distance, current + 1));
+            if (x > 0) best = Math.min(best, settled(distance, current - 1));
+            if (current + width < distance.length) best = Math.min(best, settled(distance, current + width));
+            if (current - width >= 0) best = Math.min(best, settled(distance, current - width));
+            if (best != FlowField.UNREACHABLE) {
+                distance[current] = best + 1;
+                heap.push(best + 1, current);
+            }
+        }
+
+        // seeds start at different distances, so they are expanded in order of distance
+        while (!heap.isEmpty()) {
+            long entry = heap.pop();
+            int current = IntHeap.index(entry);
+            if (IntHeap.priority(entry) != distance[current]) continue;
+
+            int next = distance[current] + 1;
+            int x = current % width;
+            if (x + 1 < width && reach(distance, current + 1, next)) heap.push(next, current + 1);
+            if (x > 0 && reach(distance, current - 1, next)) heap.push(next, current - 1);
+            if (current + width < distance.length && reach(distance, current + width, next)) heap.push(next, current + width);
+            if (current - width >= 0 && reach(distance, current - width, next)) heap.push(next, current - width);
+        }
+    }
+
+    private int collect(int[] distance, int tile, int expected, int numAffected) {
+        if (marks[tile] == mark || distance[tile] != expected) return numAffected;
+
+        marks[tile] = mark;
+        affected[numAffected] = tile;
+        return numAffected + 1;
+    }
+
+    /**
+     * Distance of a tile outside the affected set, UNREACHABLE for affected ones
+     */
+    private int settled(int[] distance, int tile) {
+        return marks[tile] == mark ? FlowField.UNREACHABLE : distance[tile];
+    }
+
+    /**
+     * A tile was opened: it is one past its closest neighbour, and spreads that to every tile it brings closer
+     */
+    private void repairOpened(FlowField field, int tile) {
+        int[] distance = field.distance;
+        int width = grid.getWidth();
+        int best = FlowField.UNREACHABLE;
+        int x = tile % width;
+        if (x + 1 < width) best = Math.min(best, distance[tile + 1]);
+        if (x > 0) best = Math.min(best, distance[tile - 1]);
+        if (tile + width < distance.length) best = Math.min(best, distance[tile + width]);
+        if (tile - width >= 0) best = Math.min(best, distance[tile - width]);
+        if (best == FlowField.UNREACHABLE) return;
+
+        distance[tile] = best + 1;
+        queue[0] = tile;
+        int head = 0, tail = 1;
+        while (head < tail) {
+            int current = queue[head++];
+            int next = distance[current] + 1;
+            x = current % width;
+            if (x + 1 < width && reach(distance, current + 1, next)) queue[tail++] = current + 1;
+            if (x > 0 && reach(distance, current - 1, next)) queue[tail++] = current - 1;
+            if (current + width < distance.length && reach(distance, current + width, next)) queue[tail++] = current + width;
+            if (current - width >= 0 && reach(distance, current - width, next)) queue[tail++] = current - width;
+        }
+    }
+
+    private void nextMark() {
+        if (++mark == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            mark = 1;
+        }
+    }
+
+    /**
+     * Print how often fields were built, repaired and shared, called on exit
+     */
+    public void printSummary() {
+        System.out.printf("[Navigator] %d flow field lookups, %d builds, %d repairs, %d A* searches expanding %d tiles%n",
+                lookups, builds, repairs, pathfinder.getSearches(), pathfinder.getExpanded());
+    }
+}
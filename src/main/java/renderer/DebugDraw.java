@@ -0,0 +1,235 @@
+package renderer;
+
+import engine.Window;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+import util.AssetPool;
+import util.Profiler;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+
+/**
+ * Lines, boxes and circles for debugging colliders, grids and camera bounds.
+ * Everything queued during a frame is drawn with one GL_LINES draw from a preallocated buffer.
+ * On by default, the level editor draws its grid and selection with it. Turned off with -Dmario.debugDraw=false,
+ * then every call returns right away and the JIT drops it, so release builds pay nothing.
+ */
+public class DebugDraw {
+    public static final boolean ENABLED = !"false".equals(System.getProperty("mario.debugDraw"));
+
+    private static final int MAX_LINES = 10000;
+    // a single vertex: x, y     r, g, b
+    private static final int VERTEX_SIZE = 5;
+    private static final int VERTEX_SIZE_BYTES = VERTEX_SIZE * Float.BYTES;
+    private static final int CIRCLE_SEGMENTS = 24;
+    private static final float[] CIRCLE_COS = new float[CIRCLE_SEGMENTS + 1];
+    private static final float[] CIRCLE_SIN = new float[CIRCLE_SEGMENTS + 1];
+    static {
+        for (int i = 0; i <= CIRCLE_SEGMENTS; i++) {
+            double angle = Math.PI * 2 * i / CIRCLE_SEGMENTS;
+            CIRCLE_COS[i] = (float) Math.cos(angle);
+            CIRCLE_SIN[i] = (float) Math.sin(angle);
+        }
+    }
+
+    // queued lines, only [0, numLines) are live
+    private static final float[] lines = ENABLED ? new float[MAX_LINES * 2 * VERTEX_SIZE] : new float[0];
+    // frames each line is still drawn for
+    private static final int[] framesLeft = ENABLED ? new int[MAX_LINES] : new int[0];
+    private static int numLines = 0;
+    private static boolean warnedFull = false;
+
+    // only the live part of the lines is copied here and uploaded
+    private static FloatBuffer staging;
+    private static int vaoID, vboID;
+    private static Shader shader;
+    private static final int DRAW_SCOPE = Profiler.scope("debug draw");
+
+    /**
+     * Allocate the line buffer on the GPU, done on the first draw
+     */
+    private static void start() {
+        shader = AssetPool.getShader("assets/shaders/debugLine2D.glsl");
+        staging = BufferUtils.createFloatBuffer(lines.length);
+
+        vaoID = glGenVertexArrays();
+        glBindVertexArray(vaoID);
+
+        vboID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vboID);
+        glBufferData(GL_ARRAY_BUFFER, (long) lines.length * Float.BYTES, GL_DYNAMIC_DRAW);
+        GpuResources.allocate(GpuResources.Category.VERTEX_ARRAY, vaoID, 0, DebugDraw.class);
+        GpuResources.allocate(GpuResources.Category.VERTEX_BUFFER, vboID, (long) lines.length * Float.BYTES, DebugDraw.class);
+
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, VERTEX_SIZE_BYTES, 0);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(1, 3, GL_FLOAT, false, VERTEX_SIZE_BYTES, 2 * Float.BYTES);
+        glEnableVertexAttribArray(1);
+        glBindVertexArray(0);
+    }
+
+    /**
+     * Free the line buffer, called when the window closes
+     */
+    public static void destroy() {
+        if (vaoID == 0) return;
+
+        glDeleteVertexArrays(vaoID);
+        glDeleteBuffers(vboID);
+        GpuResources.free(GpuResources.Category.VERTEX_ARRAY, vaoID);
+        GpuResources.free(GpuResources.Category.VERTEX_BUFFER, vboID);
+        vaoID = vboID = 0;
+        numLines = 0;
+        // the shader belongs to the AssetPool, a later draw starts over
+        shader = null;
+    }
+
+    /**
+     * Draw every queued line and drop the ones whose lifetime ran out
+     */
+    public static void draw() {
+        if (!ENABLED) return;
+
+        // expired lines are swapped out before anything is uploaded
+        int i = 0;
+        while (i < numLines) {
+            if (framesLeft[i] <= 0) {
+                numLines--;
+                System.arraycopy(lines, numLines * 2 * VERTEX_SIZE, lines, i * 2 * VERTEX_SIZE, 2 * VERTEX_SIZE);
+                framesLeft[i] = framesLeft[numLines];
+                continue;
+            }
+            framesLeft[i]--;
+            i++;
+        }
+        if (numLines == 0) return;
+
+        Profiler.begin(DRAW_SCOPE);
+        if (shader == null) {
+            start();
+        }
+
+        staging.clear();
+        staging.put(lines, 0, numLines * 2 * VERTEX_SIZE).flip();
+        glBindBuffer(GL_ARRAY_BUFFER, vboID);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, staging);
+        RenderStats.recordUpload((long) numLines * 2 * VERTEX_SIZE_BYTES);
+
+        shader.use();
+        shader.uploadMat4f("uProjection", Window.getScene().camera().getProjectionMatrix());
+        shader.uploadMat4f("uView", Window.getScene().camera().getViewMatrix());
+
+        glBindVertexArray(vaoID);
+        glDrawArrays(GL_LINES, 0, numLines * 2);
+        RenderStats.recordDraw(0);
+        glBindVertexArray(0);
+
+        shader.detach();
+        Profiler.end(DRAW_SCOPE);
+    }
+
+    // ==================
+    // Lines
+    // ==================
+    public static void addLine2D(Vector2f from, Vector2f to) {
+        addLine2D(from.x, from.y, to.x, to.y, 0, 1, 0, 1);
+    }
+
+    public static void addLine2D(Vector2f from, Vector2f to, Vector3f color) {
+        addLine2D(from.x, from.y, to.x, to.y, color.x, color.y, color.z, 1);
+    }
+
+    /**
+     * @param lifetime number of frames the line stays on screen
+     */
+    public static void addLine2D(Vector2f from, Vector2f to, Vector3f color, int lifetime) {
+        addLine2D(from.x, from.y, to.x, to.y, color.x, color.y, color.z, lifetime);
+    }
+
+    public static void addLine2D(float x0, float y0, float x1, float y1, float r, float g, float b, int lifetime) {
+        if (!ENABLED) return;
+        if (numLines == MAX_LINES) {
+            if (!warnedFull) {
+                System.out.println("[DebugDraw] More than " + MAX_LINES + " lines queued, dropping the rest");
+                warnedFull = true;
+            }
+            return;
+        }
+
+        int offset = numLines * 2 * VERTEX_SIZE;
+        lines[offset] = x0;
+        lines[offset + 1] = y0;
+        lines[offset + 2] = r;
+        lines[offset + 3] = g;
+        lines[offset + 4] = b;
+        lines[offset + 5] = x1;
+        lines[offset + 6] = y1;
+        lines[offset + 7] = r;
+        lines[offset + 8] = g;
+        lines[offset + 9] = b;
+        framesLeft[numLines] = lifetime;
+        numLines++;
+    }
+
+    // ==================
+    // Boxes
+    // ==================
+    public static void addBox2D(Vector2f center, Vector2f dimensions, Vector3f color) {
+        addBox2D(center, dimensions, 0, color, 1);
+    }
+
+    /**
+     * @param rotation counter clockwise, in degrees
+     * @param lifetime number of frames the box stays on screen
+     */
+    public static void addBox2D(Vector2f center, Vector2f dimensions, float rotation, Vector3f color, int lifetime) {
+        if (!ENABLED) return;
+
+        float halfW = dimensions.x * 0.5f;
+        float halfH = dimensions.y * 0.5f;
+        float cos = (float) Math.cos(Math.toRadians(rotation));
+        float sin = (float) Math.sin(Math.toRadians(rotation));
+
+        // corners counter clockwise from the bottom left, rotated around the center
+        float x0 = center.x - halfW * cos + halfH * sin, y0 = center.y - halfW * sin - halfH * cos;
+        float x1 = center.x + halfW * cos + halfH * sin, y1 = center.y + halfW * sin - halfH * cos;
+        float x2 = center.x + halfW * cos - halfH * sin, y2 = center.y + halfW * sin + halfH * cos;
+        float x3 = center.x - halfW * cos - halfH * sin, y3 = center.y - halfW * sin + halfH * cos;
+
+        addLine2D(x0, y0, x1, y1, color.x, color.y, color.z, lifetime);
+        addLine2D(x1, y1, x2, y2, color.x, color.y, color.z, lifetime);
+        addLine2D(x2, y2, x3, y3, color.x, color.y, color.z, lifetime);
+        addLine2D(x3, y3, x0, y0, color.x, color.y, color.z, lifetime);
+    }
+
+    // ==================
+    // Circles
+    // ==================
+    public static void addCircle(Vector2f center, float radius, Vector3f color) {
+        addCircle(center, radius, color, 1);
+    }
+
+    /**
+     * @param lifetime number of frames the circle stays on screen
+     */
+    public static void addCircle(Vector2f center, float radius, Vector3f color, int lifetime) {
+        if (!ENABLED) return;
+
+        for (int i = 0; i < CIRCLE_SEGMENTS; i++) {
+            addLine2D(center.x + CIRCLE_COS[i] * radius, center.y + CIRCLE_SIN[i] * radius,
+                    center.x + CIRCLE_COS[i + 1] * radius, center.y + CIRCLE_SIN[i + 1] * radius,
+                    color.x, color.y, color.z, lifetime);
+        }
+    }
+
+    public static int getNumLines() {
+        return numLines;
+    }
+}
@@ -0,0 +1,250 @@
+package renderer;
+
+import components.Sprite;
+import org.joml.Vector2f;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.stb.STBTTFontinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.stb.STBTruetype.*;
+
+/**
+ * TrueType font baked into one texture with stb_truetype.
+ * Glyphs are rasterized the first time they are asked for and packed into the atlas in rows,
+ * so text drawn with it goes through the sprite batches like any other sprite.
+ */
+public class FontAtlas {
+    // empty pixels around each glyph so filtering never picks up a neighbour
+    private static final int PADDING = 1;
+    // codepoints below this skip the map lookup
+    private static final int ASCII = 128;
+
+    /**
+     * Placement and metrics of one rasterized glyph, in pixels
+     */
+    public static class Glyph {
+        private final float advance;
+        // from the pen position on the baseline to the bottom left of the bitmap
+        private final float offsetX, offsetY;
+        private final float width, height;
+        private final Sprite sprite;
+
+        Glyph(float advance, float offsetX, float offsetY, float width, float height, Sprite sprite) {
+            this.advance = advance;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.width = width;
+            this.height = height;
+            this.sprite = sprite;
+        }
+
+        public float getAdvance() {
+            return advance;
+        }
+
+        public float getOffsetX() {
+            return offsetX;
+        }
+
+        public float getOffsetY() {
+            return offsetY;
+        }
+
+        public float getWidth() {
+            return width;
+        }
+
+        public float getHeight() {
+            return height;
+        }
+
+        public Sprite getSprite() {
+            return sprite;
+        }
+    }
+
+    private final String filepath;
+    private final int pixelHeight;
+    // stb keeps pointers into the font data, it has to live as long as the atlas
+    private final ByteBuffer fontData;
+    private final STBTTFontinfo info;
+    private final float scale;
+    private final float ascent, descent, lineGap;
+
+    private final Texture texture;
+    private final Glyph[] asciiGlyphs = new Glyph[ASCII];
+    private final Map<Integer, Glyph> glyphs = new HashMap<>();
+
+    // shelf packer, glyphs fill a row left to right and a new row starts above the tallest one
+    private int penX = PADDING, penY = PADDING, rowHeight = 0;
+
+    // scratch space reused by every glyph
+    private final IntBuffer x0 = BufferUtils.createIntBuffer(1), y0 = BufferUtils.createIntBuffer(1);
+    private final IntBuffer x1 = BufferUtils.createIntBuffer(1), y1 = BufferUtils.createIntBuffer(1);
+    private ByteBuffer coverage = BufferUtils.createByteBuffer(0);
+    private ByteBuffer pixels = BufferUtils.createByteBuffer(0);
+
+    /**
+     * @param filepath .ttf file
+     * @param pixelHeight height of a line from the highest ascender to the lowest descender
+     * @param atlasSize width and height of the atlas texture
+     */
+    public FontAtlas(String filepath, int pixelHeight, int atlasSize) {
+        this.filepath = filepath;
+        this.pixelHeight = pixelHeight;
+        this.info = STBTTFontinfo.create();
+
+        ByteBuffer data = null;
+        try {
+            byte[] bytes = Files.readAllBytes(Paths.get(filepath));
+            data = BufferUtils.createByteBuffer(bytes.length);
+            data.put(bytes).flip();
+        } catch (IOException e) {
+            e.printStackTrace();
+            assert false : "Error: could not open font file: '" + filepath + "'";
+        }
+        this.fontData = data;
+
+        if (data == null || !stbtt_InitFont(info, data)) {
+            assert false : "Error: could not read font: '" + filepath + "'";
+        }
+
+        this.scale = stbtt_ScaleForPixelHeight(info, pixelHeight);
+        IntBuffer ascent = BufferUtils.createIntBuffer(1);
+        IntBuffer descent = BufferUtils.createIntBuffer(1);
+        IntBuffer lineGap = BufferUtils.createIntBuffer(1);
+        stbtt_GetFontVMetrics(info, ascent, descent, lineGap);
+        this.ascent = ascent.get(0) * scale;
+        this.descent = descent.get(0) * scale;
+        this.lineGap = lineGap.get(0) * scale;
+
+        this.texture = new Texture(atlasSize, atlasSize);
+    }
+
+    public FontAtlas(String filepath, int pixelHeight) {
+        this(filepath, pixelHeight, 512);
+    }
+
+    /**
+     * Glyph for a codepoint, rasterized into the atlas the first time it is used
+     * @param codepoint
+     */
+    public Glyph getGlyph(int codepoint) {
+        Glyph glyph = codepoint >= 0 && codepoint < ASCII ? asciiGlyphs[codepoint] : glyphs.get(codepoint);
+        if (glyph == null) {
+            glyph = bake(codepoint);
+            if (codepoint >= 0 && codepoint < ASCII) {
+                asciiGlyphs[codepoint] = glyph;
+            } else {
+                glyphs.put(codepoint, glyph);
+            }
+        }
+        return glyph;
+    }
+
+    /**
+     * Extra advance between two codepoints, negative pulls them together
+     */
+    public float getKerning(int codepoint, int next) {
+        return stbtt_GetCodepointKernAdvance(info, codepoint, next) * scale;
+    }
+
+    private Glyph bake(int codepoint) {
+        // advance and left side bearing, only the advance is needed
+        stbtt_GetCodepointHMetrics(info, codepoint, x0, y0);
+        float advanceWidth = x0.get(0) * scale;
+
+        // box relative to the pen on the baseline, y pointing down
+        stbtt_GetCodepointBitmapBox(info, codepoint, scale, scale, x0, y0, x1, y1);
+        int left = x0.get(0), top = y0.get(0);
+        int width = x1.get(0) - left;
+        int height = y1.get(0) - top;
+
+        // spaces and other empty glyphs only move the pen
+        if (width <= 0 || height <= 0) {
+            return new Glyph(advanceWidth, 0, 0, 0, 0, new Sprite(texture));
+        }
+
+        int atlasSize = texture.getWidth();
+        if (penX + width + PADDING > atlasSize) {
+            penX = PADDING;
+            penY += rowHeight + PADDING;
+            rowHeight = 0;
+        }
+        if (penY + height + PADDING > texture.getHeight() || width + 2 * PADDING > atlasSize) {
+            System.out.println("[FontAtlas] " + filepath + " at " + pixelHeight + "px is full, can not add codepoint " + codepoint);
+            return new Glyph(advanceWidth, 0, 0, 0, 0, new Sprite(texture));
+        }
+
+        if (coverage.capacity() < width * height) {
+            coverage = BufferUtils.createByteBuffer(width * height);
+            pixels = BufferUtils.createByteBuffer(width * height * 4);
+        }
+        stbtt_MakeCodepointBitmap(info, coverage, width, height, width, scale, scale, codepoint);
+
+        // white pixels with the coverage as alpha, so the sprite color tints the text.
+        // stb writes the top row first, the atlas is bottom up like every other texture
+        pixels.clear();
+        for (int row = height - 1; row >= 0; row--) {
+            for (int col = 0; col < width; col++) {
+                pixels.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).put(coverage.get(row * width + col));
+            }
+        }
+        pixels.flip();
+
+        texture.bind();
+        glTexSubImage2D(GL_TEXTURE_2D, 0, penX, penY, width, height, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        texture.unbind();
+
+        float u0 = penX / (float) atlasSize;
+        float v0 = penY / (float) texture.getHeight();
+        float u1 = (penX + width) / (float) atlasSize;
+        float v1 = (penY + height) / (float) texture.getHeight();
+        Vector2f[] texCoords = {
+                new Vector2f(u1, v1),
+                new Vector2f(u1, v0),
+                new Vector2f(u0, v0),
+                new Vector2f(u0, v1)
+        };
+
+        penX += width + PADDING;
+        rowHeight = Math.max(rowHeight, height);
+
+        // y1 is how far the bitmap reaches below the baseline
+        return new Glyph(advanceWidth, left, -y1.get(0), width, height, new Sprite(texture, texCoords));
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+
+    /**
+     * Delete the atlas texture
+     */
+    public void destroy() {
+        texture.destroy();
+    }
+
+    public int getPixelHeight() {
+        return pixelHeight;
+    }
+
+    /**
+     * Distance between two baselines
+     */
+    public float getLineHeight() {
+        return ascent - descent + lineGap;
+    }
+
+    public float getAscent() {
+        return ascent;
+    }
+}
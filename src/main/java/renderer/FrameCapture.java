@@ -0,0 +1,317 @@
+package renderer;
+
+import util.Histogram;
+import util.Profiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.stb.STBImageWrite.stbi_flip_vertically_on_write;
+import static org.lwjgl.stb.STBImageWrite.stbi_write_force_png_filter;
+import static org.lwjgl.stb.STBImageWrite.stbi_write_png;
+import static org.lwjgl.stb.STBImageWrite.stbi_write_png_compression_level;
+
+/**
+ * Records every presented frame for regression footage without stalling the render thread.
+ * Each frame is copied into the next of a ring of pixel buffer objects behind a fence. A frame or two later,
+ * once the GPU is done with it, the buffer is mapped and handed as it is to the encoder threads, and unmapped
+ * when they wrote it out. The render thread only queues a copy and maps a finished buffer,
+ * it never waits on the GPU and never copies pixels itself.
+ * If the encoders fall behind by the whole ring the render thread waits for them, frames are never dropped.
+ * Only touched from the GL thread, apart from the encoders reading their mapped buffers.
+ */
+public class FrameCapture {
+    public enum Format {
+        // one file of rgba frames per size, bottom row first, for ffmpeg's rawvideo input, the default
+        RAW,
+        // a numbered png per frame, encoded on several threads. Even at the fastest settings one encoder
+        // takes over 100 ms for a 1080p frame, the render thread waits for them unless there are cores to spare
+        PNG
+    }
+
+    private static final int CAPTURE_SCOPE = Profiler.scope("capture");
+    // read backs in flight besides the ones the encoders hold, the GPU finishes a frame within 2
+    private static final int NUM_READ_BACKS = 3;
+    // zlib level for pngs, stb's default of 8 is slower for files barely smaller
+    private static final int PNG_COMPRESSION_LEVEL = 1;
+    // no filter on any row, instead of stb trying all five on each one, about twice as fast with the level above
+    private static final int PNG_FILTER = 0;
+
+    private static class Slot {
+        int pboID = 0;
+        long capacity = 0;
+        int width, height;
+        long index;
+        // fence after the copy into the buffer, 0 when no read back is in flight
+        long fence = 0;
+        // mapped and handed to an encoder, null when the buffer is free
+        ByteBuffer pixels = null;
+        // released by the encoder once it wrote the pixels
+        final Semaphore encoded = new Semaphore(0);
+        // created once, so handing a frame over doesn't allocate a task
+        Runnable encode;
+    }
+
+    private final Path directory;
+    private final Format format;
+    private final ExecutorService encoders;
+    private final Slot[] slots;
+    // the slot the next frame is read into, also the oldest one in flight
+    private int next = 0;
+    private long captured = 0;
+
+    // raw files by size, only touched by the single raw encoder thread
+    private final Map<Long, FileChannel> rawFiles = new HashMap<>();
+    private final AtomicInteger failed = new AtomicInteger();
+    // frames that had to wait for a slot, the GPU or the encoders were a whole ring behind
+    private int stalls = 0;
+    // render thread time per captured frame
+    private final Histogram captureTimes = new Histogram(10_000, 1000);
+
+    /**
+     * @param directory created if it doesn't exist
+     * @param format
+     */
+    public FrameCapture(String directory, Format format) {
+        this.directory = Paths.get(directory);
+        this.format = format;
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            e.printStackTrace();
+            assert false : "Error: can not create capture directory " + directory;
+        }
+
+        // raw frames are appended in order by one thread, pngs are slow to compress and spread over several
+        int numEncoders = format == Format.RAW ? 1 : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threads = new AtomicInteger();
+        this.encoders = Executors.newFixedThreadPool(numEncoders, r -> {
+            Thread thread = new Thread(r, "Capture-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.slots = new Slot[numEncoders + NUM_READ_BACKS];
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = new Slot();
+            slot.encode = () -> encode(slot);
+            slots[i] = slot;
+        }
+        // GL rows start at the bottom, this and the png settings are process wide in stb
+        stbi_flip_vertically_on_write(true);
+        stbi_write_png_compression_level.put(0, PNG_COMPRESSION_LEVEL);
+        stbi_write_force_png_filter.put(0, PNG_FILTER);
+    }
+
+    /**
+     * Queue a copy of the finished frame, called right before the buffers are swapped
+     * @param fboID framebuffer holding the frame, 0 for the window's back buffer
+     * @param width size of the frame in pixels
+     * @param height
+     */
+    public void capture(int fboID, int width, int height) {
+        Profiler.begin(CAPTURE_SCOPE);
+        long start = System.nanoTime();
+
+        retireFinished();
+        Slot slot = slots[next];
+        if (slot.fence != 0 || slot.pixels != null) {
+            stalls++;
+            while (slot.fence != 0 || slot.pixels != null) {
+                retire(slot, true);
+            }
+        }
+
+        long bytes = (long) width * height * 4;
+        if (slot.pboID == 0) {
+            slot.pboID = glGenBuffers();
+            GpuResources.allocate(GpuResources.Category.PIXEL_BUFFER, slot.pboID, 0, this);
+        }
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, slot.pboID);
+        if (slot.capacity != bytes) {
+            glBufferData(GL_PIXEL_PACK_BUFFER, bytes, GL_STREAM_READ);
+            GpuResources.resize(GpuResources.Category.PIXEL_BUFFER, slot.pboID, bytes);
+            slot.capacity = bytes;
+        }
+
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, fboID);
+        if (fboID == 0) {
+            glReadBuffer(GL_BACK);
+        }
+        // rows of rgba bytes are always a multiple of the default pack alignment of 4
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        slot.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        slot.width = width;
+        slot.height = height;
+        slot.index = captured++;
+        next = (next + 1) % slots.length;
+
+        captureTimes.record(System.nanoTime() - start);
+        Profiler.end(CAPTURE_SCOPE);
+    }
+
+    /**
+     * Hand finished read backs to the encoders and free the buffers they are done with, without blocking
+     */
+    private void retireFinished() {
+        // oldest first, fences signal in order so the first one still pending ends the read backs to check
+        boolean readPending = false;
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[(next + i) % slots.length];
+            if (slot.fence != 0 && readPending) continue;
+
+            retire(slot, false);
+            readPending |= slot.fence != 0;
+        }
+    }
+
+    /**
+     * Move a slot on: a finished read back is mapped and encoded, an encoded frame is unmapped
+     * @param wait block on the GPU or the encoder instead of returning
+     */
+    private void retire(Slot slot, boolean wait) {
+        if (slot.fence != 0) {
+            // flush on a blocking wait, the fence may still sit in an unsubmitted command buffer
+            int status = wait
+                    ? glClientWaitSync(slot.fence, GL_SYNC_FLUSH_COMMANDS_BIT, TimeUnit.SECONDS.toNanos(1))
+                    : glClientWaitSync(slot.fence, 0, 0);
+            if (status == GL_TIMEOUT_EXPIRED) return;
+            glDeleteSync(slot.fence);
+            slot.fence = 0;
+            if (status == GL_WAIT_FAILED) {
+                assert false : "Error: waiting on a frame capture read back failed";
+                failed.incrementAndGet();
+                return;
+            }
+
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, slot.pboID);
+            slot.pixels = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, (long) slot.width * slot.height * 4, GL_MAP_READ_BIT);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+            if (slot.pixels == null) {
+                assert false : "Error: can not map a frame capture buffer";
+                failed.incrementAndGet();
+                return;
+            }
+            encoders.execute(slot.encode);
+            return;
+        }
+
+        if (slot.pixels != null) {
+            if (wait) {
+                slot.encoded.acquireUninterruptibly();
+            } else if (!slot.encoded.tryAcquire()) {
+                return;
+            }
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, slot.pboID);
+            glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+            slot.pixels = null;
+        }
+    }
+
+    /**
+     * Write a mapped frame out, runs on an encoder thread
+     */
+    private void encode(Slot slot) {
+        try {
+            if (format == Format.PNG) {
+                String file = directory.resolve(String.format("frame_%06d.png", slot.index)).toString();
+                if (!stbi_write_png(file, slot.width, slot.height, 4, slot.pixels, slot.width * 4)) {
+                    System.out.println("[Capture] Can not write " + file);
+                    failed.incrementAndGet();
+                }
+            } else {
+                writeRaw(slot);
+            }
+        } catch (IOException e) {
+            System.out.println("[Capture] Can not write frame " + slot.index + ": " + e.getMessage());
+            failed.incrementAndGet();
+        } finally {
+            slot.encoded.release();
+        }
+    }
+
+    private void writeRaw(Slot slot) throws IOException {
+        long size = ((long) slot.width << 32) | slot.height;
+        FileChannel file = rawFiles.get(size);
+        if (file == null) {
+            Path path = directory.resolve(String.format("frames_%dx%d.rgba", slot.width, slot.height));
+            file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            rawFiles.put(size, file);
+        }
+
+        ByteBuffer pixels = slot.pixels.duplicate();
+        while (pixels.hasRemaining()) {
+            file.write(pixels);
+        }
+    }
+
+    /**
+     * Wait for every frame in flight to be written and free the buffers, on the GL thread
+     */
+    public void destroy() {
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[(next + i) % slots.length];
+            while (slot.fence != 0 || slot.pixels != null) {
+                retire(slot, true);
+            }
+        }
+
+        encoders.shutdown();
+        try {
+            encoders.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (FileChannel file : rawFiles.values()) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        rawFiles.clear();
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].pboID != 0) {
+                glDeleteBuffers(slots[i].pboID);
+                GpuResources.free(GpuResources.Category.PIXEL_BUFFER, slots[i].pboID);
+                slots[i].pboID = 0;
+            }
+        }
+    }
+
+    /**
+     * Print how many frames were written and what they cost the render thread, called on exit
+     */
+    public void printSummary() {
+        System.out.printf("[Capture] %d %s frames to %s, %d failed, %d waited for a slot, render thread p50 %.3fms p99 %.3fms%n",
+                captured, format, directory.toAbsolutePath(), failed.get(), stalls,
+                captureTimes.getPercentile(0.5) * 1E-6, captureTimes.getPercentile(0.99) * 1E-6);
+        if (format == Format.RAW) {
+            System.out.println("[Capture] Encode with: ffmpeg -f rawvideo -pixel_format rgba -video_size WxH -framerate 60 -i frames_WxH.rgba -vf vflip out.mp4");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FrameCapture";
+    }
+}
@@ -0,0 +1,63 @@
+package renderer;
+
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Offscreen render target with a single color texture attachment
+ */
+public class Framebuffer {
+    private int fboID;
+    private Texture texture;
+
+    public Framebuffer(int width, int height) {
+        // generate framebuffer
+        fboID = glGenFramebuffers();
+        GpuResources.allocate(GpuResources.Category.FRAMEBUFFER, fboID, 0, this);
+        glBindFramebuffer(GL_FRAMEBUFFER, fboID);
+
+        // create the texture to render to and attach it
+        this.texture = new Texture(width, height);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture.getId(), 0);
+
+        if (glCheckFramebufferStatus(GL_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE) {
+            assert false : "Error: framebuffer is not complete";
+        }
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    public void bind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, fboID);
+    }
+
+    public void unbind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Delete the framebuffer and its color texture
+     */
+    public void destroy() {
+        if (fboID == 0) return;
+
+        glDeleteFramebuffers(fboID);
+        GpuResources.free(GpuResources.Category.FRAMEBUFFER, fboID);
+        fboID = 0;
+        texture.destroy();
+    }
+
+    public int getFboID() {
+        return fboID;
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+
+    public int getWidth() {
+        return texture.getWidth();
+    }
+
+    public int getHeight() {
+        return texture.getHeight();
+    }
+}
@@ -0,0 +1,161 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Book keeping of every GL object the engine creates: what it is, how many bytes it holds and who owns it.
+ * Owners are the objects responsible for freeing a resource, a Renderer for its batches (and through it its Scene),
+ * a Texture or Shader from the AssetPool for itself.
+ * Anything still here when the window closes was never freed and is reported as a leak.
+ * Only touched from the GL thread.
+ */
+public class GpuResources {
+    public enum Category {
+        TEXTURE, VERTEX_BUFFER, INDEX_BUFFER, COMMAND_BUFFER, PIXEL_BUFFER, VERTEX_ARRAY, SHADER, FRAMEBUFFER
+    }
+
+    private static class Allocation {
+        final Category category;
+        final int id;
+        long bytes;
+        final Object owner;
+
+        Allocation(Category category, int id, long bytes, Object owner) {
+            this.category = category;
+            this.id = id;
+            this.bytes = bytes;
+            this.owner = owner;
+        }
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+    // GL names are only unique per kind of object, the category is part of the key
+    private static final Map<Long, Allocation> allocations = new HashMap<>();
+    private static final long[] bytes = new long[CATEGORIES.length];
+    private static final int[] counts = new int[CATEGORIES.length];
+    private static long peakBytes = 0;
+
+    private static long key(Category category, int id) {
+        return ((long) category.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Record a GL object that was just created
+     * @param category
+     * @param id GL name
+     * @param bytes GPU memory it holds, 0 for objects that only hold state
+     * @param owner object that frees it
+     */
+    public static void allocate(Category category, int id, long bytes, Object owner) {
+        Allocation previous = allocations.put(key(category, id), new Allocation(category, id, bytes, owner));
+        if (previous != null) {
+            assert false : "Error: " + category + " " + id + " tracked twice, first by " + previous.owner;
+            release(previous);
+        }
+        GpuResources.bytes[category.ordinal()] += bytes;
+        counts[category.ordinal()]++;
+        peakBytes = Math.max(peakBytes, getTotalBytes());
+    }
+
+    /**
+     * Record new storage for an existing GL object, e.g. a buffer reallocated with glBufferData
+     */
+    public static void resize(Category category, int id, long bytes) {
+        Allocation allocation = allocations.get(key(category, id));
+        if (allocation == null) {
+            assert false : "Error: resizing untracked " + category + " " + id;
+            return;
+        }
+        GpuResources.bytes[category.ordinal()] += bytes - allocation.bytes;
+        allocation.bytes = bytes;
+        peakBytes = Math.max(peakBytes, getTotalBytes());
+    }
+
+    /**
+     * Record a GL object that was just deleted
+     */
+    public static void free(Category category, int id) {
+        Allocation allocation = allocations.remove(key(category, id));
+        if (allocation == null) {
+            assert false : "Error: freeing untracked " + category + " " + id;
+            return;
+        }
+        release(allocation);
+    }
+
+    private static void release(Allocation allocation) {
+        bytes[allocation.category.ordinal()] -= allocation.bytes;
+        counts[allocation.category.ordinal()]--;
+    }
+
+    public static long getBytes(Category category) {
+        return bytes[category.ordinal()];
+    }
+
+    public static int getCount(Category category) {
+        return counts[category.ordinal()];
+    }
+
+    public static long getTotalBytes() {
+        long total = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            total += bytes[i];
+        }
+        return total;
+    }
+
+    public static long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * Number of GL objects an owner still holds, 0 once it freed everything
+     */
+    public static int countOwnedBy(Object owner) {
+        int count = 0;
+        for (Allocation allocation : allocations.values()) {
+            if (allocation.owner == owner) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Print how much GPU memory every category holds right now
+     */
+    public static void printReport() {
+        System.out.printf("[GpuResources] %.2f MB in %d objects, peak %.2f MB%n",
+                getTotalBytes() / 1E6, allocations.size(), peakBytes / 1E6);
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (counts[i] == 0) continue;
+            System.out.printf("[GpuResources]   %-14s %6d %10.2f MB%n", CATEGORIES[i], counts[i], bytes[i] / 1E6);
+        }
+    }
+
+    /**
+     * Report every GL object that is still alive, called once everything should have been freed
+     * @return true if nothing leaked
+     */
+    public static boolean checkLeaks() {
+        if (allocations.isEmpty()) return true;
+
+        // group by owner so a leaking scene shows up as one line per kind of object
+        Map<String, List<Allocation>> byOwner = new HashMap<>();
+        for (Allocation allocation : allocations.values()) {
+            byOwner.computeIfAbsent(String.valueOf(allocation.owner), k -> new ArrayList<>()).add(allocation);
+        }
+        System.out.println("[GpuResources] " + allocations.size() + " GL objects were never freed:");
+        for (Map.Entry<String, List<Allocation>> entry : byOwner.entrySet()) {
+            long leaked = 0;
+            StringBuilder ids = new StringBuilder();
+            for (Allocation allocation : entry.getValue()) {
+                leaked += allocation.bytes;
+                ids.append(' ').append(allocation.category).append(' ').append(allocation.id);
+            }
+            System.out.printf("[GpuResources]   %s: %d bytes,%s%n", entry.getKey(), leaked, ids);
+        }
+        return false;
+    }
+}
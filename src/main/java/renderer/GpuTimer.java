@@ -0,0 +1,93 @@
+package renderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import util.Profiler;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL33.GL_TIME_ELAPSED;
+import static org.lwjgl.opengl.GL33.glGetQueryObjecti64;
+
+/**
+ * Measures GPU time of a section of GL commands with GL_TIME_ELAPSED queries.
+ * Results are read back a few frames later without stalling and reported to the Profiler.
+ */
+public class GpuTimer {
+    // enough queries in flight that a result is always ready before its query is reused
+    private static final int FRAMES_IN_FLIGHT = 4;
+    // only one GL_TIME_ELAPSED query can be active at a time, so timers can not nest
+    private static boolean queryActive = false;
+
+    private final int scope;
+    private final int arg;
+    private final int[] queries = new int[FRAMES_IN_FLIGHT];
+    private final long[] issuedAt = new long[FRAMES_IN_FLIGHT];
+    private final boolean[] pending = new boolean[FRAMES_IN_FLIGHT];
+    private int next = 0;
+    private boolean running = false;
+    private boolean supported;
+
+    public GpuTimer(String name) {
+        this(Profiler.scope(name), Profiler.NO_ARG);
+    }
+
+    /**
+     * @param scope registered profiler scope, may be shared by several timers
+     * @param arg tells this timer's events apart in the trace
+     */
+    public GpuTimer(int scope, int arg) {
+        this.scope = scope;
+        this.arg = arg;
+        GLCapabilities caps = GL.getCapabilities();
+        this.supported = caps.OpenGL33 || caps.GL_ARB_timer_query;
+    }
+
+    public void begin() {
+        if (!Profiler.enabled || !supported || queryActive) return;
+
+        if (queries[0] == 0) {
+            glGenQueries(queries);
+        }
+        collect();
+
+        // the query from FRAMES_IN_FLIGHT frames ago still isn't done, skip this sample rather than block
+        if (pending[next]) return;
+
+        issuedAt[next] = System.nanoTime();
+        glBeginQuery(GL_TIME_ELAPSED, queries[next]);
+        queryActive = true;
+        running = true;
+    }
+
+    public void end() {
+        if (!running) return;
+
+        glEndQuery(GL_TIME_ELAPSED);
+        queryActive = false;
+        running = false;
+        pending[next] = true;
+        next = (next + 1) % FRAMES_IN_FLIGHT;
+    }
+
+    /**
+     * Delete the queries, results still in flight are dropped
+     */
+    public void destroy() {
+        if (queries[0] != 0) {
+            glDeleteQueries(queries);
+            queries[0] = 0;
+        }
+    }
+
+    /**
+     * Report every finished query
+     */
+    private void collect() {
+        for (int i = 0; i < FRAMES_IN_FLIGHT; i++) {
+            if (pending[i] && glGetQueryObjecti(queries[i], GL_QUERY_RESULT_AVAILABLE) == GL_TRUE) {
+                Profiler.recordGpu(scope, arg, issuedAt[i], glGetQueryObjecti64(queries[i], GL_QUERY_RESULT));
+                pending[i] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package renderer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GL work handed over from loading threads.
+ * Only the thread owning the GL context may touch GL, so assets created on another thread
+ * do their CPU side work (reading, decoding) where they are and queue the GL calls here.
+ * The GL thread drains the queue a few milliseconds at a time between frames.
+ */
+public class GpuUploadQueue {
+    private static final ConcurrentLinkedQueue<Runnable> uploads = new ConcurrentLinkedQueue<>();
+    // queued and not finished yet, including the one running
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static volatile Thread glThread = null;
+
+    /**
+     * Register the thread whose GL context is current, called once the context is made current
+     */
+    public static void setGlThread(Thread thread) {
+        glThread = thread;
+    }
+
+    /**
+     * If GL can be called from here. Before a context exists nothing is deferred
+     */
+    public static boolean isGlThread() {
+        Thread thread = glThread;
+        return thread == null || thread == Thread.currentThread();
+    }
+
+    /**
+     * Run GL work right away on the GL thread, or queue it for the GL thread from anywhere else
+     * @param upload
+     */
+    public static void submit(Runnable upload) {
+        if (isGlThread()) {
+            upload.run();
+            return;
+        }
+        pending.incrementAndGet();
+        uploads.add(upload);
+    }
+
+    /**
+     * Run queued uploads until the queue is empty or the time budget is spent,
+     * at least one upload runs per call so the queue always drains
+     * @param budgetNanos
+     * @return number of uploads still waiting
+     */
+    public static int drain(long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        Runnable upload;
+        while ((upload = uploads.poll()) != null) {
+            try {
+                upload.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+            if (System.nanoTime() >= deadline) break;
+        }
+        return pending.get();
+    }
+
+    public static int getPending() {
+        return pending.get();
+    }
+}
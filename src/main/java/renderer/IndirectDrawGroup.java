@@ -0,0 +1,211 @@
+package renderer;
+
+import engine.Window;
+import util.AssetPool;
+import util.Profiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL40.GL_DRAW_INDIRECT_BUFFER;
+import static org.lwjgl.opengl.GL43.glMultiDrawElementsIndirect;
+
+/**
+ * Batches that share one texture table, one vertex buffer and one index buffer,
+ * drawn together with a single glMultiDrawElementsIndirect per frame.
+ * Each batch owns a fixed range of the shared vertex buffer and gets one indirect command.
+ */
+class IndirectDrawGroup {
+    // count, instanceCount, firstIndex, baseVertex, baseInstance
+    private static final int COMMAND_SIZE = 5;
+
+    private final int maxBatchSize;
+    private final List<Texture> textures = new ArrayList<>();
+    private final List<RenderBatch> batches = new ArrayList<>();
+    private final Shader shader;
+    // who destroys the group, for the GpuResources leak report
+    private final Object owner;
+    private int[] texSlots = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    private int vaoID, vboID, eboID, commandBufferID;
+    // batches the gpu buffers currently have room for
+    private int capacity = 0;
+    private int[] commands = new int[0];
+
+    private final int uploadScope = Profiler.scope("multi draw upload");
+    private final int drawScope = Profiler.scope("multi draw");
+    private GpuTimer gpuTimer;
+
+    IndirectDrawGroup(int maxBatchSize, Object owner) {
+        this.maxBatchSize = maxBatchSize;
+        this.owner = owner;
+        this.shader = AssetPool.getShader("assets/shaders/default.glsl");
+    }
+
+    /**
+     * Texture table every batch of this group indexes into
+     */
+    List<Texture> getTextures() {
+        return textures;
+    }
+
+    boolean hasTextureRoom(Texture tex) {
+        return tex == null || textures.contains(tex) || textures.size() < RenderBatch.MAX_SPRITESHEET_NUM;
+    }
+
+    void add(RenderBatch batch) {
+        batches.add(batch);
+        if (batches.size() > capacity) {
+            grow(Math.max(4, capacity * 2));
+        }
+    }
+
+    /**
+     * Reallocate the shared buffers, every batch is uploaded again on the next render
+     * @param newCapacity number of batches
+     */
+    private void grow(int newCapacity) {
+        if (vaoID == 0) {
+            vaoID = glGenVertexArrays();
+            glBindVertexArray(vaoID);
+
+            vboID = glGenBuffers();
+            glBindBuffer(GL_ARRAY_BUFFER, vboID);
+
+            // every command starts at index 0, baseVertex moves it to its batch's range
+            eboID = glGenBuffers();
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboID);
+            int[] indices = batches.get(0).generateIndices();
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+
+            RenderBatch.enableVertexAttributes();
+            glBindVertexArray(0);
+
+            commandBufferID = glGenBuffers();
+            gpuTimer = new GpuTimer("multi draw gpu");
+
+            GpuResources.allocate(GpuResources.Category.VERTEX_ARRAY, vaoID, 0, owner);
+            GpuResources.allocate(GpuResources.Category.VERTEX_BUFFER, vboID, 0, owner);
+            GpuResources.allocate(GpuResources.Category.INDEX_BUFFER, eboID, (long) indices.length * Integer.BYTES, owner);
+            GpuResources.allocate(GpuResources.Category.COMMAND_BUFFER, commandBufferID, 0, owner);
+        }
+
+        capacity = newCapacity;
+        glBindBuffer(GL_ARRAY_BUFFER, vboID);
+        glBufferData(GL_ARRAY_BUFFER, (long) capacity * batchBytes(), GL_DYNAMIC_DRAW);
+        GpuResources.resize(GpuResources.Category.VERTEX_BUFFER, vboID, (long) capacity * batchBytes());
+        for (int i = 0; i < batches.size(); i++) {
+            glBufferSubData(GL_ARRAY_BUFFER, (long) i * batchBytes(), batches.get(i).getVertices());
+        }
+
+        commands = new int[capacity * COMMAND_SIZE];
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, commandBufferID);
+        glBufferData(GL_DRAW_INDIRECT_BUFFER, (long) commands.length * Integer.BYTES, GL_DYNAMIC_DRAW);
+        GpuResources.resize(GpuResources.Category.COMMAND_BUFFER, commandBufferID, (long) commands.length * Integer.BYTES);
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+    }
+
+    /**
+     * Free the shared buffers
+     */
+    void destroy() {
+        if (vaoID == 0) return;
+
+        glDeleteVertexArrays(vaoID);
+        glDeleteBuffers(vboID);
+        glDeleteBuffers(eboID);
+        glDeleteBuffers(commandBufferID);
+        GpuResources.free(GpuResources.Category.VERTEX_ARRAY, vaoID);
+        GpuResources.free(GpuResources.Category.VERTEX_BUFFER, vboID);
+        GpuResources.free(GpuResources.Category.INDEX_BUFFER, eboID);
+        GpuResources.free(GpuResources.Category.COMMAND_BUFFER, commandBufferID);
+        vaoID = vboID = eboID = commandBufferID = 0;
+        capacity = 0;
+        gpuTimer.destroy();
+    }
+
+    private long batchBytes() {
+        return (long) maxBatchSize * 4 * RenderBatch.VERTEX_SIZE_BYTES;
+    }
+
+    void render() {
+        for (int i = 0; i < batches.size(); i++) {
+            batches.get(i).rebuildVertices();
+        }
+        submit();
+    }
+
+    /**
+     * Upload the vertex ranges the batches rebuilt and the command list, then draw, on the GL thread
+     */
+    void submit() {
+        if (batches.isEmpty()) return;
+
+        // refresh changed vertex ranges and build the command list
+        Profiler.begin(uploadScope);
+        glBindBuffer(GL_ARRAY_BUFFER, vboID);
+        int numSprites = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            RenderBatch batch = batches.get(i);
+            RenderStats.recordBatch();
+            if (batch.takeUpload()) {
+                glBufferSubData(GL_ARRAY_BUFFER, i * batchBytes(), batch.getVertices());
+                RenderStats.recordUpload(batchBytes());
+            }
+
+            int command = i * COMMAND_SIZE;
+            commands[command] = batch.getNumSprites() * 6;
+            commands[command + 1] = 1;
+            commands[command + 2] = 0;
+            commands[command + 3] = i * maxBatchSize * 4;
+            commands[command + 4] = 0;
+            numSprites += batch.getNumSprites();
+        }
+
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, commandBufferID);
+        glBufferSubData(GL_DRAW_INDIRECT_BUFFER, 0, commands);
+        RenderStats.recordUpload((long) batches.size() * COMMAND_SIZE * Integer.BYTES);
+        Profiler.end(uploadScope);
+
+        Profiler.begin(drawScope);
+        gpuTimer.begin();
+        draw(shader);
+        RenderStats.recordDraw(numSprites);
+        gpuTimer.end();
+        Profiler.end(drawScope);
+    }
+
+    /**
+     * Draw every batch as last uploaded with any shader reading the batch vertex layout
+     * @param shader
+     */
+    void draw(Shader shader) {
+        if (batches.isEmpty()) return;
+
+        shader.use();
+        shader.uploadMat4f("uProjection", Window.getScene().camera().getProjectionMatrix());
+        shader.uploadMat4f("uView", Window.getScene().camera().getViewMatrix());
+
+        // bind textures to slots
+        for (int i = 0; i < textures.size(); i++) {
+            glActiveTexture(GL_TEXTURE0 + i + 1);
+            textures.get(i).bind();
+        }
+        shader.uploadIntArray("uTextures", texSlots);
+
+        glBindVertexArray(vaoID);
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, commandBufferID);
+        glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_INT, 0, batches.size(), 0);
+        glBindVertexArray(0);
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+
+        // unbind textures
+        for (int i = 0; i < textures.size(); i++) {
+            textures.get(i).unbind();
+        }
+        shader.detach();
+    }
+}
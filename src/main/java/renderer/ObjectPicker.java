@@ -0,0 +1,204 @@
+package renderer;
+
+import util.AssetPool;
+import util.Profiler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Finds the game object under a pixel by drawing the uid of every sprite into an integer framebuffer.
+ * Nothing is drawn until a pick is requested, then only the requested pixel is, with the scissor test.
+ * The id is copied into a pixel buffer object behind a fence and read a frame or two later,
+ * so the CPU never waits on the GPU and a pick costs the same however many objects the scene holds.
+ * Only touched from the GL thread.
+ */
+public class ObjectPicker {
+    private static final int PICK_SCOPE = Profiler.scope("picking");
+    // written where no sprite covers the pixel, game object uids start at 1
+    public static final int NONE = 0;
+
+    private final Shader shader;
+    private int fboID, textureID, pboID;
+    private int width, height;
+    private final int[] clearValue = {NONE, 0, 0, 0};
+
+    // pixel asked for, waiting to be drawn
+    private boolean requested = false;
+    private int requestX, requestY;
+    // fence after the copy into the pixel buffer, 0 when no read back is in flight
+    private long fence = 0;
+    // a request outside the target, answered with NONE on the next poll
+    private boolean missed = false;
+    private int pickedUid = NONE;
+
+    public ObjectPicker() {
+        this.shader = AssetPool.getShader("assets/shaders/picking.glsl");
+    }
+
+    /**
+     * Ask for the object under a pixel, drawn after the next scene update.
+     * A newer request replaces one that wasn't drawn yet
+     * @param x pixels of the scene's render target from the left
+     * @param y pixels of the scene's render target from the bottom
+     */
+    public void request(int x, int y) {
+        requested = true;
+        requestX = x;
+        requestY = y;
+    }
+
+    /**
+     * Draw the ids for a pending request and start reading them back, a no-op without one.
+     * Called after the scene rendered, its vertices are reused as they were uploaded
+     * @param renderer
+     * @param targetWidth size of the scene's render target in pixels
+     * @param targetHeight
+     * @param targetFbo framebuffer the scene draws into, bound again afterwards
+     */
+    public void render(Renderer renderer, int targetWidth, int targetHeight, int targetFbo) {
+        // one read back in flight at a time, a new request waits for it
+        if (!requested || fence != 0) return;
+
+        requested = false;
+        if (requestX < 0 || requestX >= targetWidth || requestY < 0 || requestY >= targetHeight) {
+            missed = true;
+            return;
+        }
+
+        Profiler.begin(PICK_SCOPE);
+        if (fboID == 0 || width != targetWidth || height != targetHeight) {
+            destroyTarget();
+            createTarget(targetWidth, targetHeight);
+        }
+
+        // blending doesn't apply to integer attachments, the closest sprite's id simply wins
+        glBindFramebuffer(GL_FRAMEBUFFER, fboID);
+        glViewport(0, 0, width, height);
+        glEnable(GL_SCISSOR_TEST);
+        glScissor(requestX, requestY, 1, 1);
+        glClearBufferiv(GL_COLOR, 0, clearValue);
+        renderer.renderPicking(shader);
+        glDisable(GL_SCISSOR_TEST);
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pboID);
+        glReadPixels(requestX, requestY, 1, 1, GL_RED_INTEGER, GL_INT, 0);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, targetFbo);
+        glViewport(0, 0, targetWidth, targetHeight);
+        Profiler.end(PICK_SCOPE);
+    }
+
+    /**
+     * Check on the read back in flight without blocking
+     * @return true if a pick finished since the last poll, its result is getPickedUid
+     */
+    public boolean poll() {
+        if (missed) {
+            missed = false;
+            pickedUid = NONE;
+            return true;
+        }
+        if (fence == 0) return false;
+
+        int status = glClientWaitSync(fence, 0, 0);
+        if (status == GL_TIMEOUT_EXPIRED) return false;
+        glDeleteSync(fence);
+        fence = 0;
+        if (status == GL_WAIT_FAILED) {
+            assert false : "Error: waiting on the picking read back failed";
+            pickedUid = NONE;
+            return true;
+        }
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pboID);
+        ByteBuffer pixel = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, Integer.BYTES, GL_MAP_READ_BIT);
+        pickedUid = pixel != null ? pixel.order(ByteOrder.nativeOrder()).getInt(0) : NONE;
+        glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        return true;
+    }
+
+    /**
+     * Uid of the game object under the last picked pixel, NONE if it was empty
+     */
+    public int getPickedUid() {
+        return pickedUid;
+    }
+
+    /**
+     * If a pick is requested or being read back
+     */
+    public boolean isBusy() {
+        return requested || fence != 0 || missed;
+    }
+
+    private void createTarget(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        textureID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, textureID);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_R32I, width, height, 0, GL_RED_INTEGER, GL_INT, 0);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        fboID = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, fboID);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, textureID, 0);
+        if (glCheckFramebufferStatus(GL_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE) {
+            assert false : "Error: picking framebuffer is not complete";
+        }
+
+        if (pboID == 0) {
+            pboID = glGenBuffers();
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, pboID);
+            glBufferData(GL_PIXEL_PACK_BUFFER, Integer.BYTES, GL_STREAM_READ);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+            GpuResources.allocate(GpuResources.Category.PIXEL_BUFFER, pboID, Integer.BYTES, this);
+        }
+
+        GpuResources.allocate(GpuResources.Category.TEXTURE, textureID, (long) width * height * Integer.BYTES, this);
+        GpuResources.allocate(GpuResources.Category.FRAMEBUFFER, fboID, 0, this);
+    }
+
+    private void destroyTarget() {
+        if (fboID == 0) return;
+
+        glDeleteFramebuffers(fboID);
+        glDeleteTextures(textureID);
+        GpuResources.free(GpuResources.Category.FRAMEBUFFER, fboID);
+        GpuResources.free(GpuResources.Category.TEXTURE, textureID);
+        fboID = textureID = 0;
+    }
+
+    /**
+     * Free the id framebuffer and the pixel buffer, a read back in flight is dropped
+     */
+    public void destroy() {
+        if (fence != 0) {
+            glDeleteSync(fence);
+            fence = 0;
+        }
+        destroyTarget();
+        if (pboID != 0) {
+            glDeleteBuffers(pboID);
+            GpuResources.free(GpuResources.Category.PIXEL_BUFFER, pboID);
+            pboID = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectPicker";
+    }
+}
@@ -0,0 +1,215 @@
+package renderer;
+
+import components.ParticleEmitter;
+import components.Sprite;
+import engine.Window;
+import org.joml.Vector2f;
+import org.lwjgl.BufferUtils;
+import util.AssetPool;
+import util.Profiler;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL31.glDrawArraysInstanced;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+
+/**
+ * Draws every particle of an emitter with one instanced draw.
+ * A unit quad is shared by all particles, each particle only uploads its center, size, color and uvs.
+ */
+class ParticleRenderer {
+    // x, y, size     r, g, b, a     u0, v0, u1, v1 (bottom left, top right)
+    private static final int POS_SIZE = 3;
+    private static final int COLOR_SIZE = 4;
+    private static final int TEXT_COORDS_SIZE = 4;
+    private static final int INSTANCE_SIZE = POS_SIZE + COLOR_SIZE + TEXT_COORDS_SIZE;
+    private static final int INSTANCE_SIZE_BYTES = INSTANCE_SIZE * Float.BYTES;
+    private static final int COLOR_OFFSET = POS_SIZE * Float.BYTES;
+    private static final int TEXT_COORDS_OFFSET = COLOR_OFFSET + COLOR_SIZE * Float.BYTES;
+
+    // corners of the unit quad, drawn as a triangle strip
+    private static final float[] QUAD = {0, 0, 1, 0, 0, 1, 1, 1};
+
+    /**
+     * GPU buffers of one emitter
+     */
+    private static class EmitterBuffers {
+        final ParticleEmitter emitter;
+        final int vaoID, instanceVboID;
+
+        EmitterBuffers(ParticleEmitter emitter, int vaoID, int instanceVboID) {
+            this.emitter = emitter;
+            this.vaoID = vaoID;
+            this.instanceVboID = instanceVboID;
+        }
+    }
+
+    private final List<EmitterBuffers> emitters = new ArrayList<>();
+    private final Shader shader;
+    // who destroys the particle buffers, for the GpuResources leak report
+    private final Object owner;
+    private int quadVboID = 0;
+
+    // staging for the largest emitter so far, shared by all of them
+    private float[] instances = new float[0];
+    private FloatBuffer instanceBuffer = BufferUtils.createFloatBuffer(0);
+
+    private final int uploadScope = Profiler.scope("particles upload");
+    private final int drawScope = Profiler.scope("particles draw");
+
+    ParticleRenderer(Object owner) {
+        this.owner = owner;
+        this.shader = AssetPool.getShader("assets/shaders/particle.glsl");
+    }
+
+    void add(ParticleEmitter emitter) {
+        if (quadVboID == 0) {
+            quadVboID = glGenBuffers();
+            glBindBuffer(GL_ARRAY_BUFFER, quadVboID);
+            glBufferData(GL_ARRAY_BUFFER, QUAD, GL_STATIC_DRAW);
+            GpuResources.allocate(GpuResources.Category.VERTEX_BUFFER, quadVboID, (long) QUAD.length * Float.BYTES, owner);
+        }
+
+        int vaoID = glGenVertexArrays();
+        GpuResources.allocate(GpuResources.Category.VERTEX_ARRAY, vaoID, 0, owner);
+        glBindVertexArray(vaoID);
+
+        glBindBuffer(GL_ARRAY_BUFFER, quadVboID);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, 2 * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+
+        // per instance attributes advance once per particle instead of once per vertex
+        int instanceVboID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboID);
+        glBufferData(GL_ARRAY_BUFFER, (long) emitter.getMaxParticles() * INSTANCE_SIZE_BYTES, GL_STREAM_DRAW);
+        GpuResources.allocate(GpuResources.Category.VERTEX_BUFFER, instanceVboID, (long) emitter.getMaxParticles() * INSTANCE_SIZE_BYTES, owner);
+        glVertexAttribPointer(1, POS_SIZE, GL_FLOAT, false, INSTANCE_SIZE_BYTES, 0);
+        glEnableVertexAttribArray(1);
+        glVertexAttribDivisor(1, 1);
+        glVertexAttribPointer(2, COLOR_SIZE, GL_FLOAT, false, INSTANCE_SIZE_BYTES, COLOR_OFFSET);
+        glEnableVertexAttribArray(2);
+        glVertexAttribDivisor(2, 1);
+        glVertexAttribPointer(3, TEXT_COORDS_SIZE, GL_FLOAT, false, INSTANCE_SIZE_BYTES, TEXT_COORDS_OFFSET);
+        glEnableVertexAttribArray(3);
+        glVertexAttribDivisor(3, 1);
+        glBindVertexArray(0);
+
+        int size = emitter.getMaxParticles() * INSTANCE_SIZE;
+        if (size > instances.length) {
+            instances = new float[size];
+            instanceBuffer = BufferUtils.createFloatBuffer(size);
+        }
+        emitters.add(new EmitterBuffers(emitter, vaoID, instanceVboID));
+    }
+
+    void remove(ParticleEmitter emitter) {
+        for (int i = 0; i < emitters.size(); i++) {
+            EmitterBuffers buffers = emitters.get(i);
+            if (buffers.emitter == emitter) {
+                glDeleteBuffers(buffers.instanceVboID);
+                glDeleteVertexArrays(buffers.vaoID);
+                GpuResources.free(GpuResources.Category.VERTEX_BUFFER, buffers.instanceVboID);
+                GpuResources.free(GpuResources.Category.VERTEX_ARRAY, buffers.vaoID);
+                emitters.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Free every emitter's buffers and the shared quad
+     */
+    void destroy() {
+        for (int i = emitters.size() - 1; i >= 0; i--) {
+            remove(emitters.get(i).emitter);
+        }
+        if (quadVboID != 0) {
+            glDeleteBuffers(quadVboID);
+            GpuResources.free(GpuResources.Category.VERTEX_BUFFER, quadVboID);
+            quadVboID = 0;
+        }
+    }
+
+    void render() {
+        if (emitters.isEmpty()) return;
+
+        shader.use();
+        shader.uploadMat4f("uProjection", Window.getScene().camera().getProjectionMatrix());
+        shader.uploadMat4f("uView", Window.getScene().camera().getViewMatrix());
+        shader.uploadTexture("uTexture", 0);
+
+        for (int e = 0; e < emitters.size(); e++) {
+            EmitterBuffers buffers = emitters.get(e);
+            ParticleEmitter emitter = buffers.emitter;
+            int count = emitter.getNumParticles();
+            if (count == 0) continue;
+
+            Profiler.begin(uploadScope);
+            int floats = fillInstances(emitter, count);
+            instanceBuffer.clear();
+            instanceBuffer.put(instances, 0, floats).flip();
+            glBindBuffer(GL_ARRAY_BUFFER, buffers.instanceVboID);
+            // orphan last frame's data so the driver doesn't wait for the gpu to finish reading it
+            glBufferData(GL_ARRAY_BUFFER, (long) emitter.getMaxParticles() * INSTANCE_SIZE_BYTES, GL_STREAM_DRAW);
+            glBufferSubData(GL_ARRAY_BUFFER, 0, instanceBuffer);
+            RenderStats.recordUpload((long) floats * Float.BYTES);
+            Profiler.end(uploadScope);
+
+            Profiler.begin(drawScope);
+            Texture texture = emitter.getTexture();
+            shader.uploadInt("uUseTexture", texture != null ? 1 : 0);
+            if (texture != null) {
+                glActiveTexture(GL_TEXTURE0);
+                texture.bind();
+            }
+
+            glBindVertexArray(buffers.vaoID);
+            glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, count);
+            RenderStats.recordDraw(count);
+            glBindVertexArray(0);
+
+            if (texture != null) {
+                texture.unbind();
+            }
+            Profiler.end(drawScope);
+        }
+
+        shader.detach();
+    }
+
+    /**
+     * Copy the live particles into the instance staging array
+     * @return number of floats written
+     */
+    private int fillInstances(ParticleEmitter emitter, int count) {
+        float[] data = instances;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            data[offset] = emitter.getX(i);
+            data[offset + 1] = emitter.getY(i);
+            data[offset + 2] = emitter.getSize(i);
+            data[offset + 3] = emitter.getR(i);
+            data[offset + 4] = emitter.getG(i);
+            data[offset + 5] = emitter.getB(i);
+            data[offset + 6] = emitter.getA(i);
+
+            Sprite sprite = emitter.getSprite(i);
+            if (sprite != null) {
+                Vector2f[] texCoords = sprite.getTexCoords();
+                data[offset + 7] = texCoords[2].x;
+                data[offset + 8] = texCoords[2].y;
+                data[offset + 9] = texCoords[0].x;
+                data[offset + 10] = texCoords[0].y;
+            }
+            offset += INSTANCE_SIZE;
+        }
+        return offset;
+    }
+}
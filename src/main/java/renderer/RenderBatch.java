@@ -5,6 +5,7 @@ import engine.Window;
 import org.joml.Vector2f;
 import org.joml.Vector4f;
 import util.AssetPool;
+import util.Profiler;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,37 +13,49 @@ import java.util.List;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
 import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
 
 /**
  * Wrapper class for rendering sprites in one batch
  * using one VAO/VBO to improve efficiency/fps
  */
 public class RenderBatch {
-    private static final int MAX_SPRITESHEET_NUM = 8;
-    // a single vertex's attributes: position     color     texture coordinates     texture ID
-    // x, y         r, g, b, a,        x, y, id
-    private final int POS_SIZE = 2;
-    private final int COLOR_SIZE = 4;
-    private final int TEXT_COORDS_SIZE = 2;
-    private final int TEXT_ID_SIZE = 1;
-
-    private final int POS_OFFSET = 0;
-    private final int COLOR_OFFSET = POS_OFFSET + POS_SIZE * Float.BYTES;
-    private final int TEXT_COORDS_OFFSET = COLOR_OFFSET + COLOR_SIZE * Float.BYTES;
-    private final int TEXT_ID_OFFSET = TEXT_COORDS_OFFSET + TEXT_COORDS_SIZE * Float.BYTES;
-
-    // number of floats inside each vertex (position + color + texture coords + texture id)
-    private final int VERTEX_SIZE  = 9;
-    private final int VERTEX_SIZE_BYTES = VERTEX_SIZE * Float.BYTES;
+    static final int MAX_SPRITESHEET_NUM = 8;
+    // a single vertex's attributes: position     color     texture coordinates     texture ID     entity ID
+    // x, y         r, g, b, a,        x, y, id     uid (int bits)
+    static final int POS_SIZE = 2;
+    static final int COLOR_SIZE = 4;
+    static final int TEXT_COORDS_SIZE = 2;
+    static final int TEXT_ID_SIZE = 1;
+    static final int ENTITY_ID_SIZE = 1;
+
+    static final int POS_OFFSET = 0;
+    static final int COLOR_OFFSET = POS_OFFSET + POS_SIZE * Float.BYTES;
+    static final int TEXT_COORDS_OFFSET = COLOR_OFFSET + COLOR_SIZE * Float.BYTES;
+    static final int TEXT_ID_OFFSET = TEXT_COORDS_OFFSET + TEXT_COORDS_SIZE * Float.BYTES;
+    static final int ENTITY_ID_OFFSET = TEXT_ID_OFFSET + TEXT_ID_SIZE * Float.BYTES;
+
+    // number of floats inside each vertex (position + color + texture coords + texture id + entity id)
+    static final int VERTEX_SIZE  = 10;
+    static final int VERTEX_SIZE_BYTES = VERTEX_SIZE * Float.BYTES;
+
+    // every batch shares the same scopes, the trace tells them apart by the batch's position in the renderer
+    private static final int REBUILD_SCOPE = Profiler.scope("batch rebuild", "batch");
+    private static final int UPLOAD_SCOPE = Profiler.scope("batch upload", "batch");
+    private static final int DRAW_SCOPE = Profiler.scope("batch draw", "batch");
+    private static final int GPU_SCOPE = Profiler.scope("batch gpu", "batch");
 
     private SpriteRenderer[] sprites;
     private int numSprites;
     private boolean hasRoom;
+    // vertices changed since the last upload
+    private boolean needsUpload;
     // each quad consists of 4 vertices, introducing the order to connect all vertices
     private float[] vertices;
 
-    private int vaoID, vboID;
+    private int vaoID, vboID, eboID;
     // how many sprites to render in one batch
     private int maxBatchSize;
 
@@ -51,8 +64,27 @@ public class RenderBatch {
     private List<Texture> textures;
     private int[] texSlots = {0, 1, 2, 3, 4, 5, 6, 7};
 
-    public RenderBatch(int maxBatchSize) {
-        this.shader = AssetPool.getShader("assets/shaders/default.glsl");
+    // position in the owning renderer, passed along with the profiler events
+    private int batchIndex;
+    private GpuTimer gpuTimer;
+
+    public RenderBatch(int maxBatchSize, int index) {
+        this(maxBatchSize, index, AssetPool.getShader("assets/shaders/default.glsl"), new ArrayList<>());
+    }
+
+    /**
+     * Batch with an explicit shader, lets tools build vertices without a GL context
+     */
+    RenderBatch(int maxBatchSize, int index, Shader shader) {
+        this(maxBatchSize, index, shader, new ArrayList<>());
+    }
+
+    /**
+     * Batch whose texture slots are shared with other batches, so they can all be drawn with one set of bindings
+     * @param textures texture table shared by every batch drawn together
+     */
+    RenderBatch(int maxBatchSize, int index, Shader shader, List<Texture> textures) {
+        this.shader = shader;
         this.sprites = new SpriteRenderer[maxBatchSize];
         this.maxBatchSize = maxBatchSize;
 
@@ -60,29 +92,65 @@ public class RenderBatch {
 
         this.numSprites = 0;
         this.hasRoom = true;
-        this.textures = new ArrayList<>();
+        this.textures = textures;
+
+        this.batchIndex = index;
     }
 
     /**
      * Allocate memory for vao/vbo on GPU
      */
     public void start() {
+        start(this);
+    }
+
+    /**
+     * @param owner who is responsible for destroying the batch, shows up in the GpuResources leak report
+     */
+    void start(Object owner) {
         // generate vao
         vaoID = glGenVertexArrays();
         glBindVertexArray(vaoID);
+        GpuResources.allocate(GpuResources.Category.VERTEX_ARRAY, vaoID, 0, owner);
 
         // allocate space for vbo
         vboID = glGenBuffers();
         glBindBuffer(GL_ARRAY_BUFFER, vboID);
         glBufferData(GL_ARRAY_BUFFER, vertices.length * Float.BYTES, GL_DYNAMIC_DRAW);
+        GpuResources.allocate(GpuResources.Category.VERTEX_BUFFER, vboID, (long) vertices.length * Float.BYTES, owner);
 
         // create ebo
-        int ebo = glGenBuffers();
+        eboID = glGenBuffers();
         int[] indices = generateIndices();
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboID);
         glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        GpuResources.allocate(GpuResources.Category.INDEX_BUFFER, eboID, (long) indices.length * Integer.BYTES, owner);
 
-        // enable vertex attribute pointers
+        enableVertexAttributes();
+
+        gpuTimer = new GpuTimer(GPU_SCOPE, batchIndex);
+    }
+
+    /**
+     * Free the vao/vbo/ebo, batches living in an indirect draw group have none of their own
+     */
+    public void destroy() {
+        if (vaoID == 0) return;
+
+        glDeleteVertexArrays(vaoID);
+        glDeleteBuffers(vboID);
+        glDeleteBuffers(eboID);
+        GpuResources.free(GpuResources.Category.VERTEX_ARRAY, vaoID);
+        GpuResources.free(GpuResources.Category.VERTEX_BUFFER, vboID);
+        GpuResources.free(GpuResources.Category.INDEX_BUFFER, eboID);
+        vaoID = vboID = eboID = 0;
+        gpuTimer.destroy();
+    }
+
+    /**
+     * Describe the vertex layout for the currently bound vao/vbo
+     */
+    static void enableVertexAttributes() {
         glVertexAttribPointer(0, POS_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, POS_OFFSET);
         glEnableVertexAttribArray(0);
         glVertexAttribPointer(1, COLOR_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, COLOR_OFFSET);
@@ -91,7 +159,10 @@ public class RenderBatch {
         glEnableVertexAttribArray(2);
         glVertexAttribPointer(3, TEXT_ID_SIZE, GL_FLOAT, false, VERTEX_SIZE_BYTES, TEXT_ID_OFFSET);
         glEnableVertexAttribArray(3);
-
+        // game object uid for the picking pass, its bits are stored in the float slot and read back as an int,
+        // a float value would only be exact up to 2^24 and uids are never reused
+        glVertexAttribIPointer(4, ENTITY_ID_SIZE, GL_INT, VERTEX_SIZE_BYTES, ENTITY_ID_OFFSET);
+        glEnableVertexAttribArray(4);
     }
 
     /**
@@ -112,6 +183,8 @@ public class RenderBatch {
 
         // add properties data to vbo
         loadVertexProperties(index);
+        spr.setClean();
+        needsUpload = true;
 
         if (this.numSprites == maxBatchSize) {
             this.hasRoom = false;
@@ -119,14 +192,44 @@ public class RenderBatch {
 
     }
 
-    private void loadVertexProperties(int index) {
+    /**
+     * Remove a sprite, the last sprite of the batch is moved into its place
+     * @param spr
+     * @return false if the sprite is not in this batch
+     */
+    public boolean removeSprite(SpriteRenderer spr) {
+        for (int i = 0; i < numSprites; i++) {
+            if (sprites[i] == spr) {
+                numSprites--;
+                sprites[i] = sprites[numSprites];
+                sprites[numSprites] = null;
+
+                if (i < numSprites) {
+                    loadVertexProperties(i);
+                }
+                needsUpload = true;
+                hasRoom = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the 4 vertices of a sprite's quad
+     * @param index
+     */
+    void loadVertexProperties(int index) {
         SpriteRenderer sprite = this.sprites[index];
 
         // find offset within vbo array
-        // each sprite has 4 vertices, each vertices has 6 floats representing color + position
         int offset = index * 4 * VERTEX_SIZE;
 
+        Vector2f position = sprite.gameObject.transform.getWorldPosition();
+        Vector2f scale = sprite.gameObject.transform.scale;
         Vector4f color = sprite.getColor();
+        // the uid's bits, read back as an int by the picking pass
+        float entityId = Float.intBitsToFloat(sprite.gameObject.getUid());
 
         // get the textureId of sprite
         int textId = 0;
@@ -158,8 +261,8 @@ public class RenderBatch {
             }
 
             // load position
-            vertices[offset] = sprite.gameObject.transform.position.x + (xAdd * sprite.gameObject.transform.scale.x);
-            vertices[offset + 1] = sprite.gameObject.transform.position.y + (yAdd * sprite.gameObject.transform.scale.y);
+            vertices[offset] = position.x + (xAdd * scale.x);
+            vertices[offset + 1] = position.y + (yAdd * scale.y);
 
             // load color
             vertices[offset + 2] = color.x;
@@ -174,16 +277,86 @@ public class RenderBatch {
             // load texture id
             vertices[offset + 8] = textId;
 
+            // load entity id
+            vertices[offset + 9] = entityId;
+
             // go to next vertex in the quad
             offset += VERTEX_SIZE;
         }
-        
+    }
+
+    /**
+     * Rebuild the vertices of every sprite that changed since last frame
+     * @return true if the vertices changed since they were last uploaded, the caller has to upload them
+     */
+    public boolean rebuild() {
+        rebuildVertices();
+        return takeUpload();
+    }
+
+    /**
+     * buildVertices under the batch's profiler scope, on the render thread
+     */
+    void rebuildVertices() {
+        Profiler.begin(REBUILD_SCOPE);
+        buildVertices();
+        Profiler.end(REBUILD_SCOPE, batchIndex);
+    }
+
+    /**
+     * Rebuild the vertices of the changed sprites without profiling or touching GL.
+     * Safe to run on any thread while nothing else touches this batch, its sprites or their transforms
+     */
+    void buildVertices() {
+        for (int i = 0; i < numSprites; i++) {
+            SpriteRenderer spr = sprites[i];
+            if (spr.isDirty()) {
+                loadVertexProperties(i);
+                spr.setClean();
+                needsUpload = true;
+            }
+        }
+    }
+
+    /**
+     * @return true once if the vertices changed since they were last uploaded, the caller has to upload them
+     */
+    boolean takeUpload() {
+        boolean changed = needsUpload;
+        needsUpload = false;
+        return changed;
     }
 
     public void render() {
-        glBindBuffer(GL_ARRAY_BUFFER, vboID);
-        glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
+        rebuildVertices();
+        submit();
+    }
+
+    /**
+     * Upload the vertices if buildVertices changed them and draw, on the GL thread
+     */
+    void submit() {
+        if (takeUpload()) {
+            Profiler.begin(UPLOAD_SCOPE);
+            glBindBuffer(GL_ARRAY_BUFFER, vboID);
+            glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
+            RenderStats.recordUpload((long) vertices.length * Float.BYTES);
+            Profiler.end(UPLOAD_SCOPE, batchIndex);
+        }
+
+        Profiler.begin(DRAW_SCOPE);
+        gpuTimer.begin();
+        draw(shader);
+        RenderStats.recordDraw(numSprites);
+        gpuTimer.end();
+        Profiler.end(DRAW_SCOPE, batchIndex);
+    }
 
+    /**
+     * Draw the vertices as last uploaded with any shader reading the batch's vertex layout
+     * @param shader
+     */
+    void draw(Shader shader) {
         // use shader
         shader.use();
         shader.uploadMat4f("uProjection", Window.getScene().camera().getProjectionMatrix());
@@ -219,7 +392,7 @@ public class RenderBatch {
      * Generate ebo, the order to connect vertices are fixed
      * @return
      */
-    private int[] generateIndices() {
+    int[] generateIndices() {
         // 6 indices per quad, 3 per triangle
         int[] elements = new int[6 * maxBatchSize];
 
@@ -251,6 +424,18 @@ public class RenderBatch {
         elements[offsetArrayIndex + 5] = offset + 1;
     }
 
+    float[] getVertices() {
+        return vertices;
+    }
+
+    int getNumSprites() {
+        return numSprites;
+    }
+
+    int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
     /**
      * If the batch is full
      */
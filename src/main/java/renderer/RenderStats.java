@@ -0,0 +1,47 @@
+package renderer;
+
+/**
+ * Per frame renderer counters, reset at the start of every frame
+ */
+public class RenderStats {
+    private static int drawCalls = 0;
+    private static int batches = 0;
+    private static int sprites = 0;
+    private static long bytesUploaded = 0;
+
+    public static void beginFrame() {
+        drawCalls = 0;
+        batches = 0;
+        sprites = 0;
+        bytesUploaded = 0;
+    }
+
+    static void recordDraw(int numSprites) {
+        drawCalls++;
+        sprites += numSprites;
+    }
+
+    static void recordBatch() {
+        batches++;
+    }
+
+    static void recordUpload(long bytes) {
+        bytesUploaded += bytes;
+    }
+
+    public static int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public static int getBatches() {
+        return batches;
+    }
+
+    public static int getSprites() {
+        return sprites;
+    }
+
+    public static long getBytesUploaded() {
+        return bytesUploaded;
+    }
+}
@@ -1,17 +1,108 @@
 package renderer;
 
+import components.ParticleEmitter;
 import components.SpriteRenderer;
 import engine.GameObject;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import util.AssetPool;
+import util.Profiler;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Renderer {
+    private static final int RENDER_SCOPE = Profiler.scope("render");
+    private static final int BUILD_SCOPE = Profiler.scope("parallel rebuild");
+    // submit every batch with one glMultiDrawElementsIndirect when GL 4.3 is available
+    private static boolean multiDrawIndirect = false;
+    // rebuild the vertices of every batch at once on a fork join pool, uploads and draws stay on the GL thread
+    private static boolean parallelBuild = false;
+    private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+    // shared by every renderer, created by the first parallel rebuild
+    private static ForkJoinPool buildPool;
     private final int MAX_BATCH_SIZE = 1000;
     private List<RenderBatch> batches;
+    // which batch each sprite lives in, so removal doesn't scan every batch
+    private Map<SpriteRenderer, RenderBatch> spriteBatches;
+    // batches grouped by shared texture table, only used in multi draw mode
+    private List<IndirectDrawGroup> groups;
+    private boolean useIndirect = false;
+    // created with the first emitter, scenes without particles never load its shader
+    private ParticleRenderer particles;
+    // the scene this renderer draws, only used to name it in GPU leak reports
+    private final Object owner;
+    // one task per batch, reused every frame so a parallel rebuild doesn't allocate
+    private final List<BuildTask> buildTasks = new ArrayList<>();
+    private final BuildAll buildAll = new BuildAll();
+
+    /**
+     * Rebuilds one batch on a pool thread
+     */
+    private static class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final RenderBatch batch;
+
+        BuildTask(RenderBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            batch.buildVertices();
+        }
+    }
+
+    /**
+     * Forks a task for every batch but the first, which it builds itself, then waits for the rest
+     */
+    private class BuildAll extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            for (int i = 1; i < buildTasks.size(); i++) {
+                BuildTask task = buildTasks.get(i);
+                task.reinitialize();
+                task.fork();
+            }
+            buildTasks.get(0).compute();
+            // newest first, the ones no other worker stole are taken back off this thread's queue
+            for (int i = buildTasks.size() - 1; i >= 1; i--) {
+                buildTasks.get(i).join();
+            }
+        }
+    }
 
     public Renderer() {
+        this(null);
+    }
+
+    public Renderer(Object owner) {
+        this.owner = owner;
         this.batches = new ArrayList<>();
+        this.spriteBatches = new IdentityHashMap<>();
+        this.groups = new ArrayList<>();
+    }
+
+    public static void setMultiDrawIndirect(boolean enabled) {
+        multiDrawIndirect = enabled;
+    }
+
+    /**
+     * Rebuild the batches on every core, for scenes with many batches changing every frame
+     * @param enabled
+     */
+    public static void setParallelBuild(boolean enabled) {
+        parallelBuild = enabled;
+    }
+
+    public static boolean isParallelBuild() {
+        return parallelBuild;
     }
 
     public void add(GameObject go) {
@@ -19,6 +110,14 @@ public class Renderer {
         if (spr != null) {
             add(spr);
         }
+
+        ParticleEmitter emitter = go.getComponent(ParticleEmitter.class);
+        if (emitter != null) {
+            if (particles == null) {
+                particles = new ParticleRenderer(this);
+            }
+            particles.add(emitter);
+        }
     }
 
     /**
@@ -28,12 +127,14 @@ public class Renderer {
     public void add(SpriteRenderer sprite) {
         boolean added = false;
 
-        for (RenderBatch batch : batches) {
+        for (int i = 0; i < batches.size(); i++) {
+            RenderBatch batch = batches.get(i);
             if (batch.hasRoom()) {
                 // limit the number of texture spritesheet to 8 per sprite
                 Texture tex = sprite.getTexture();
                 if (tex == null || batch.hasTexture(tex) || batch.hasTextureRoom()) {
                     batch.addSprite(sprite);
+                    spriteBatches.put(sprite, batch);
                     added = true;
                     break;
                 }
@@ -41,19 +142,203 @@ public class Renderer {
         }
 
         if (!added) {
-            RenderBatch newBatch = new RenderBatch(MAX_BATCH_SIZE);
-            newBatch.start();
+            // the submission path is picked once, on the first batch, when a GL context is guaranteed
+            if (batches.isEmpty()) {
+                useIndirect = multiDrawIndirect && supportsMultiDrawIndirect();
+            }
+            RenderBatch newBatch = useIndirect
+                    ? createIndirectBatch(batches.size(), sprite.getTexture())
+                    : createBatch(batches.size());
             batches.add(newBatch);
             newBatch.addSprite(sprite);
+            spriteBatches.put(sprite, newBatch);
+        }
+    }
+
+    public void remove(GameObject go) {
+        SpriteRenderer spr = go.getComponent(SpriteRenderer.class);
+        if (spr != null) {
+            remove(spr);
+        }
+
+        ParticleEmitter emitter = go.getComponent(ParticleEmitter.class);
+        if (emitter != null && particles != null) {
+            particles.remove(emitter);
+        }
+    }
+
+    public void remove(SpriteRenderer sprite) {
+        RenderBatch batch = spriteBatches.remove(sprite);
+        if (batch != null) {
+            batch.removeSprite(sprite);
+        }
+    }
+
+    /**
+     * Create a batch and allocate its GPU buffers
+     * @param index position of the batch in this renderer
+     */
+    RenderBatch createBatch(int index) {
+        RenderBatch batch = new RenderBatch(MAX_BATCH_SIZE, index);
+        batch.start(this);
+        return batch;
+    }
+
+    /**
+     * Create a batch inside the last indirect draw group, or a new group if the texture doesn't fit its table
+     * @param index position of the batch in this renderer
+     * @param tex texture of the sprite the batch is created for
+     */
+    private RenderBatch createIndirectBatch(int index, Texture tex) {
+        IndirectDrawGroup group = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+        if (group == null || !group.hasTextureRoom(tex)) {
+            group = new IndirectDrawGroup(MAX_BATCH_SIZE, this);
+            groups.add(group);
         }
+
+        // no gpu buffers of its own, the group holds its vertices
+        RenderBatch batch = new RenderBatch(MAX_BATCH_SIZE, index,
+                AssetPool.getShader("assets/shaders/default.glsl"), group.getTextures());
+        group.add(batch);
+        return batch;
+    }
+
+    private static boolean supportsMultiDrawIndirect() {
+        GLCapabilities caps = GL.getCapabilities();
+        if (caps.OpenGL43 || caps.GL_ARB_multi_draw_indirect) {
+            return true;
+        }
+        System.out.println("[Renderer] glMultiDrawElementsIndirect not available, falling back to one draw per batch");
+        return false;
+    }
+
+    /**
+     * Free the GPU buffers of one batch, spreading the teardown of a renderer over several frames
+     * @return true once everything is freed
+     */
+    public boolean destroyStep() {
+        if (!batches.isEmpty()) {
+            batches.remove(batches.size() - 1).destroy();
+            if (buildTasks.size() > batches.size()) {
+                buildTasks.remove(buildTasks.size() - 1);
+            }
+            return false;
+        }
+        if (!groups.isEmpty()) {
+            groups.remove(groups.size() - 1).destroy();
+            return false;
+        }
+        if (particles != null) {
+            particles.destroy();
+            particles = null;
+        }
+        spriteBatches.clear();
+
+        int leaked = GpuResources.countOwnedBy(this);
+        if (leaked > 0) {
+            System.out.println("[Renderer] " + this + " still holds " + leaked + " GL objects after being destroyed");
+        }
+        return true;
+    }
+
+    /**
+     * Free every GPU buffer at once
+     */
+    public void destroy() {
+        while (!destroyStep()) {
+        }
+    }
+
+    public int getNumBatches() {
+        return batches.size();
+    }
+
+    /**
+     * Sprites in the batches over the sprites they have room for, 1 when every batch is full
+     */
+    public float getFillRatio() {
+        if (batches.isEmpty()) return 0;
+
+        int sprites = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            sprites += batches.get(i).getNumSprites();
+        }
+        return sprites / (float) (batches.size() * MAX_BATCH_SIZE);
+    }
+
+    @Override
+    public String toString() {
+        return owner == null ? "Renderer" : "Renderer of " + owner.getClass().getSimpleName();
     }
 
     /**
      * Render all the batches
      */
     public void render() {
-        for (RenderBatch batch : batches) {
-            batch.render();
+        Profiler.begin(RENDER_SCOPE);
+        // with one core the pool only adds hand offs
+        boolean prebuilt = parallelBuild && batches.size() > 1 && NUM_CORES > 1;
+        if (prebuilt) {
+            buildParallel();
+        }
+        if (useIndirect) {
+            for (int i = 0; i < groups.size(); i++) {
+                if (prebuilt) {
+                    groups.get(i).submit();
+                } else {
+                    groups.get(i).render();
+                }
+            }
+        } else {
+            for (int i = 0; i < batches.size(); i++) {
+                RenderStats.recordBatch();
+                if (prebuilt) {
+                    batches.get(i).submit();
+                } else {
+                    batches.get(i).render();
+                }
+            }
+        }
+        // particles go on top of the sprites
+        if (particles != null) {
+            particles.render();
+        }
+        Profiler.end(RENDER_SCOPE);
+    }
+
+    /**
+     * Rebuild every batch on the pool and wait for all of them, sprites and transforms must not change meanwhile.
+     * Each batch only touches its own sprites and arrays, so they need no locking
+     */
+    void buildParallel() {
+        Profiler.begin(BUILD_SCOPE);
+        if (buildPool == null) {
+            buildPool = new ForkJoinPool(NUM_CORES);
+        }
+        // batches are only ever appended
+        for (int i = buildTasks.size(); i < batches.size(); i++) {
+            buildTasks.add(new BuildTask(batches.get(i)));
+        }
+
+        buildAll.reinitialize();
+        buildPool.invoke(buildAll);
+        Profiler.end(BUILD_SCOPE);
+    }
+
+    /**
+     * Draw every sprite again with another shader, e.g. the ids of the picking pass.
+     * Uses the vertices uploaded by the last render, particles are left out
+     * @param shader
+     */
+    public void renderPicking(Shader shader) {
+        if (useIndirect) {
+            for (int i = 0; i < groups.size(); i++) {
+                groups.get(i).draw(shader);
+            }
+        } else {
+            for (int i = 0; i < batches.size(); i++) {
+                batches.get(i).draw(shader);
+            }
         }
     }
 }
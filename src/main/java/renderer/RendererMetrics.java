@@ -0,0 +1,99 @@
+package renderer;
+
+import util.AssetPool;
+
+/**
+ * Live renderer counters for JMX, registered as mario:type=Renderer by EngineMetrics.
+ * The render thread is the only writer, it publishes the last frame's RenderStats with a few volatile stores
+ * per frame, so JConsole or a scraper reads them without a lock and the game never waits on a reader.
+ * The asset pool is summed up when read, on the reader's thread.
+ */
+public class RendererMetrics implements RendererMetricsMBean {
+    private static final RendererMetrics instance = new RendererMetrics();
+
+    private volatile int drawCalls = 0;
+    private volatile int batchesDrawn = 0;
+    private volatile int activeBatches = 0;
+    private volatile double batchFillRatio = 0;
+    private volatile int sprites = 0;
+    private volatile long bytesUploaded = 0;
+    private volatile long totalBytesUploaded = 0;
+    private volatile long gpuBytes = 0;
+
+    private RendererMetrics() {
+
+    }
+
+    public static RendererMetrics get() {
+        return instance;
+    }
+
+    /**
+     * Publish the counters of the frame that just ended, on the render thread
+     * @param renderer the current scene's renderer
+     */
+    public void endFrame(Renderer renderer) {
+        drawCalls = RenderStats.getDrawCalls();
+        batchesDrawn = RenderStats.getBatches();
+        sprites = RenderStats.getSprites();
+        bytesUploaded = RenderStats.getBytesUploaded();
+        // single writer, the read and the write can't race
+        totalBytesUploaded = totalBytesUploaded + RenderStats.getBytesUploaded();
+        activeBatches = renderer.getNumBatches();
+        batchFillRatio = renderer.getFillRatio();
+        gpuBytes = GpuResources.getTotalBytes();
+    }
+
+    @Override
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    @Override
+    public int getBatchesDrawn() {
+        return batchesDrawn;
+    }
+
+    @Override
+    public int getActiveBatches() {
+        return activeBatches;
+    }
+
+    @Override
+    public double getBatchFillRatio() {
+        return batchFillRatio;
+    }
+
+    @Override
+    public int getSprites() {
+        return sprites;
+    }
+
+    @Override
+    public long getBytesUploadedPerFrame() {
+        return bytesUploaded;
+    }
+
+    @Override
+    public long getTotalBytesUploaded() {
+        return totalBytesUploaded;
+    }
+
+    /**
+     * Everything tracked by GpuResources: textures, vertex, index and pixel buffers
+     */
+    @Override
+    public long getGpuBytes() {
+        return gpuBytes;
+    }
+
+    @Override
+    public int getAssetPoolTextures() {
+        return AssetPool.getNumTextures();
+    }
+
+    @Override
+    public long getAssetPoolTextureBytes() {
+        return AssetPool.getTextureBytes();
+    }
+}
@@ -0,0 +1,26 @@
+package renderer;
+
+/**
+ * Renderer counters of the last frame, see RendererMetrics
+ */
+public interface RendererMetricsMBean {
+    int getDrawCalls();
+
+    int getBatchesDrawn();
+
+    int getActiveBatches();
+
+    double getBatchFillRatio();
+
+    int getSprites();
+
+    long getBytesUploadedPerFrame();
+
+    long getTotalBytesUploaded();
+
+    long getGpuBytes();
+
+    int getAssetPoolTextures();
+
+    long getAssetPoolTextureBytes();
+}
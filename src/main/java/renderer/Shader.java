@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL20.glCompileShader;
@@ -23,6 +25,12 @@ public class Shader {
 
     private boolean beingUsed = false;
 
+    // reused for every matrix upload so uploading doesn't allocate
+    private final FloatBuffer mat4Buffer = BufferUtils.createFloatBuffer(16);
+    private final FloatBuffer mat3Buffer = BufferUtils.createFloatBuffer(9);
+    private final FloatBuffer mat2Buffer = BufferUtils.createFloatBuffer(4);
+    private final Map<String, Integer> uniformLocations = new HashMap<>();
+
     public Shader(String filePath) {
         this.filePath = filePath;
         try {
@@ -65,9 +73,13 @@ public class Shader {
     }
 
     /**
-     * Compile & link shaders to a shaderProgram given the source
+     * Compile & link shaders to a shaderProgram given the source, deferred to the GL thread when called from a loader
      */
     public void compile() {
+        GpuUploadQueue.submit(this::compileNow);
+    }
+
+    private void compileNow() {
         int vertexID, fragmentID;
         // compile shaders
         vertexID = glCreateShader(GL_VERTEX_SHADER);
@@ -91,6 +103,31 @@ public class Shader {
 
         // check errors
         checkShaderLinkStatus(shaderProgramID);
+
+        // the program keeps what it needs, the shader objects would otherwise live as long as the context
+        glDetachShader(shaderProgramID, vertexID);
+        glDetachShader(shaderProgramID, fragmentID);
+        glDeleteShader(vertexID);
+        glDeleteShader(fragmentID);
+        GpuResources.allocate(GpuResources.Category.SHADER, shaderProgramID, 0, this);
+    }
+
+    /**
+     * Delete the program
+     */
+    public void destroy() {
+        if (shaderProgramID == 0) return;
+
+        glDeleteProgram(shaderProgramID);
+        GpuResources.free(GpuResources.Category.SHADER, shaderProgramID);
+        shaderProgramID = 0;
+        uniformLocations.clear();
+        beingUsed = false;
+    }
+
+    @Override
+    public String toString() {
+        return "Shader " + filePath;
     }
 
     public void use() {
@@ -106,18 +143,31 @@ public class Shader {
         beingUsed = false;
     }
 
+    /**
+     * Uniform locations never change after linking, only ask GL once per name
+     * @param varName
+     * @return location, -1 if the uniform doesn't exist
+     */
+    private int getUniformLocation(String varName) {
+        Integer location = uniformLocations.get(varName);
+        if (location == null) {
+            location = glGetUniformLocation(shaderProgramID, varName);
+            uniformLocations.put(varName, location);
+        }
+        return location;
+    }
+
     /**
      * Load value into uniform matrix4 variable
      * @param varName
      * @param mat4
      */
     public void uploadMat4f(String varName, Matrix4f mat4) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         // make sure shader to use is current
         use();
-        FloatBuffer matBuffer = BufferUtils.createFloatBuffer(16);
-        mat4.get(matBuffer);
-        glUniformMatrix4fv(varLocation, false, matBuffer);
+        mat4.get(mat4Buffer);
+        glUniformMatrix4fv(varLocation, false, mat4Buffer);
     }
 
     /**
@@ -126,12 +176,11 @@ public class Shader {
      * @param mat3
      */
     public void uploadMat3f(String varName, Matrix3f mat3) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         // make sure shader to use is current
         use();
-        FloatBuffer matBuffer = BufferUtils.createFloatBuffer(9);
-        mat3.get(matBuffer);
-        glUniformMatrix3fv(varLocation, false, matBuffer);
+        mat3.get(mat3Buffer);
+        glUniformMatrix3fv(varLocation, false, mat3Buffer);
     }
 
     /**
@@ -140,12 +189,11 @@ public class Shader {
      * @param mat2
      */
     public void uploadMat2f(String varName, Matrix2f mat2) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         // make sure shader to use is current
         use();
-        FloatBuffer matBuffer = BufferUtils.createFloatBuffer(4);
-        mat2.get(matBuffer);
-        glUniformMatrix2fv(varLocation, false, matBuffer);
+        mat2.get(mat2Buffer);
+        glUniformMatrix2fv(varLocation, false, mat2Buffer);
     }
 
     /**
@@ -154,7 +202,7 @@ public class Shader {
      * @param vec
      */
     public void uploadVec4f(String varName, Vector4f vec) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform4f(varLocation, vec.x, vec.y, vec.z, vec.w);
     }
@@ -164,7 +212,7 @@ public class Shader {
      * @param vec
      */
     public void uploadVec3f(String varName, Vector3f vec) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform3f(varLocation, vec.x, vec.y, vec.z);
     }
@@ -175,7 +223,7 @@ public class Shader {
      * @param vec
      */
     public void uploadVec2f(String varName, Vector2f vec) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform2f(varLocation, vec.x, vec.y);
     }
@@ -186,7 +234,7 @@ public class Shader {
      * @param value
      */
     public void uploadFloat(String varName, float value) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform1f(varLocation, value);
     }
@@ -197,7 +245,7 @@ public class Shader {
      * @param value
      */
     public void uploadInt(String varName, int value) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform1i(varLocation, value);
     }
@@ -236,7 +284,7 @@ public class Shader {
      * @param slot
      */
     public void uploadTexture(String varName, int slot) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform1i(varLocation, slot);
     }
@@ -247,7 +295,7 @@ public class Shader {
      * @param intArray
      */
     public void uploadIntArray(String varName, int[] intArray) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
+        int varLocation = getUniformLocation(varName);
         use();
         glUniform1iv(varLocation, intArray);
     }
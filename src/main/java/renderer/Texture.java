@@ -13,22 +13,16 @@ public class Texture {
     private int texID;
 
     private int width, height;
+    // GPU memory of the pixels once uploaded, read by metrics from other threads
+    private volatile long bytes = 0;
 
+    /**
+     * Load an image, the pixels are decoded on the calling thread and uploaded on the GL thread
+     * @param filepath
+     */
     public Texture (String filepath) {
         this.filepath = filepath;
 
-        // generate texture
-        texID = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, texID);
-
-        // set params to repeat texture in ST(UV) direction
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
-
-        // pixelate for shrinking/stretching
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-
         // load image
         IntBuffer width = BufferUtils.createIntBuffer(1);
         IntBuffer height = BufferUtils.createIntBuffer(1);
@@ -41,21 +35,87 @@ public class Texture {
         if (image != null) {
             this.width = width.get(0);
             this.height = height.get(0);
-
-            if (channels.get(0) == 3) {
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, width.get(0), height.get(0), 0, GL_RGB, GL_UNSIGNED_BYTE, image) ;
-            } else if (channels.get(0) == 4) {
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width.get(0), height.get(0), 0, GL_RGBA, GL_UNSIGNED_BYTE, image) ;
-            } else {
-                assert false : "[Error][Texture] Image is neither RGB nor RGBA!";
-            }
+            int numChannels = channels.get(0);
+            GpuUploadQueue.submit(() -> upload(image, numChannels));
         } else {
             assert false : "[Error][Texture] Can not load image!";
         }
+    }
+
+    private void upload(ByteBuffer image, int channels) {
+        // generate texture
+        texID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texID);
+
+        // set params to repeat texture in ST(UV) direction
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+
+        // pixelate for shrinking/stretching
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+
+        if (channels == 3) {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, width, height, 0, GL_RGB, GL_UNSIGNED_BYTE, image) ;
+        } else if (channels == 4) {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, image) ;
+        } else {
+            assert false : "[Error][Texture] Image is neither RGB nor RGBA!";
+        }
+        bytes = (long) width * height * channels;
+        GpuResources.allocate(GpuResources.Category.TEXTURE, texID, bytes, this);
 
         stbi_image_free(image);
     }
 
+    /**
+     * Wrap a texture that already lives on the GPU
+     * @param texID
+     * @param width
+     * @param height
+     */
+    public Texture(int texID, int width, int height) {
+        this.filepath = "";
+        this.texID = texID;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Allocate an empty RGBA texture, used as a render target
+     * @param width
+     * @param height
+     */
+    public Texture(int width, int height) {
+        this.filepath = "Generated";
+        this.width = width;
+        this.height = height;
+
+        GpuUploadQueue.submit(() -> {
+            texID = glGenTextures();
+            glBindTexture(GL_TEXTURE_2D, texID);
+
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+            bytes = (long) width * height * 4;
+            GpuResources.allocate(GpuResources.Category.TEXTURE, texID, bytes, this);
+        });
+    }
+
+    /**
+     * Delete the GL texture, textures wrapping an id they didn't create leave it alone
+     */
+    public void destroy() {
+        if (texID == 0 || filepath.isEmpty()) return;
+
+        glDeleteTextures(texID);
+        GpuResources.free(GpuResources.Category.TEXTURE, texID);
+        bytes = 0;
+        texID = 0;
+    }
+
     public void bind() {
         glBindTexture(GL_TEXTURE_2D, texID);
     }
@@ -64,6 +124,17 @@ public class Texture {
         glBindTexture(GL_TEXTURE_2D, 0);
     }
 
+    public int getId() {
+        return texID;
+    }
+
+    /**
+     * GPU memory held by the pixels, 0 before the upload ran and for wrapped textures
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
     public int getWidth() {
         return width;
     }
@@ -71,4 +142,9 @@ public class Texture {
     public int getHeight() {
         return height;
     }
+
+    @Override
+    public String toString() {
+        return "Texture " + filepath;
+    }
 }
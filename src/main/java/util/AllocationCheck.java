@@ -0,0 +1,110 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures heap allocated by the render thread over two windows of steady state frames.
+ * Any allocation in the update/render loop shows up here, so the frame loop can be held to zero.
+ * The check fails if either window allocated, an allocation on a rarely taken branch only lands in one of them.
+ * The JVM allocates the first time a path is linked or recompiled, the warmup has to be long enough to get past that.
+ * Work that allocates by definition, like a scene spawning new game objects, is left out with beginExcluded/endExcluded.
+ */
+public class AllocationCheck {
+    // the check running on the render thread, null when none is
+    private static AllocationCheck current = null;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final long warmupFrames;
+    private final long windowFrames;
+
+    private long frame = 0;
+    private long startBytes;
+    // bytes the measurement itself allocates, subtracted from the result
+    private long overhead;
+    // bytes allocated in excluded sections of the current window
+    private long excluded;
+    private long excludedStart = -1;
+    private final long[] allocated = {-1, -1};
+
+    /**
+     * @param warmupFrames frames to skip while classes load and the JIT settles
+     * @param measuredFrames frames to measure, split into two windows
+     */
+    public AllocationCheck(long warmupFrames, long measuredFrames) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.warmupFrames = warmupFrames;
+        this.windowFrames = Math.max(1, measuredFrames / 2);
+        assert threads.isThreadAllocatedMemorySupported() : "Error: JVM can not measure thread allocations";
+        current = this;
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Stop counting allocations until endExcluded, a no-op when no check is running
+     */
+    public static void beginExcluded() {
+        AllocationCheck check = current;
+        if (check == null || check.excludedStart >= 0) return;
+
+        check.excludedStart = check.allocatedBytes();
+    }
+
+    public static void endExcluded() {
+        AllocationCheck check = current;
+        if (check == null || check.excludedStart < 0) return;
+
+        // the second reading is part of the excluded section, its own cost with it
+        check.excluded += check.allocatedBytes() - check.excludedStart + check.overhead;
+        check.excludedStart = -1;
+    }
+
+    /**
+     * Call at the end of every frame, on the render thread
+     */
+    public void endFrame() {
+        if (frame == warmupFrames) {
+            long a = allocatedBytes();
+            long b = allocatedBytes();
+            overhead = b - a;
+            startWindow();
+        } else if (frame == warmupFrames + windowFrames) {
+            allocated[0] = endWindow();
+            startWindow();
+        } else if (frame == warmupFrames + 2 * windowFrames) {
+            allocated[1] = endWindow();
+            System.out.println("[AllocationCheck] " + allocated[0] + " and " + allocated[1]
+                    + " bytes allocated over two windows of " + windowFrames + " frames");
+        }
+        frame++;
+    }
+
+    private void startWindow() {
+        excluded = 0;
+        startBytes = allocatedBytes();
+    }
+
+    private long endWindow() {
+        return Math.max(0, allocatedBytes() - startBytes - overhead - excluded);
+    }
+
+    public boolean isDone() {
+        return allocated[1] >= 0;
+    }
+
+    /**
+     * @return true if neither window allocated
+     */
+    public boolean passed() {
+        return allocated[0] == 0 && allocated[1] == 0;
+    }
+
+    /**
+     * Bytes allocated over both windows
+     */
+    public long getAllocated() {
+        return allocated[0] + allocated[1];
+    }
+}
@@ -1,47 +1,46 @@
 package util;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import components.Spritesheet;
+import renderer.FontAtlas;
 import renderer.Shader;
 import renderer.Texture;
 
+/**
+ * Assets shared by every scene, safe to use from a scene loading thread.
+ * GL work of assets created off the GL thread is queued on the GpuUploadQueue.
+ * The pool owns its textures, shaders and fonts, they stay on the GPU until clear is called.
+ */
 public class AssetPool {
-    private static Map<String, Shader> shaders = new HashMap<>();
-    private static Map<String, Texture> textures = new HashMap<>();
-    private static Map<String, Spritesheet> spritesheets = new HashMap<>();
+    private static Map<String, Shader> shaders = new ConcurrentHashMap<>();
+    private static Map<String, Texture> textures = new ConcurrentHashMap<>();
+    private static Map<String, Spritesheet> spritesheets = new ConcurrentHashMap<>();
+    private static Map<String, FontAtlas> fonts = new ConcurrentHashMap<>();
 
     public static Shader getShader(String resourceName) {
         File file = new File(resourceName);
 
-        if (shaders.containsKey(file.getAbsolutePath())) {
-            return shaders.get(file.getAbsolutePath());
-        }
-        Shader shader = new Shader(resourceName);
-        shader.compile();
-        AssetPool.shaders.put(file.getAbsolutePath(), shader);
-        return shader;
+        // computeIfAbsent so two threads asking at once don't both load it
+        return shaders.computeIfAbsent(file.getAbsolutePath(), path -> {
+            Shader shader = new Shader(resourceName);
+            shader.compile();
+            return shader;
+        });
     }
 
     public static Texture getTexture(String resourceName) {
         File file = new File(resourceName);
 
-        if (textures.containsKey(file.getAbsolutePath())) {
-            return textures.get(file.getAbsolutePath());
-        }
-        Texture texture = new Texture(resourceName);
-        AssetPool.textures.put(file.getAbsolutePath(), texture);
-        return texture;
+        return textures.computeIfAbsent(file.getAbsolutePath(), path -> new Texture(resourceName));
     }
 
     public static void addSpritesheet(String resourceName, Spritesheet spritesheet) {
         File file = new File(resourceName);
 
-        if (!AssetPool.spritesheets.containsKey(file.getAbsolutePath())) {
-            AssetPool.spritesheets.put(file.getAbsolutePath(), spritesheet);
-        }
+        AssetPool.spritesheets.putIfAbsent(file.getAbsolutePath(), spritesheet);
     }
 
     public static Spritesheet getSpritesheet(String resourceName) {
@@ -53,4 +52,52 @@ public class AssetPool {
 
         return AssetPool.spritesheets.getOrDefault(file.getAbsolutePath(), null);
     }
+
+    /**
+     * Font atlas for a font file at a pixel height, each size gets its own atlas
+     * @param resourceName
+     * @param pixelHeight
+     */
+    public static FontAtlas getFont(String resourceName, int pixelHeight) {
+        String key = new File(resourceName).getAbsolutePath() + "@" + pixelHeight;
+
+        return fonts.computeIfAbsent(key, k -> new FontAtlas(resourceName, pixelHeight));
+    }
+
+    /**
+     * Number of pooled textures, safe from any thread
+     */
+    public static int getNumTextures() {
+        return textures.size();
+    }
+
+    /**
+     * GPU memory of the pooled textures uploaded so far, safe from any thread
+     */
+    public static long getTextureBytes() {
+        long bytes = 0;
+        for (Texture texture : textures.values()) {
+            bytes += texture.getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Destroy every pooled asset, on the GL thread once nothing uses them anymore
+     */
+    public static void clear() {
+        for (Shader shader : shaders.values()) {
+            shader.destroy();
+        }
+        for (Texture texture : textures.values()) {
+            texture.destroy();
+        }
+        for (FontAtlas font : fonts.values()) {
+            font.destroy();
+        }
+        shaders.clear();
+        textures.clear();
+        spritesheets.clear();
+        fonts.clear();
+    }
 }
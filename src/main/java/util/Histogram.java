@@ -0,0 +1,103 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed bucket histogram of durations, recording never allocates
+ */
+public class Histogram {
+    private final long bucketWidth;
+    private final long[] buckets;
+    // samples past the last bucket
+    private long overflow = 0;
+
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * @param bucketWidth width of a bucket in nanoseconds
+     * @param numBuckets
+     */
+    public Histogram(long bucketWidth, int numBuckets) {
+        this.bucketWidth = bucketWidth;
+        this.buckets = new long[numBuckets];
+    }
+
+    public void record(long value) {
+        long bucket = value / bucketWidth;
+        if (bucket < buckets.length) {
+            buckets[(int) Math.max(0, bucket)]++;
+        } else {
+            overflow++;
+        }
+
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile
+     * @param percentile between 0 and 1
+     * @return value in nanoseconds, the max if it falls past the last bucket
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return Math.min(max, (i + 1) * bucketWidth);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(buckets, 0);
+        overflow = 0;
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    public int getNumBuckets() {
+        return buckets.length;
+    }
+
+    public long getBucket(int index) {
+        return buckets[index];
+    }
+
+    public long getOverflow() {
+        return overflow;
+    }
+}
@@ -0,0 +1,112 @@
+package util;
+
+/**
+ * Map from int keys to objects with open addressing, so neither put, get nor remove box the key.
+ * It only allocates when it grows, removing never does
+ * @param <T>
+ */
+public class IntMap<T> {
+    private int[] keys;
+    // null marks a free slot
+    private Object[] values;
+    private int size = 0;
+
+    public IntMap() {
+        this(16);
+    }
+
+    public IntMap(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+        keys = new int[slots];
+        values = new Object[slots];
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @param key
+     * @param value not null
+     */
+    public void put(int key, T value) {
+        assert value != null : "Error: IntMap can not hold null values";
+        // kept at most half full so probe runs stay short
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * @return null if the key isn't in the map
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return (T) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public void remove(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) return;
+
+        // shift the rest of the probe run back so no lookup stops at the hole
+        int hole = i;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next], mask);
+            // the entry can fill the hole unless its home lies cyclically after the hole, up to the entry itself
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (T) oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Frame profiler with named nested scopes.
+ * Scopes are registered once and referred to by id, so begin/end never allocate.
+ * Only meant to be driven from the render thread, scopes can be registered from any thread.
+ */
+public class Profiler {
+    private static final int MAX_SCOPES = 128;
+    private static final int MAX_DEPTH = 32;
+    // frames of per scope totals kept for percentile summaries
+    private static final int HISTORY = 256;
+    // raw events kept for trace export, must be a power of two
+    private static final int MAX_EVENTS = 1 << 16;
+
+    public static final int CPU = 1;
+    public static final int GPU = 2;
+    // events recorded without an argument
+    public static final int NO_ARG = Integer.MIN_VALUE;
+
+    public static boolean enabled = false;
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+    private static final String[] names = new String[MAX_SCOPES];
+    // name of the per event argument shown in the trace, null for scopes without one
+    private static final String[] argNames = new String[MAX_SCOPES];
+    private static int numScopes = 0;
+
+    // open scopes
+    private static final int[] stack = new int[MAX_DEPTH];
+    private static final long[] stackStart = new long[MAX_DEPTH];
+    private static int depth = 0;
+
+    // ring of finished events
+    private static final int[] eventScope = new int[MAX_EVENTS];
+    private static final int[] eventLane = new int[MAX_EVENTS];
+    private static final int[] eventArg = new int[MAX_EVENTS];
+    private static final long[] eventStart = new long[MAX_EVENTS];
+    private static final long[] eventDuration = new long[MAX_EVENTS];
+    private static long numEvents = 0;
+
+    // time spent in each scope during the current frame, and the last HISTORY frames of it
+    private static final long[] frameTotal = new long[MAX_SCOPES];
+    private static final boolean[] ranThisFrame = new boolean[MAX_SCOPES];
+    private static final long[][] history = new long[MAX_SCOPES][HISTORY];
+    private static final int[] historySize = new int[MAX_SCOPES];
+    private static final int[] historyNext = new int[MAX_SCOPES];
+    private static final long[] sortBuffer = new long[HISTORY];
+
+    static {
+        // scope 0 absorbs registrations past MAX_SCOPES
+        scope("(overflow)");
+    }
+
+    /**
+     * Register a scope name, registering the same name twice returns the same id
+     * @param name
+     * @return id to pass to begin/end
+     */
+    public static int scope(String name) {
+        return scope(name, null);
+    }
+
+    /**
+     * Register a scope shared by several instances, e.g. every render batch. Their time adds up in the summary,
+     * and each event keeps the argument it was ended with so the trace still tells the instances apart
+     * @param name
+     * @param argName label of the argument passed to end(scope, arg) in the trace
+     * @return id to pass to begin/end
+     */
+    public static synchronized int scope(String name, String argName) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (numScopes == MAX_SCOPES) {
+            assert false : "[Profiler] Too many scopes, can not register " + name;
+            return 0;
+        }
+
+        names[numScopes] = name;
+        argNames[numScopes] = argName;
+        ids.put(name, numScopes);
+        return numScopes++;
+    }
+
+    public static void begin(int scope) {
+        if (!enabled) return;
+        if (depth == MAX_DEPTH) {
+            assert false : "[Profiler] Scopes nested too deep";
+            return;
+        }
+
+        stack[depth] = scope;
+        stackStart[depth] = System.nanoTime();
+        depth++;
+    }
+
+    public static void end(int scope) {
+        end(scope, NO_ARG);
+    }
+
+    /**
+     * @param scope
+     * @param arg shown in the trace under the scope's argument name, e.g. which batch this was
+     */
+    public static void end(int scope, int arg) {
+        if (!enabled || depth == 0) return;
+
+        long now = System.nanoTime();
+        depth--;
+        assert stack[depth] == scope : "[Profiler] Ended " + names[scope] + " inside " + names[stack[depth]];
+
+        record(scope, CPU, arg, stackStart[depth], now - stackStart[depth]);
+        frameTotal[scope] += now - stackStart[depth];
+        ranThisFrame[scope] = true;
+    }
+
+    /**
+     * GPU timings arrive a few frames late, they count toward the frame they arrive in
+     * @param scope
+     * @param arg shown in the trace, NO_ARG for none
+     * @param start cpu time the query was issued at, used to place the event in the trace
+     * @param duration gpu time in nanoseconds
+     */
+    public static void recordGpu(int scope, int arg, long start, long duration) {
+        if (!enabled) return;
+
+        record(scope, GPU, arg, start, duration);
+        frameTotal[scope] += duration;
+        ranThisFrame[scope] = true;
+    }
+
+    /**
+     * Close the frame, moving per scope totals into the history
+     */
+    public static void endFrame() {
+        if (!enabled) return;
+
+        for (int i = 0; i < numScopes; i++) {
+            if (ranThisFrame[i]) {
+                pushHistory(i, frameTotal[i]);
+                frameTotal[i] = 0;
+                ranThisFrame[i] = false;
+            }
+        }
+    }
+
+    private static void record(int scope, int lane, int arg, long start, long duration) {
+        int slot = (int) (numEvents & (MAX_EVENTS - 1));
+        eventScope[slot] = scope;
+        eventLane[slot] = lane;
+        eventArg[slot] = arg;
+        eventStart[slot] = start;
+        eventDuration[slot] = duration;
+        numEvents++;
+    }
+
+    private static void pushHistory(int scope, long value) {
+        history[scope][historyNext[scope]] = value;
+        historyNext[scope] = (historyNext[scope] + 1) % HISTORY;
+        historySize[scope] = Math.min(historySize[scope] + 1, HISTORY);
+    }
+
+    /**
+     * Percentile of the per frame time spent in a scope over the recorded history
+     * @param scope
+     * @param percentile between 0 and 1
+     * @return time in nanoseconds, 0 if the scope never ran
+     */
+    public static long getPercentile(int scope, double percentile) {
+        int size = historySize[scope];
+        if (size == 0) {
+            return 0;
+        }
+
+        System.arraycopy(history[scope], 0, sortBuffer, 0, size);
+        Arrays.sort(sortBuffer, 0, size);
+        int index = (int) Math.ceil(percentile * size) - 1;
+        return sortBuffer[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    public static void printSummary() {
+        System.out.println("[Profiler] scope: p50 / p99 (ms)");
+        for (int i = 1; i < numScopes; i++) {
+            if (historySize[i] == 0) continue;
+            System.out.printf("    %-32s %8.3f / %8.3f%n", names[i],
+                    getPercentile(i, 0.5) * 1E-6, getPercentile(i, 0.99) * 1E-6);
+        }
+    }
+
+    /**
+     * Write the recorded events in the Chrome trace event format, viewable in chrome://tracing or Perfetto
+     * @param filePath
+     */
+    public static void exportChromeTrace(String filePath) {
+        long first = Math.max(0, numEvents - MAX_EVENTS);
+        long origin = Long.MAX_VALUE;
+        for (long e = first; e < numEvents; e++) {
+            origin = Math.min(origin, eventStart[(int) (e & (MAX_EVENTS - 1))]);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filePath))) {
+            writer.write("{\"traceEvents\":[\n");
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + CPU + ",\"args\":{\"name\":\"CPU\"}},\n");
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + GPU + ",\"args\":{\"name\":\"GPU\"}}");
+            for (long e = first; e < numEvents; e++) {
+                int slot = (int) (e & (MAX_EVENTS - 1));
+                writer.write(",\n{\"name\":\"");
+                writer.write(names[eventScope[slot]].replace("\\", "\\\\").replace("\"", "\\\""));
+                writer.write("\",\"ph\":\"X\",\"pid\":1,\"tid\":" + eventLane[slot]);
+                writer.write(",\"ts\":" + (eventStart[slot] - origin) / 1000.0);
+                writer.write(",\"dur\":" + eventDuration[slot] / 1000.0);
+                String argName = argNames[eventScope[slot]];
+                if (argName != null && eventArg[slot] != NO_ARG) {
+                    writer.write(",\"args\":{\"" + argName + "\":" + eventArg[slot] + "}");
+                }
+                writer.write("}");
+            }
+            writer.write("\n]}\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+            assert false : "Error: can not write trace file: " + filePath;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.lwjgl.system.MemoryUtil.memAllocShort;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Voice stealing and music streaming against a real OpenAL device.
+ * Gradle runs the tests with ALSOFT_DRIVERS=null, OpenAL Soft's null backend mixes in real time
+ * without any sound hardware, so sources finish and queues drain like they would on speakers.
+ */
+public class AudioTest {
+    private static final int SAMPLE_RATE = 44100;
+    // sleep between stream updates, like the AudioManager's music thread
+    private static final long STREAM_INTERVAL_MS = 10;
+
+    private final List<ShortBuffer> tones = new ArrayList<>();
+    private final List<MusicStream> streams = new ArrayList<>();
+    private SourcePool pool;
+    private Sound sound;
+
+    @BeforeEach
+    void openDevice() {
+        assumeTrue(AudioManager.get().init(null), "no OpenAL device, run with ALSOFT_DRIVERS=null");
+        // long enough that every voice is still busy when the next one is asked for
+        sound = new Sound("tone", tone(2.0f), 1, SAMPLE_RATE);
+    }
+
+    @AfterEach
+    void closeDevice() {
+        for (int i = 0; i < streams.size(); i++) {
+            streams.get(i).destroy();
+        }
+        streams.clear();
+        if (pool != null) {
+            pool.destroy();
+            pool = null;
+        }
+        if (sound != null) {
+            sound.destroy();
+            sound = null;
+        }
+        AudioManager.get().destroy();
+        for (int i = 0; i < tones.size(); i++) {
+            memFree(tones.get(i));
+        }
+        tones.clear();
+    }
+
+    /**
+     * Mono 440 Hz sine
+     */
+    private ShortBuffer tone(float seconds) {
+        int frames = (int) (seconds * SAMPLE_RATE);
+        ShortBuffer pcm = memAllocShort(frames);
+        for (int i = 0; i < frames; i++) {
+            pcm.put(i, (short) (Math.sin(i * 2 * Math.PI * 440 / SAMPLE_RATE) * 8000));
+        }
+        tones.add(pcm);
+        return pcm;
+    }
+
+    private MusicStream stream(float seconds, boolean loop) {
+        MusicStream stream = new MusicStream("tone", tone(seconds), 1, SAMPLE_RATE, loop);
+        streams.add(stream);
+        return stream;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Update a stream every few ms for a while, or until it is finished
+     * @return ms it ran for
+     */
+    private static long feed(MusicStream stream, long ms) {
+        long start = System.nanoTime();
+        long elapsed = 0;
+        while (elapsed < ms && !stream.isFinished()) {
+            stream.update();
+            sleep(STREAM_INTERVAL_MS);
+            elapsed = (System.nanoTime() - start) / 1000000;
+        }
+        return elapsed;
+    }
+
+    @Test
+    void playsOnFreeVoicesThenStealsTheOldest() {
+        pool = new SourcePool(2);
+        assertEquals(0, pool.play(sound, 1.0f, 1.0f, 0));
+        assertEquals(1, pool.play(sound, 1.0f, 1.0f, 0));
+        assertEquals(0, pool.getStolen());
+
+        assertEquals(0, pool.play(sound, 1.0f, 1.0f, 0));
+        assertEquals(1, pool.play(sound, 1.0f, 1.0f, 0));
+        assertEquals(2, pool.getStolen());
+        assertEquals(0, pool.getDropped());
+        assertEquals(4, pool.getPlays());
+    }
+
+    @Test
+    void neverStealsFromAMoreImportantSound() {
+        pool = new SourcePool(2);
+        pool.play(sound, 1.0f, 1.0f, 5);
+        pool.play(sound, 1.0f, 1.0f, 5);
+
+        assertEquals(-1, pool.play(sound, 1.0f, 1.0f, 1));
+        assertEquals(1, pool.getDropped());
+        assertEquals(0, pool.getStolen());
+
+        // equal priority takes the oldest, higher takes the oldest of the least important
+        assertEquals(0, pool.play(sound, 1.0f, 1.0f, 5));
+        assertEquals(1, pool.play(sound, 1.0f, 1.0f, 9));
+        assertEquals(0, pool.play(sound, 1.0f, 1.0f, 5));
+        assertEquals(-1, pool.play(sound, 1.0f, 1.0f, 4));
+        assertEquals(3, pool.getStolen());
+        assertEquals(2, pool.getDropped());
+        // dropped plays don't count
+        assertEquals(5, pool.getPlays());
+    }
+
+    @Test
+    void aStoppedVoiceIsReusedWithoutStealing() {
+        pool = new SourcePool(2);
+        pool.play(sound, 1.0f, 1.0f, 0);
+        pool.play(sound, 1.0f, 1.0f, 9);
+        pool.stop(1);
+
+        assertEquals(1, pool.play(sound, 1.0f, 1.0f, 0));
+        assertEquals(0, pool.getStolen());
+    }
+
+    @Test
+    void aShortSoundFreesItsVoice() {
+        pool = new SourcePool(1);
+        Sound blip = new Sound("blip", tone(0.05f), 1, SAMPLE_RATE);
+        assertEquals(0, pool.play(blip, 1.0f, 1.0f, 9));
+        sleep(300);
+
+        // the blip is over, a less important sound gets the voice without stealing
+        assertEquals(0, pool.play(sound, 1.0f, 1.0f, 0));
+        assertEquals(0, pool.getStolen());
+        assertEquals(0, pool.getDropped());
+        pool.stopAll();
+        blip.destroy();
+    }
+
+    @Test
+    void managerIgnoresMissingSounds() {
+        assertEquals(-1, AudioManager.get().play(null, 1.0f, 1.0f, 0));
+        AudioManager.get().stop(-1);
+    }
+
+    @Test
+    void streamRefillsItsQueueToTheEndOfTheTrack() {
+        // several times longer than the queue, it only plays through if buffers are refilled
+        MusicStream stream = stream(1.5f, false);
+        stream.start();
+        assertTrue(stream.isPlaying());
+
+        long elapsed = feed(stream, 5000);
+        assertTrue(stream.isFinished(), "still playing after " + elapsed + " ms");
+        assertTrue(elapsed >= 1300, "finished after " + elapsed + " ms");
+        assertEquals(0, stream.getUnderruns());
+    }
+
+    @Test
+    void aStalledStreamCountsAnUnderrunAndRestarts() {
+        MusicStream stream = stream(0.5f, true);
+        stream.start();
+        feed(stream, 200);
+        assertEquals(0, stream.getUnderruns());
+
+        // longer than the whole queue, the source plays every buffer and stops
+        sleep(800);
+        assertFalse(stream.isPlaying());
+        stream.update();
+        assertEquals(1, stream.getUnderruns());
+        assertTrue(stream.isPlaying());
+
+        // looping around the end of the track keeps it fed
+        feed(stream, 1000);
+        assertEquals(1, stream.getUnderruns());
+        assertFalse(stream.isFinished());
+    }
+
+    @Test
+    void aPausedStreamIsNotAnUnderrun() {
+        MusicStream stream = stream(0.5f, true);
+        stream.start();
+        stream.pause();
+        sleep(800);
+        stream.update();
+        assertEquals(0, stream.getUnderruns());
+        assertFalse(stream.isPlaying());
+
+        stream.resume();
+        feed(stream, 300);
+        assertTrue(stream.isPlaying());
+        assertEquals(0, stream.getUnderruns());
+    }
+}
@@ -0,0 +1,195 @@
+package engine;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The regions pick which objects run, the scheduler's phase order has to hold for the ones that do
+ */
+public class ActivityRegionsTest {
+    private static final float DT = 1.0f / 60.0f;
+    // cells of 100, everything within 300 of the center of the view every frame, out to 1000 every 4th
+    private static final float CELL = 100, ACTIVE = 300, TICKED = 1000;
+    private static final int TICK_INTERVAL = 4;
+
+    private static class TestScene extends Scene {
+        @Override
+        public void init() {
+            this.camera = new Camera(new Vector2f());
+        }
+
+        @Override
+        public void update(float dt) {
+
+        }
+    }
+
+    // every update in the order it ran
+    private final List<Recorder> log = new ArrayList<>();
+    private TestScene scene;
+    private Vector2f center;
+
+    private class Recorder extends Component implements Tickable {
+        final UpdatePhase phase;
+        final List<Float> dts = new ArrayList<>();
+
+        Recorder(UpdatePhase phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public UpdatePhase getUpdatePhase() {
+            return phase;
+        }
+
+        @Override
+        public void update(float dt) {
+            log.add(this);
+            dts.add(dt);
+        }
+    }
+
+    private class LateRecorder extends Recorder {
+        LateRecorder() {
+            super(UpdatePhase.LATE_UPDATE);
+        }
+    }
+
+    @BeforeEach
+    void createScene() {
+        scene = new TestScene();
+        scene.init();
+        scene.setActivityRegions(new ActivityRegions(CELL, ACTIVE, TICKED, TICK_INTERVAL));
+        Camera camera = scene.camera();
+        center = new Vector2f(camera.getProjectionWidth() / 2, camera.getProjectionHeight() / 2);
+    }
+
+    private Recorder spawn(float distance, Recorder recorder) {
+        GameObject go = new GameObject("obj", new Transform(new Vector2f(center.x + distance, center.y)));
+        go.addComponent(recorder);
+        scene.addGameObjectToScene(go);
+        return recorder;
+    }
+
+    @Test
+    void lateComponentsRunAfterEveryUpdateOfTheFrame() {
+        // late ones added first, and on objects the regions see before the others
+        List<Recorder> late = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            late.add(spawn(i * 50, new LateRecorder()));
+            spawn(i * 50 + 10, new Recorder(UpdatePhase.UPDATE));
+            spawn(-i * 50, new Recorder(UpdatePhase.PRE_UPDATE));
+        }
+        GameObject grid = new GameObject("grid", new Transform(new Vector2f(center.x + 5000, center.y)));
+        Recorder gridRecorder = new LateRecorder();
+        grid.addComponent(gridRecorder);
+        scene.addGameObjectToScene(grid);
+        scene.getActivityRegions().keepAwake(grid);
+        late.add(gridRecorder);
+
+        scene.updateGameObjects(DT);
+
+        assertEquals(16, log.size());
+        int lastPhase = 0;
+        for (int i = 0; i < log.size(); i++) {
+            int phase = log.get(i).phase.ordinal();
+            assertTrue(phase >= lastPhase, "a " + log.get(i).phase + " component ran after a later phase");
+            lastPhase = phase;
+        }
+        // grouped by class within the phase, the awake grid with the other late ones
+        for (int i = 0; i < late.size(); i++) {
+            assertEquals(LateRecorder.class, log.get(log.size() - 1 - i).getClass());
+        }
+    }
+
+    @Test
+    void sleepingObjectsDontRunAndTickedOnesCatchUp() {
+        Recorder active = spawn(0, new Recorder(UpdatePhase.UPDATE));
+        Recorder ticked = spawn(600, new Recorder(UpdatePhase.UPDATE));
+        Recorder asleep = spawn(5000, new Recorder(UpdatePhase.UPDATE));
+
+        for (int frame = 0; frame < 4 * TICK_INTERVAL; frame++) {
+            scene.updateGameObjects(DT);
+        }
+
+        assertEquals(4 * TICK_INTERVAL, active.dts.size());
+        assertEquals(4, ticked.dts.size());
+        assertTrue(asleep.dts.isEmpty());
+        // after its first update a ticked object gets the frames it missed
+        for (int i = 1; i < ticked.dts.size(); i++) {
+            assertEquals(TICK_INTERVAL * DT, ticked.dts.get(i), 1e-4f);
+        }
+        assertEquals(DT, active.dts.get(active.dts.size() - 1), 1e-6f);
+    }
+
+    @Test
+    void objectsThatMoveThemselvesAreRefreshedAndRebinned() {
+        GameObject go = new GameObject("mover", new Transform(new Vector2f(center)));
+        // a cell and a half away from its parent, in a cell of its own but still in the active square
+        GameObject child = new GameObject("child", new Transform(new Vector2f(CELL * 1.5f, 4)));
+        // moves right by 2000 in its first update, out of the regions
+        class Jump extends Component implements Tickable {
+            int runs = 0;
+
+            @Override
+            public void update(float dt) {
+                gameObject.transform.position.x += 2000;
+                runs++;
+            }
+        }
+        Jump jump = new Jump();
+        go.addComponent(jump);
+        scene.addGameObjectToScene(go);
+        go.addChild(child);
+        Recorder dragged = new Recorder(UpdatePhase.UPDATE);
+        child.addComponent(dragged);
+        scene.addGameObjectToScene(child);
+        assertNotEquals(go.cellX, child.cellX);
+
+        scene.updateGameObjects(DT);
+        assertEquals(center.x + 2000 + CELL * 1.5f, child.transform.getWorldPosition().x, 1e-3f);
+        assertEquals((int) Math.floor(child.transform.getWorldPosition().x / CELL), child.cellX);
+
+        // both are in their new cells, far from the camera, and sleep from now on
+        scene.updateGameObjects(DT);
+        assertEquals(1, jump.runs);
+        assertEquals(1, dragged.dts.size());
+    }
+
+    @Test
+    void reparentingRebinsTheSubtree() {
+        GameObject parent = new GameObject("parent", new Transform(new Vector2f(center.x + 2000, center.y)));
+        GameObject child = new GameObject("child", new Transform(new Vector2f(center)));
+        Recorder recorder = new Recorder(UpdatePhase.UPDATE);
+        child.addComponent(recorder);
+        scene.addGameObjectToScene(parent);
+        scene.addGameObjectToScene(child);
+        scene.updateGameObjects(DT);
+
+        // its world position moves out of the regions with the parent
+        parent.addChild(child);
+        scene.updateGameObjects(DT);
+
+        assertEquals(1, recorder.dts.size());
+    }
+
+    @Test
+    void removedObjectsStopRunning() {
+        Recorder kept = spawn(0, new Recorder(UpdatePhase.UPDATE));
+        Recorder removed = spawn(20, new Recorder(UpdatePhase.UPDATE));
+        scene.updateGameObjects(DT);
+
+        scene.removeGameObject(removed.gameObject);
+        scene.updateGameObjects(DT);
+        scene.updateGameObjects(DT);
+
+        assertEquals(3, kept.dts.size());
+        assertEquals(1, removed.dts.size());
+    }
+}
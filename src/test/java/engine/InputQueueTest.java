@@ -0,0 +1,83 @@
+package engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
+import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
+
+/**
+ * The queue is a process wide singleton, every test starts by draining what earlier ones left behind
+ */
+public class InputQueueTest {
+    private static final int CAPACITY = 1024;
+    private static final int KEY_A = 65;
+
+    private final InputQueue queue = InputQueue.get();
+
+    @BeforeEach
+    void drain() {
+        queue.dispatch();
+        // the frame after a drain starts with no edges left over
+        queue.dispatch();
+    }
+
+    @Test
+    void wrapsAroundWithoutLosingEvents() {
+        // several times around the ring, in frames that don't line up with its end
+        int frameSize = 300;
+        for (int frame = 0; frame < 10; frame++) {
+            for (int i = 0; i < frameSize; i++) {
+                assertTrue(queue.push(InputQueue.CURSOR, 0, 0, frame * frameSize + i, -i));
+            }
+            assertEquals(frameSize, queue.dispatch());
+            // the last event of the frame wins
+            assertEquals(frame * frameSize + frameSize - 1, MouseListener.getX(), 0.0f);
+        }
+        assertEquals(0, queue.dispatch());
+    }
+
+    @Test
+    void dropsEventsOnceFullAndRecovers() {
+        long droppedBefore = queue.getDropped();
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(queue.push(InputQueue.SCROLL, 0, 0, 0, 1), "slot " + i + " should be free");
+        }
+        assertFalse(queue.push(InputQueue.SCROLL, 0, 0, 0, 1));
+        assertFalse(queue.push(InputQueue.SCROLL, 0, 0, 0, 1));
+        assertEquals(droppedBefore + 2, queue.getDropped());
+
+        assertEquals(CAPACITY, queue.dispatch());
+        assertTrue(queue.push(InputQueue.SCROLL, 0, 0, 0, 1));
+        assertEquals(1, queue.dispatch());
+        assertEquals(droppedBefore + 2, queue.getDropped());
+    }
+
+    @Test
+    void pressAndReleaseWithinOneFrameRegisterBothEdges() {
+        queue.push(InputQueue.KEY, KEY_A, GLFW_PRESS, 0, 0);
+        queue.push(InputQueue.KEY, KEY_A, GLFW_RELEASE, 0, 0);
+        assertEquals(2, queue.dispatch());
+
+        assertTrue(KeyListener.isKeyBeginPress(KEY_A));
+        assertTrue(KeyListener.isKeyEndPress(KEY_A));
+        assertFalse(KeyListener.isKeyPressed(KEY_A));
+
+        // edges only last the frame they happened in
+        queue.dispatch();
+        assertFalse(KeyListener.isKeyBeginPress(KEY_A));
+        assertFalse(KeyListener.isKeyEndPress(KEY_A));
+    }
+
+    @Test
+    void mouseButtonClickWithinOneFrameRegistersBothEdges() {
+        queue.push(InputQueue.MOUSE_BUTTON, 0, GLFW_PRESS, 0, 0);
+        queue.push(InputQueue.MOUSE_BUTTON, 0, GLFW_RELEASE, 0, 0);
+        queue.dispatch();
+
+        assertTrue(MouseListener.mouseButtonBeginPress(0));
+        assertTrue(MouseListener.mouseButtonEndPress(0));
+        assertFalse(MouseListener.mouseButtonDown(0));
+    }
+}
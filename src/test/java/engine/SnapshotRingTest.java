@@ -0,0 +1,214 @@
+package engine;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restoring any frame has to give back the scene byte for byte as it was captured
+ */
+public class SnapshotRingTest {
+    private static final int NUM_OBJECTS = 20;
+    // floats per object, large enough that unchanged stretches need multi byte run lengths
+    private static final int PAYLOAD = 2000;
+
+    private static class TestScene extends Scene {
+        @Override
+        public void update(float dt) {
+
+        }
+    }
+
+    private static class Payload extends Component {
+        final float[] values = new float[PAYLOAD];
+
+        @Override
+        public void save(ByteBuffer out) {
+            for (int i = 0; i < values.length; i++) {
+                out.putFloat(values[i]);
+            }
+        }
+
+        @Override
+        public void load(ByteBuffer in) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.getFloat();
+            }
+        }
+    }
+
+    private TestScene scene;
+    private final List<Payload> payloads = new ArrayList<>();
+    private final Random random = new Random(7);
+
+    @BeforeEach
+    void createScene() {
+        scene = new TestScene();
+        for (int i = 0; i < NUM_OBJECTS; i++) {
+            GameObject go = new GameObject("obj" + i, new Transform(new Vector2f(i * 32, 0), new Vector2f(32, 32)));
+            Payload payload = new Payload();
+            go.addComponent(payload);
+            payloads.add(payload);
+            scene.addGameObjectToScene(go);
+        }
+    }
+
+    private byte[] state() {
+        ByteBuffer state = WorldState.write(scene, null);
+        return Arrays.copyOf(state.array(), state.limit());
+    }
+
+    /**
+     * Change the scene the way a frame would: a few objects move, a few scattered values and
+     * one stretch of values longer than a single byte run length change
+     */
+    private void step() {
+        for (int i = 0; i < 3; i++) {
+            scene.gameObjects.get(random.nextInt(NUM_OBJECTS)).transform.position.x += random.nextFloat();
+        }
+        for (int i = 0; i < 5; i++) {
+            payloads.get(random.nextInt(NUM_OBJECTS)).values[random.nextInt(PAYLOAD)] = random.nextFloat();
+        }
+        float[] values = payloads.get(random.nextInt(NUM_OBJECTS)).values;
+        int start = random.nextInt(PAYLOAD - 100);
+        for (int i = start; i < start + 100; i++) {
+            values[i] = random.nextFloat();
+        }
+    }
+
+    /**
+     * Capture a frame and remember its state
+     */
+    private void captureFrame(SnapshotRing ring, List<byte[]> history) {
+        step();
+        ring.capture();
+        history.add(state());
+    }
+
+    @Test
+    void restoresEveryFrameExactly() {
+        SnapshotRing ring = new SnapshotRing(scene, 40, 10);
+        List<byte[]> history = new ArrayList<>();
+        for (int i = 0; i < 35; i++) {
+            captureFrame(ring, history);
+        }
+
+        for (int framesAgo = 0; framesAgo < 35; framesAgo++) {
+            assertTrue(ring.restore(framesAgo));
+            assertArrayEquals(history.get(history.size() - 1 - framesAgo), state(), "frame " + framesAgo + " ago");
+        }
+        // restore leaves the ring alone
+        assertEquals(35, ring.getFrames());
+    }
+
+    @Test
+    void unchangedFramesCostFarLessThanKeyframes() {
+        SnapshotRing ring = new SnapshotRing(scene, 40, 10);
+        ring.capture();
+        long keyframe = ring.getBytes();
+        for (int i = 0; i < 9; i++) {
+            ring.capture();
+        }
+        // nine deltas of a scene that didn't change, a handful of bytes each
+        assertTrue(ring.getBytes() - keyframe < 9 * 16, "deltas took " + (ring.getBytes() - keyframe) + " bytes");
+
+        assertTrue(ring.restore(5));
+        assertEquals(keyframe, state().length);
+    }
+
+    @Test
+    void rewindsAcrossAKeyframe() {
+        SnapshotRing ring = new SnapshotRing(scene, 40, 10);
+        List<byte[]> history = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            captureFrame(ring, history);
+        }
+
+        // frame 7 was encoded against keyframe 0, frames 10 and 20 are keyframes since
+        assertTrue(ring.rewind(17));
+        assertArrayEquals(history.get(7), state());
+        assertEquals(8, ring.getFrames());
+        for (int framesAgo = 0; framesAgo < 8; framesAgo++) {
+            assertTrue(ring.restore(framesAgo));
+            assertArrayEquals(history.get(7 - framesAgo), state(), "frame " + framesAgo + " ago");
+        }
+        assertFalse(ring.isRestorable(8));
+    }
+
+    @Test
+    void capturesAfterRewindBuildOnTheRestoredFrame() {
+        SnapshotRing ring = new SnapshotRing(scene, 40, 10);
+        List<byte[]> history = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            captureFrame(ring, history);
+        }
+
+        assertTrue(ring.rewind(12));
+        List<byte[]> kept = new ArrayList<>(history.subList(0, 13));
+        // a different future from frame 12 on, past the next keyframe
+        for (int i = 0; i < 15; i++) {
+            captureFrame(ring, kept);
+        }
+
+        assertEquals(28, ring.getFrames());
+        for (int framesAgo = 0; framesAgo < 28; framesAgo++) {
+            assertTrue(ring.restore(framesAgo));
+            assertArrayEquals(kept.get(kept.size() - 1 - framesAgo), state(), "frame " + framesAgo + " ago");
+        }
+    }
+
+    @Test
+    void framesWhoseKeyframeWasEvictedCanNotBeRestored() {
+        SnapshotRing ring = new SnapshotRing(scene, 20, 10);
+        List<byte[]> history = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            captureFrame(ring, history);
+        }
+
+        // frames 5 to 24 are kept, 5 to 9 were encoded against keyframe 0 which is gone
+        assertEquals(20, ring.getFrames());
+        for (int frame = 5; frame < 10; frame++) {
+            int framesAgo = 24 - frame;
+            assertFalse(ring.isRestorable(framesAgo), "frame " + frame);
+            assertFalse(ring.restore(framesAgo), "frame " + frame);
+            assertFalse(ring.rewind(framesAgo), "frame " + frame);
+        }
+        // a failed restore or rewind leaves the scene and the ring alone
+        assertArrayEquals(history.get(24), state());
+        assertEquals(20, ring.getFrames());
+
+        for (int frame = 10; frame < 25; frame++) {
+            int framesAgo = 24 - frame;
+            assertTrue(ring.restore(framesAgo), "frame " + frame);
+            assertArrayEquals(history.get(frame), state(), "frame " + frame);
+        }
+        assertFalse(ring.isRestorable(20));
+        assertFalse(ring.isRestorable(-1));
+    }
+
+    @Test
+    void aChangedStateSizeStartsANewKeyframe() {
+        SnapshotRing ring = new SnapshotRing(scene, 40, 10);
+        List<byte[]> history = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            captureFrame(ring, history);
+        }
+
+        scene.removeGameObject(scene.gameObjects.get(3));
+        captureFrame(ring, history);
+        captureFrame(ring, history);
+
+        assertTrue(ring.restore(1));
+        assertArrayEquals(history.get(4), state());
+        assertTrue(ring.restore(0));
+        assertArrayEquals(history.get(5), state());
+    }
+}
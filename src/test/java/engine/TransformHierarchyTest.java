@@ -0,0 +1,176 @@
+package engine;
+
+import org.joml.Vector2f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Removing objects one slot at a time has to keep every world position right,
+ * with or without the pass over every object
+ */
+public class TransformHierarchyTest {
+    private static final float DT = 1.0f / 60.0f;
+
+    private static class TestScene extends Scene {
+        @Override
+        public void init() {
+            this.camera = new Camera(new Vector2f());
+        }
+
+        @Override
+        public void update(float dt) {
+
+        }
+    }
+
+    /**
+     * Moves its game object right every update
+     */
+    private static class Mover extends Component implements Tickable {
+        @Override
+        public void update(float dt) {
+            gameObject.transform.position.x += 60 * dt;
+        }
+    }
+
+    private static GameObject object(float x, float y) {
+        return new GameObject("obj", new Transform(new Vector2f(x, y), new Vector2f(32, 32)));
+    }
+
+    private static void assertWorldPositions(List<GameObject> objects) {
+        for (int i = 0; i < objects.size(); i++) {
+            GameObject go = objects.get(i);
+            if (go.isDead()) continue;
+
+            Vector2f expected = new Vector2f(go.transform.position);
+            for (GameObject p = go.getParent(); p != null; p = p.getParent()) {
+                expected.add(p.transform.position);
+            }
+            assertEquals(expected.x, go.transform.getWorldPosition().x, 1e-3f, "object " + go.getUid());
+            assertEquals(expected.y, go.transform.getWorldPosition().y, 1e-3f, "object " + go.getUid());
+        }
+    }
+
+    @Test
+    void aRemovedSlotIsAHoleUntilTheNextUpdate() {
+        TransformHierarchy hierarchy = new TransformHierarchy();
+        List<GameObject> objects = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            objects.add(object(i * 32, 0));
+            hierarchy.add(objects.get(i));
+        }
+
+        objects.get(3).destroy();
+        hierarchy.remove(objects.get(3));
+        assertEquals(8, hierarchy.size());
+        // removing twice is harmless
+        hierarchy.remove(objects.get(3));
+
+        objects.get(7).transform.position.x = 1000;
+        hierarchy.update();
+        assertEquals(7, hierarchy.size());
+        assertEquals(1000, objects.get(7).transform.getWorldPosition().x);
+    }
+
+    @Test
+    void holesCloseOnTheirOwnWithoutUpdates() {
+        TransformHierarchy hierarchy = new TransformHierarchy();
+        List<GameObject> objects = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            objects.add(object(i * 32, 0));
+            hierarchy.add(objects.get(i));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            objects.get(i * 2).destroy();
+            hierarchy.remove(objects.get(i * 2));
+        }
+        // three holes in eight slots are more than a quarter
+        assertEquals(5, hierarchy.size());
+
+        // slots moved down by the closing still remove the right object
+        objects.get(7).destroy();
+        hierarchy.remove(objects.get(7));
+        objects.get(5).transform.position.y = 50;
+        hierarchy.update();
+        assertEquals(4, hierarchy.size());
+        assertEquals(50, objects.get(5).transform.getWorldPosition().y);
+    }
+
+    @Test
+    void childrenFollowTheirParentAfterSiblingsAreRemoved() {
+        TransformHierarchy hierarchy = new TransformHierarchy();
+        List<GameObject> objects = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            GameObject parent = object(i * 100, 0);
+            GameObject child = object(10, 10);
+            parent.addChild(child);
+            hierarchy.add(parent);
+            hierarchy.add(child);
+            objects.add(parent);
+            objects.add(child);
+        }
+        hierarchy.update();
+
+        for (int i = 0; i < 6; i += 2) {
+            GameObject parent = objects.get(i * 2);
+            parent.destroy();
+            hierarchy.remove(parent);
+            hierarchy.remove(parent.getChildren().get(0));
+        }
+        for (int i = 0; i < objects.size(); i += 2) {
+            objects.get(i).transform.position.y += 7;
+        }
+        hierarchy.update();
+
+        assertEquals(6, hierarchy.size());
+        assertWorldPositions(objects);
+    }
+
+    @Test
+    void churnUnderActivityRegionsKeepsWorldPositionsRight() {
+        TestScene scene = new TestScene();
+        scene.init();
+        scene.setActivityRegions(new ActivityRegions(320, 2000, 2000, 1));
+        Random random = new Random(3);
+        List<GameObject> objects = new ArrayList<>();
+
+        for (int frame = 0; frame < 200; frame++) {
+            // a few removals and spawns every frame, some of them with a moving parent and a child
+            for (int i = 0; i < 3 && !objects.isEmpty(); i++) {
+                scene.removeGameObject(objects.get(random.nextInt(objects.size())));
+            }
+            for (int i = 0; i < 3; i++) {
+                GameObject go = object(random.nextFloat() * 1000, random.nextFloat() * 700);
+                if (random.nextBoolean()) {
+                    go.addComponent(new Mover());
+                }
+                scene.addGameObjectToScene(go);
+                objects.add(go);
+                if (random.nextBoolean()) {
+                    GameObject child = object(5, 5);
+                    go.addChild(child);
+                    scene.addGameObjectToScene(child);
+                    objects.add(child);
+                }
+            }
+
+            scene.updateGameObjects(DT);
+            assertWorldPositions(objects);
+        }
+
+        int alive = 0;
+        for (int i = 0; i < objects.size(); i++) {
+            if (!objects.get(i).isDead()) alive++;
+        }
+        assertEquals(alive, scene.getNumGameObjects());
+        // dead slots are reclaimed without a full update, at most a quarter of the arrays are holes
+        assertTrue(scene.hierarchy.size() <= alive + alive / 3 + 1, scene.hierarchy.size() + " slots for " + alive);
+        assertTrue(scene.hierarchy.size() >= alive);
+    }
+}
@@ -0,0 +1,96 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Components are grouped by class, and the groups don't keep removed components around
+ */
+public class UpdateSchedulerTest {
+    private static final float DT = 1.0f / 60.0f;
+
+    // every update in the order it ran
+    private final List<Component> log = new ArrayList<>();
+
+    private class Walker extends Component implements Tickable {
+        @Override
+        public void update(float dt) {
+            log.add(this);
+        }
+    }
+
+    private class Runner extends Walker {
+
+    }
+
+    private class Thinker extends Component implements Tickable {
+        @Override
+        public UpdatePhase getUpdatePhase() {
+            return UpdatePhase.PRE_UPDATE;
+        }
+
+        @Override
+        public void update(float dt) {
+            log.add(this);
+        }
+    }
+
+    private static <T extends Component> T attach(T c) {
+        new GameObject("obj").addComponent(c);
+        return c;
+    }
+
+    @Test
+    void everyClassGetsAGroupOfItsOwn() {
+        UpdateScheduler scheduler = new UpdateScheduler();
+        Walker walker = attach(new Walker());
+        Walker otherWalker = attach(new Walker());
+        Runner runner = attach(new Runner());
+        scheduler.add(walker);
+        scheduler.add(otherWalker);
+        scheduler.add(runner);
+
+        assertSame(walker.group, otherWalker.group);
+        assertNotSame(walker.group, runner.group);
+    }
+
+    @Test
+    void groupsLetGoOfRemovedComponents() {
+        UpdateScheduler scheduler = new UpdateScheduler();
+        Walker first = attach(new Walker());
+        Walker second = attach(new Walker());
+        scheduler.add(first);
+        scheduler.add(second);
+        UpdateScheduler.Group group = first.group;
+
+        scheduler.remove(first);
+        scheduler.update(DT);
+
+        for (Component c : group.components) {
+            assertNotSame(first, c);
+        }
+        assertEquals(List.of(second), log);
+    }
+
+    @Test
+    void runsPhaseByPhaseAndSkipsRemovedComponents() {
+        UpdateScheduler scheduler = new UpdateScheduler();
+        Walker walker = attach(new Walker());
+        Walker removed = attach(new Walker());
+        Thinker thinker = attach(new Thinker());
+        scheduler.add(walker);
+        scheduler.add(removed);
+        scheduler.add(thinker);
+        scheduler.remove(removed);
+
+        scheduler.update(DT);
+
+        assertEquals(List.of(thinker, walker), log);
+        assertEquals(2, scheduler.size());
+        assertFalse(removed.isScheduled());
+    }
+}
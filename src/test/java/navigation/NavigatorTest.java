@@ -0,0 +1,235 @@
+package navigation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A repaired flow field has to match one built from scratch on the same tiles,
+ * and A* has to find paths exactly as long as the fields say
+ */
+public class NavigatorTest {
+    private static final int WIDTH = 40, HEIGHT = 30;
+
+    private static NavGrid grid(Random random, float blockedChance) {
+        NavGrid grid = new NavGrid(WIDTH, HEIGHT, 32, 0, 0);
+        for (int i = 0; i < grid.getNumTiles(); i++) {
+            grid.setBlocked(i, random.nextFloat() < blockedChance);
+        }
+        return grid;
+    }
+
+    /**
+     * Same tiles, nothing cached, every field built from nothing
+     */
+    private static int[] freshDistances(NavGrid grid, int target) {
+        FlowField field = new Navigator(grid, 1).getFlowField(target % WIDTH, target / WIDTH);
+        return Arrays.copyOf(field.distance, field.distance.length);
+    }
+
+    private static void assertMatchesFreshBuild(NavGrid grid, FlowField field, String when) {
+        int[] expected = freshDistances(grid, field.getTarget());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], field.distance[i], "tile " + (i % WIDTH) + ", " + (i / WIDTH)
+                    + " toward " + (field.getTarget() % WIDTH) + ", " + (field.getTarget() / WIDTH) + " " + when);
+        }
+    }
+
+    @Test
+    void repairedFieldsMatchFreshBuilds() {
+        Random random = new Random(11);
+        NavGrid grid = grid(random, 0.25f);
+        Navigator navigator = new Navigator(grid, 4);
+        FlowField[] fields = new FlowField[4];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = navigator.getFlowField(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+
+        for (int change = 0; change < 400; change++) {
+            int x, y;
+            if (change % 25 == 0) {
+                // now and then the target itself, blocked or opened
+                int target = fields[random.nextInt(fields.length)].getTarget();
+                x = target % WIDTH;
+                y = target / WIDTH;
+            } else {
+                x = random.nextInt(WIDTH);
+                y = random.nextInt(HEIGHT);
+            }
+            boolean blocked = !grid.isBlocked(x, y);
+            navigator.setBlocked(x, y, blocked);
+            assertEquals(blocked, grid.isBlocked(x, y));
+
+            for (int i = 0; i < fields.length; i++) {
+                assertMatchesFreshBuild(grid, fields[i], "after change " + change + " at " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void cuttingACorridorResetsEverythingBehindIt() {
+        // open grid with a wall across it, the one gap in the wall at x = 20
+        NavGrid grid = new NavGrid(WIDTH, HEIGHT, 32, 0, 0);
+        for (int x = 0; x < WIDTH; x++) {
+            if (x != 20) grid.setBlocked(grid.index(x, 15), true);
+        }
+        Navigator navigator = new Navigator(grid, 2);
+        FlowField field = navigator.getFlowField(0, 0);
+        assertNotEquals(FlowField.UNREACHABLE, field.getDistance(0, HEIGHT - 1));
+
+        navigator.setBlocked(20, 15, true);
+        assertEquals(FlowField.UNREACHABLE, field.getDistance(0, HEIGHT - 1));
+        assertMatchesFreshBuild(grid, field, "after closing the gap");
+
+        navigator.setBlocked(5, 15, false);
+        // straight up plus over to the gap and back
+        assertEquals(HEIGHT - 1 + 2 * 5, field.getDistance(0, HEIGHT - 1));
+        assertMatchesFreshBuild(grid, field, "after opening a new gap");
+    }
+
+    @Test
+    void blockedTargetIsUnreachableFromEverywhere() {
+        NavGrid grid = new NavGrid(WIDTH, HEIGHT, 32, 0, 0);
+        Navigator navigator = new Navigator(grid);
+        FlowField field = navigator.getFlowField(10, 10);
+        assertEquals(0, field.getDistance(10, 10));
+
+        navigator.setBlocked(10, 10, true);
+        for (int i = 0; i < grid.getNumTiles(); i++) {
+            assertEquals(FlowField.UNREACHABLE, field.distance[i]);
+            assertEquals(-1, field.next(i));
+        }
+
+        navigator.setBlocked(10, 10, false);
+        assertEquals(0, field.getDistance(10, 10));
+        assertEquals(20 + 10, field.getDistance(30, 0));
+        assertMatchesFreshBuild(grid, field, "after opening the target");
+    }
+
+    @Test
+    void fieldsAreSharedAndTheLeastRecentlyUsedOneIsReused() {
+        NavGrid grid = new NavGrid(WIDTH, HEIGHT, 32, 0, 0);
+        Navigator navigator = new Navigator(grid, 2);
+        FlowField a = navigator.getFlowField(1, 1);
+        FlowField b = navigator.getFlowField(2, 2);
+        assertSame(a, navigator.getFlowField(1, 1));
+
+        // b was used last before a, so it makes room for the new target
+        FlowField c = navigator.getFlowField(3, 3);
+        assertSame(b, c);
+        assertEquals(grid.index(3, 3), c.getTarget());
+        assertMatchesFreshBuild(grid, c, "after reuse");
+        assertNull(navigator.getFlowField(-1, 0));
+        assertNull(navigator.getFlowField(WIDTH, 0));
+    }
+
+    @Test
+    void aStarPathsAreAsLongAsTheFieldSays() {
+        Random random = new Random(5);
+        NavGrid grid = grid(random, 0.3f);
+        Navigator navigator = new Navigator(grid, 4);
+        int[] path = new int[grid.getNumTiles()];
+
+        for (int query = 0; query < 300; query++) {
+            int toX = random.nextInt(WIDTH), toY = random.nextInt(HEIGHT);
+            int fromX = random.nextInt(WIDTH), fromY = random.nextInt(HEIGHT);
+            FlowField field = navigator.getFlowField(toX, toY);
+            int distance = field.getDistance(fromX, fromY);
+
+            int length = navigator.findPath(fromX, fromY, toX, toY, path);
+            if (distance == FlowField.UNREACHABLE) {
+                assertEquals(GridPathfinder.NO_PATH, length, "query " + query);
+                continue;
+            }
+            assertEquals(distance, length, "query " + query);
+
+            // every step is to a walkable neighbour, and following the field takes as many
+            int tile = grid.index(fromX, fromY);
+            int followed = tile;
+            for (int step = 0; step < length; step++) {
+                int next = path[step];
+                assertEquals(1, Math.abs(next % WIDTH - tile % WIDTH) + Math.abs(next / WIDTH - tile / WIDTH));
+                assertTrue(grid.isWalkable(next));
+                tile = next;
+                followed = field.next(followed);
+                assertEquals(distance - step - 1, field.distance[followed]);
+            }
+            assertEquals(grid.index(toX, toY), tile);
+            assertEquals(-1, field.next(followed));
+
+            // and it stays that way as tiles change
+            navigator.setBlocked(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextBoolean());
+        }
+    }
+
+    @Test
+    void pathsCutToTheArrayStillReportTheirLength() {
+        NavGrid grid = new NavGrid(WIDTH, HEIGHT, 32, 0, 0);
+        Navigator navigator = new Navigator(grid);
+        int[] path = new int[4];
+        assertEquals(WIDTH - 1 + HEIGHT - 1, navigator.findPath(0, 0, WIDTH - 1, HEIGHT - 1, path));
+        assertEquals(0, navigator.findPath(3, 3, 3, 3, path));
+
+        navigator.setBlocked(3, 3, true);
+        assertEquals(GridPathfinder.NO_PATH, navigator.findPath(3, 3, 0, 0, path));
+        assertEquals(GridPathfinder.NO_PATH, navigator.findPath(0, 0, 3, 3, path));
+        assertEquals(GridPathfinder.NO_PATH, navigator.findPath(0, 0, WIDTH, 0, path));
+    }
+
+    @Test
+    void heapPopsInPriorityOrderAndGrows() {
+        Random random = new Random(9);
+        IntHeap heap = new IntHeap(4);
+        for (int round = 0; round < 3; round++) {
+            // past the initial capacity on the first round, with plenty of equal priorities
+            int count = 1000 + round * 500;
+            long[] expected = new long[count];
+            for (int i = 0; i < count; i++) {
+                int priority = random.nextInt(50);
+                int index = random.nextInt(100000);
+                heap.push(priority, index);
+                expected[i] = ((long) priority << 32) | index;
+            }
+            Arrays.sort(expected);
+
+            int lastPriority = -1;
+            for (int i = 0; i < count; i++) {
+                assertFalse(heap.isEmpty());
+                long entry = heap.pop();
+                assertEquals(IntHeap.priority(expected[i]), IntHeap.priority(entry), "pop " + i);
+                assertEquals(IntHeap.index(expected[i]), IntHeap.index(entry), "pop " + i);
+                assertTrue(IntHeap.priority(entry) >= lastPriority);
+                lastPriority = IntHeap.priority(entry);
+            }
+            assertTrue(heap.isEmpty());
+
+            // cleared with entries left, the next round starts empty
+            heap.push(7, 1);
+            heap.push(3, 2);
+            heap.clear();
+            assertTrue(heap.isEmpty());
+        }
+    }
+
+    @Test
+    void heapKeepsLargeIndicesAndPriorities() {
+        IntHeap heap = new IntHeap(16);
+        heap.push(Integer.MAX_VALUE - 1, Integer.MAX_VALUE);
+        heap.push(0, 0);
+        heap.push(1 << 20, 123456789);
+
+        long entry = heap.pop();
+        assertEquals(0, IntHeap.priority(entry));
+        assertEquals(0, IntHeap.index(entry));
+        entry = heap.pop();
+        assertEquals(1 << 20, IntHeap.priority(entry));
+        assertEquals(123456789, IntHeap.index(entry));
+        entry = heap.pop();
+        assertEquals(Integer.MAX_VALUE - 1, IntHeap.priority(entry));
+        assertEquals(Integer.MAX_VALUE, IntHeap.index(entry));
+        assertTrue(heap.isEmpty());
+    }
+}
@@ -0,0 +1,154 @@
+package renderer;
+
+import components.SpriteRenderer;
+import engine.ActivityRegions;
+import engine.Camera;
+import engine.Component;
+import engine.GameObject;
+import engine.Scene;
+import engine.SnapshotRing;
+import engine.Tickable;
+import engine.Transform;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The CPU side of a steady state frame must not allocate: the scene update with its scheduler,
+ * removals and transform hierarchy, the batch vertex rebuild and the snapshot capture.
+ * No GL context is needed, the GL side is covered by the checkAllocations task where a display is available
+ */
+public class FrameAllocationTest {
+    private static final float DT = 1.0f / 60.0f;
+    private static final int NUM_MOVERS = 1000;
+    private static final int NUM_DOOMED = 400;
+    // one doomed object is removed every REMOVE_INTERVAL frames
+    private static final int REMOVE_INTERVAL = 4;
+    // long enough for classes to load and the JIT to settle
+    private static final int WARMUP_FRAMES = 1000;
+    private static final int MEASURED_FRAMES = 500;
+
+    private static class TestScene extends Scene {
+        @Override
+        public void init() {
+            this.camera = new Camera(new Vector2f());
+        }
+
+        @Override
+        public void update(float dt) {
+
+        }
+
+        void updateObjects(float dt) {
+            updateGameObjects(dt);
+        }
+    }
+
+    /**
+     * Sways left and right around where it started, every mover at the same speed so the cells they
+     * pass through fill up the same way on every swing
+     */
+    private static class Sway extends Component implements Tickable {
+        private final float left, right;
+        private float vx = 40;
+
+        Sway(float x) {
+            this.left = x - 20;
+            this.right = x + 20;
+        }
+
+        @Override
+        public void update(float dt) {
+            Vector2f pos = gameObject.transform.position;
+            pos.x += vx * dt;
+            if (pos.x < left || pos.x > right) vx = -vx;
+        }
+    }
+
+    private final Random random = new Random(3);
+    private final List<GameObject> doomed = new ArrayList<>();
+    private RenderBatch batch;
+    private SnapshotRing ring;
+
+    private TestScene createScene(boolean regions) {
+        TestScene scene = new TestScene();
+        scene.init();
+        if (regions) {
+            scene.setActivityRegions(new ActivityRegions(100, 300, 600, 4));
+        }
+
+        // the scene is never started, starting hands the sprites to its renderer which needs GL,
+        // they go to a batch of their own that only builds vertices
+        batch = new RenderBatch(NUM_MOVERS, 0, null);
+        for (int i = 0; i < NUM_MOVERS; i++) {
+            GameObject go = object();
+            go.addComponent(new Sway(go.transform.position.x));
+            SpriteRenderer spr = new SpriteRenderer(new Vector4f(1, 1, 1, 1));
+            go.addComponent(spr);
+            scene.addGameObjectToScene(go);
+            batch.addSprite(spr);
+        }
+        for (int i = 0; i < NUM_DOOMED; i++) {
+            GameObject go = object();
+            doomed.add(go);
+            scene.addGameObjectToScene(go);
+        }
+        ring = new SnapshotRing(scene, 60, 10);
+        return scene;
+    }
+
+    private GameObject object() {
+        Vector2f position = new Vector2f(random.nextFloat() * 800, random.nextFloat() * 600);
+        return new GameObject("obj", new Transform(position, new Vector2f(16, 16)));
+    }
+
+    private void frame(TestScene scene, int frame) {
+        if (frame % REMOVE_INTERVAL == 0) {
+            scene.removeGameObject(doomed.get(frame / REMOVE_INTERVAL));
+        }
+        scene.updateObjects(DT);
+        batch.buildVertices();
+        ring.capture();
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void assertFramesDontAllocate(boolean regions) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "JVM can not measure thread allocations");
+        TestScene scene = createScene(regions);
+
+        int frame = 0;
+        for (; frame < WARMUP_FRAMES; frame++) {
+            frame(scene, frame);
+        }
+        // the reading itself may allocate, it is subtracted
+        long overhead = -allocatedBytes(threads) + allocatedBytes(threads);
+        long start = allocatedBytes(threads);
+        for (; frame < WARMUP_FRAMES + MEASURED_FRAMES; frame++) {
+            frame(scene, frame);
+        }
+        long allocated = allocatedBytes(threads) - start - overhead;
+
+        assertEquals(0, Math.max(0, allocated), "bytes allocated over " + MEASURED_FRAMES + " frames");
+    }
+
+    @Test
+    void steadyStateFramesDontAllocate() {
+        assertFramesDontAllocate(false);
+    }
+
+    @Test
+    void steadyStateFramesWithActivityRegionsDontAllocate() {
+        assertFramesDontAllocate(true);
+    }
+}
@@ -0,0 +1,77 @@
+package renderer;
+
+import components.SpriteRenderer;
+import engine.GameObject;
+import engine.Transform;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Vertices are built without a GL context, the batch is never started
+ */
+public class RenderBatchTest {
+    private static final int QUAD_SIZE = 4 * RenderBatch.VERTEX_SIZE;
+
+    private static SpriteRenderer sprite(float x, float y, float width, float height, Vector4f color) {
+        GameObject go = new GameObject("sprite", new Transform(new Vector2f(x, y), new Vector2f(width, height)));
+        SpriteRenderer spr = new SpriteRenderer(color);
+        go.addComponent(spr);
+        return spr;
+    }
+
+    /**
+     * The layout the vertex attribute pointers and the picking pass read
+     */
+    private static float[] quad(float left, float bottom, float right, float top, Vector4f c, int uid) {
+        float id = Float.intBitsToFloat(uid);
+        // top right, bottom right, bottom left, top left, untextured so texture slot 0
+        return new float[]{
+                right, top, c.x, c.y, c.z, c.w, 1, 1, 0, id,
+                right, bottom, c.x, c.y, c.z, c.w, 1, 0, 0, id,
+                left, bottom, c.x, c.y, c.z, c.w, 0, 0, 0, id,
+                left, top, c.x, c.y, c.z, c.w, 0, 1, 0, id,
+        };
+    }
+
+    @Test
+    void writesCornersInVertexOrder() {
+        RenderBatch batch = new RenderBatch(2, 0, null);
+        Vector4f color = new Vector4f(0.1f, 0.2f, 0.3f, 0.4f);
+        SpriteRenderer spr = sprite(10, 20, 3, 4, color);
+        batch.addSprite(spr);
+
+        float[] quad = Arrays.copyOfRange(batch.getVertices(), 0, QUAD_SIZE);
+        assertArrayEquals(quad(10, 20, 13, 24, color, spr.gameObject.getUid()), quad);
+    }
+
+    @Test
+    void rebuildsOnlyMovedSprites() {
+        RenderBatch batch = new RenderBatch(2, 0, null);
+        Vector4f color = new Vector4f(1, 1, 1, 1);
+        SpriteRenderer still = sprite(0, 0, 32, 32, color);
+        SpriteRenderer moved = sprite(100, 0, 32, 32, color);
+        batch.addSprite(still);
+        batch.addSprite(moved);
+        batch.takeUpload();
+
+        moved.gameObject.transform.position.set(200, 50);
+        moved.gameObject.refreshTransform();
+        batch.buildVertices();
+
+        assertTrue(batch.takeUpload());
+        float[] vertices = batch.getVertices();
+        assertArrayEquals(quad(0, 0, 32, 32, color, still.gameObject.getUid()),
+                Arrays.copyOfRange(vertices, 0, QUAD_SIZE));
+        assertArrayEquals(quad(200, 50, 232, 82, color, moved.gameObject.getUid()),
+                Arrays.copyOfRange(vertices, QUAD_SIZE, 2 * QUAD_SIZE));
+
+        // nothing changed since
+        batch.buildVertices();
+        assertFalse(batch.takeUpload());
+    }
+}
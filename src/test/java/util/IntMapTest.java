@@ -0,0 +1,53 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Removing shifts probe runs back, every key still in the map has to stay reachable after any removal
+ */
+public class IntMapTest {
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        Random random = new Random(1);
+        IntMap<String> map = new IntMap<>(4);
+        Map<Integer, String> expected = new HashMap<>();
+        for (int op = 0; op < 200000; op++) {
+            // a small key range keeps probe runs long and removals frequent
+            int key = random.nextInt(4000) - 2000;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                String value = "v" + op;
+                map.put(key, value);
+                expected.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -2000; key < 2000; key++) {
+            assertEquals(expected.get(key), map.get(key), "key " + key);
+        }
+    }
+
+    @Test
+    void putReplacesAndRemoveOfAMissingKeyIsANoOp() {
+        IntMap<String> map = new IntMap<>();
+        map.put(7, "a");
+        map.put(7, "b");
+        map.remove(8);
+
+        assertEquals(1, map.size());
+        assertEquals("b", map.get(7));
+
+        map.remove(7);
+        assertEquals(0, map.size());
+        assertNull(map.get(7));
+    }
+}